@@ -1,26 +1,79 @@
 package io.larkin.tate2neo;
 
+import io.larkin.tate2neo.checkpoint.ImportCheckpoint;
 import io.larkin.tate2neo.config.DefaultConfig;
+import io.larkin.tate2neo.delta.ImportManifest;
+import io.larkin.tate2neo.delta.ImportManifest.Kind;
+import io.larkin.tate2neo.metrics.ImportMetrics;
+import io.larkin.tate2neo.metrics.ImportMetrics.Phase;
+import io.larkin.tate2neo.metrics.MeteredLookupRepository;
+import io.larkin.tate2neo.parser.ArtworkHandler;
+import io.larkin.tate2neo.parser.ArtworkOrder;
+import io.larkin.tate2neo.parser.ArtworkRecord;
+import io.larkin.tate2neo.parser.MediumTokenizer;
+import io.larkin.tate2neo.parser.StreamingArtworkParser;
+import io.larkin.tate2neo.repository.FrozenLookup;
 import io.larkin.tate2neo.repository.ILookupRepository;
+import io.larkin.tate2neo.repository.LookupBatch;
+import io.larkin.tate2neo.repository.LookupEntryVisitor;
+import io.larkin.tate2neo.repository.LookupNamespace;
+import io.larkin.tate2neo.repository.LookupSnapshot;
+import io.larkin.tate2neo.sink.BatchInserterSink;
+import io.larkin.tate2neo.sink.CountingSink;
+import io.larkin.tate2neo.sink.CsvSink;
+import io.larkin.tate2neo.sink.CypherSink;
+import io.larkin.tate2neo.sink.GraphDatabaseSink;
+import io.larkin.tate2neo.sink.ImportSink;
+import io.larkin.tate2neo.sink.OrderingSink;
+import io.larkin.tate2neo.sink.StoreSizing;
+import io.larkin.tate2neo.sink.StoreSizing.Store;
+import io.larkin.tate2neo.sink.UpdatableSink;
+import io.larkin.tate2neo.utility.BulkFileReader;
 import io.larkin.tate2neo.utility.FileFinder;
+import io.larkin.tate2neo.utility.IntLongHashMap;
+import io.larkin.tate2neo.utility.JsonRecords;
+import io.larkin.tate2neo.utility.ParallelParser;
+import io.larkin.tate2neo.utility.RelationshipSet;
+import io.larkin.tate2neo.verify.StoreVerifier;
+import io.larkin.tate2neo.verify.VerificationReport;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.RelationshipType;
-import org.neo4j.unsafe.batchinsert.BatchInserter;
-import org.neo4j.unsafe.batchinsert.BatchInserters;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.annotation.Import;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
 /**
  * This program imports artists, artworks and their embedded objects / entities, creating
  * connections between the artists, artworks and related entities in a Neo4j database.
@@ -39,16 +92,218 @@ public class ImportApplication implements CommandLineRunner {
 	@Autowired
 	private ILookupRepository lookupRepository;
 
-	private final String ARTIST_KEY = "artist:";
-	private final String PERSON_BY_NAME_KEY = "person_by_name:";
-	private final String CATALOGUE_GROUP_KEY = "catalogue_group:";
-	private final String CLASSIFICATION_KEY = "classification:";
-	private final String MEDIUM_KEY = "medium:";
-	private final String MOVEMENT_KEY = "movement:";
-	private final String PLACE_KEY = "place:";
-	private final String SUBJECT_KEY = "subject:";
-	
-	private BatchInserter inserter;
+	@Autowired
+	private ImportMetrics metrics;
+
+	@Value("${import.metrics.progressSeconds:10}")
+	private long progressSeconds;
+
+	@Value("${import.metrics.report:}")
+	private String metricsReport;
+
+	@Value("${import.output:batch}")
+	private String output;
+
+	@Value("${import.server.url:http://localhost:7474}")
+	private String serverUrl;
+
+	@Value("${import.server.user:}")
+	private String serverUser;
+
+	@Value("${import.server.password:}")
+	private String serverPassword;
+
+	@Value("${import.server.batchSize:10000}")
+	private int serverBatchSize;
+
+	@Value("${import.server.threads:4}")
+	private int serverThreads;
+
+	@Value("${import.delta:false}")
+	private boolean delta;
+
+	@Value("${import.manifest:true}")
+	private boolean writeManifest;
+
+	@Value("${import.lookup.snapshot:false}")
+	private boolean lookupSnapshot;
+
+	@Value("${import.lookup.snapshot.mapped:true}")
+	private boolean mapLookupSnapshot;
+
+	@Value("${import.checkpoint.records:0}")
+	private int checkpointRecords;
+
+	@Value("${import.store.sizing:true}")
+	private boolean storeSizing;
+
+	@Value("${import.store.mappedMemory.nodes:}")
+	private String nodesMappedMemory;
+
+	@Value("${import.store.mappedMemory.relationships:}")
+	private String relationshipsMappedMemory;
+
+	@Value("${import.store.mappedMemory.properties:}")
+	private String propertiesMappedMemory;
+
+	@Value("${import.store.mappedMemory.strings:}")
+	private String stringsMappedMemory;
+
+	@Value("${import.store.mappedMemory.arrays:}")
+	private String arraysMappedMemory;
+
+	@Value("${import.store.mappedMemory.limit:}")
+	private String mappedMemoryLimit;
+
+	@Value("${import.relationships.dedup:false}")
+	private boolean dedupRelationships;
+
+	@Value("${import.relationships.order:false}")
+	private boolean orderRelationships;
+
+	@Value("${import.relationships.order.memory:256M}")
+	private String orderMemory;
+
+	@Value("${import.relationships.order.spillDir:}")
+	private String orderSpillDir;
+
+	@Value("${import.finder.threads:4}")
+	private int finderThreads;
+
+	@Value("${import.parser.threads:1}")
+	private int parserThreads;
+
+	@Value("${import.parser.queueSize:1000}")
+	private int parserQueueSize;
+
+	@Value("${import.parser.streaming:false}")
+	private boolean streamingParser;
+
+	@Value("${import.lookup.prefetch:true}")
+	private boolean prefetchLookups;
+
+	@Value("${import.artworks.prepass:false}")
+	private boolean artworkPrepass;
+
+	@Value("${import.artworks.order:false}")
+	private boolean orderArtworks;
+
+	@Value("${import.verify:false}")
+	private boolean verify;
+
+	@Value("${import.verify.threads:4}")
+	private int verifyThreads;
+
+	@Value("${import.verify.report:}")
+	private String verifyReport;
+
+	// the entities artworks connect to, copied once the pre-pass has created
+	// them all, so parser threads can resolve them while preparing artworks
+	private FrozenLookup frozenLookup;
+
+	// ids of the artworks the pre-pass failed on, already counted as failed
+	private final Set<Integer> prepassFailures = new HashSet<>();
+
+	// with import.artworks.order, the artwork files or records in the order
+	// they're imported; null imports them in the order they're found
+	private List<Path> artworkFiles;
+	private List<byte[]> artworkRecords;
+
+	// keys referenced by the artwork being imported, resolved in one call
+	private final LookupBatch prefetched = new LookupBatch();
+
+	// lookupRepository once metered, for keys the prefetch already counted
+	private MeteredLookupRepository meteredLookup;
+
+	// artist id and name are written to the lookup together
+	private final LookupBatch artistKeys = new LookupBatch();
+
+	private ImportSink sink;
+
+	// set with import.relationships.order, holding back the relationships
+	// written to the sink
+	private OrderingSink orderingSink;
+
+	// values of import.output that don't write a store of their own
+	private static final List<String> OTHER_OUTPUTS = Arrays.asList("csv", "none", "server");
+
+	// sinks only read property maps while creating a node or relationship,
+	// so one of each is refilled each time rather than allocating a map
+	private final Map<String, Object> nodeProperties = new HashMap<>();
+	private final Map<String, Object> relationshipProperties = new HashMap<>();
+
+	// mapped memory for the batch inserter, kept for when it is reopened
+	// after a checkpoint; empty leaves Neo4j's defaults
+	private Map<String, String> storeConfig = new HashMap<>();
+
+	// set for delta imports, to change and delete what earlier imports created
+	private UpdatableSink updatableSink;
+
+	// the file each artist and artwork was imported from, with its content
+	// hash and node id; null if the inputs aren't directories of files
+	static final String MANIFEST_FILE = "import-manifest.tsv";
+	private ImportManifest manifest;
+	private Path manifestFile;
+
+	// nodes of artists whose file was renamed, taken over by the new file
+	private final Set<Long> renamedArtists = new HashSet<>();
+
+	// nodes that lost a relationship in a delta, deleted at the end if nothing
+	// refers to them any more
+	private final Set<Long> pruneCandidates = new HashSet<>();
+
+	// written by import.verify unless import.verify.report names another file
+	static final String VERIFICATION_FILE = "import-verification.json";
+
+	// nodes by label and relationships by type created by this import, to
+	// reconcile with the store when verifying it; null otherwise
+	private Map<String, long[]> createdByLabel;
+	private Map<String, long[]> createdByType;
+
+	// every lookup entry, written alongside the manifest
+	static final String SNAPSHOT_FILE = "lookup.snapshot";
+
+	// records of each kind taken from the input so far, in input order,
+	// including any skipped on resuming
+	private final int[] recordsDone = new int[Kind.values().length];
+
+	// artwork records that failed before their node was created
+	private int artworksWithoutNode;
+
+	// null unless import.checkpoint.records is set
+	private ImportCheckpoint checkpoint;
+	private int sinceCheckpoint;
+	private String dbDir;
+
+	// one more than the highest node id created, for truncating the lookup
+	// to a checkpoint
+	private long highNodeId;
+
+	// every relationship created so far, when duplicates are being dropped
+	private RelationshipSet createdRelationships;
+	private final Map<String, Integer> relationshipTypeIds = new HashMap<>();
+
+	// the same few thousand medium strings repeat across the collection, so
+	// the medium nodes each one resolves to are remembered, up to a limit
+	private static final int MEDIUM_CACHE_SIZE = 100000;
+	private final Map<String, long[]> mediumNodes = new HashMap<>();
+	private final MediumTokenizer mediumTokenizer = new MediumTokenizer();
+
+	// subject ids already resolved to nodes by this import; the container
+	// subjects are shared by nearly every artwork, so this spares their lookups
+	private final IntLongHashMap subjectNodes = new IntLongHashMap();
+
+	// Readers are immutable and thread-safe, and share the mapper's cached
+	// deserializers, so one of each is used for every file by every parser thread
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private final ObjectReader artistReader = MAPPER.reader(Artist.class);
+	private final ObjectReader artworkReader = MAPPER.reader(Artwork.class);
+	private final BulkFileReader fileReader = new BulkFileReader();
+	private final StreamingArtworkParser streamingArtworkParser = new StreamingArtworkParser(MAPPER.getFactory());
+
+	private final ArtworkHandler artworkKeyCollector = new ArtworkKeyCollector();
+	private final ArtworkWriter artworkWriter = new ArtworkWriter();
+	private final DimensionWriter dimensionWriter = new DimensionWriter();
 
     private final Label ARTIST = DynamicLabel.label("Artist");
     private final Label ARTWORK = DynamicLabel.label("Artwork");
@@ -82,26 +337,172 @@ public class ImportApplication implements CommandLineRunner {
     private final RelationshipType TYPE_OF = DynamicRelationshipType.withName("TYPE_OF");
 
     /**
-     * Initialise the batch inserter
+     * Initialise the sink: the batch inserter, or CSV files for neo4j-import
+     * if import.output is "csv", a running server if it is "server", nothing
+     * at all (only counting) if it is "none", or for a delta import the
+     * existing store. With import.relationships.order set, relationships are
+     * held back and written in order of start node at the end.
      * 
-     * @param dbDir
+     * @param dbDir	Neo4j database directory, or directory for the CSV files
+     * @throws IOException
      */
-	private void setupDb(String dbDir) {
-		inserter = BatchInserters.inserter(dbDir);
+	private void setupDb(String dbDir) throws IOException {
+		if ("csv".equals(output)) {
+			sink = new CsvSink(Paths.get(dbDir));
+		} else if ("none".equals(output)) {
+			sink = new CountingSink();
+		} else if ("server".equals(output)) {
+			sink = new CypherSink(serverUrl, serverUser, serverPassword, serverBatchSize, serverThreads);
+		} else if (delta) {
+			updatableSink = new GraphDatabaseSink(dbDir);
+			sink = updatableSink;
+		} else {
+			sink = new BatchInserterSink(dbDir, storeConfig);
+		}
+		if (orderRelationships) {
+			Path spillDir = Paths.get(orderSpillDir.isEmpty() ? dbDir + ".relationships" : orderSpillDir);
+			orderingSink = new OrderingSink(sink, StoreSizing.parseSize(orderMemory), spillDir);
+			sink = orderingSink;
+		}
+	}
+
+	/**
+	 * Size the memory the batch inserter maps for each store file, from the
+	 * number of artists and artworks: those recorded in the manifest of an
+	 * earlier import into the store directory, if there is one, otherwise a
+	 * count of the input files or records. Sizes set in
+	 * import.store.mappedMemory.* are used as they are.
+	 * 
+	 * @throws IOException
+	 */
+	private void sizeStore(String artistsLocation, String artworksLocation, boolean resume) throws IOException {
+		long start = System.nanoTime();
+		long artists;
+		long artworks;
+		String counted;
+		Path previous = Paths.get(dbDir, MANIFEST_FILE);
+		if (!resume && Files.exists(previous)) {
+			ImportManifest earlier = ImportManifest.load(previous);
+			artists = earlier.size(Kind.ARTIST);
+			artworks = earlier.size(Kind.ARTWORK);
+			counted = "from " + MANIFEST_FILE;
+		} else {
+			artists = countRecords(artistsLocation);
+			artworks = countRecords(artworksLocation);
+			counted = "counted";
+		}
+		StoreSizing sizing = StoreSizing.estimate(artists, artworks);
+		sizing.override(Store.NODES, nodesMappedMemory);
+		sizing.override(Store.RELATIONSHIPS, relationshipsMappedMemory);
+		sizing.override(Store.PROPERTIES, propertiesMappedMemory);
+		sizing.override(Store.STRINGS, stringsMappedMemory);
+		sizing.override(Store.ARRAYS, arraysMappedMemory);
+		sizing.limit(mappedMemoryLimit);
+		storeConfig = sizing.toConfig();
+		System.out.println(artists + " artists and " + artworks + " artworks " + counted + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+		System.out.println(sizing.report());
+	}
+
+	/**
+	 * @param location	Directory of json files, or a record file
+	 * @return Number of records, without parsing them
+	 * @throws IOException
+	 */
+	private long countRecords(String location) throws IOException {
+		if (Files.isDirectory(Paths.get(location))) {
+			try (Stream<Path> files = FileFinder.streamFiles(location, "*.json", finderThreads)) {
+				return files.count();
+			}
+		}
+		try (Stream<byte[]> records = JsonRecords.open(Paths.get(location))) {
+			return records.count();
+		}
+	}
+
+	/**
+	 * The map to fill with the properties of the next node. It is shared by
+	 * every node, so must be passed to createNode before another is filled.
+	 */
+	private Map<String, Object> nodeProperties() {
+		nodeProperties.clear();
+		return nodeProperties;
+	}
+
+	/**
+	 * The map to fill with the properties of the next relationship, shared as
+	 * nodeProperties() is.
+	 */
+	private Map<String, Object> relationshipProperties() {
+		relationshipProperties.clear();
+		return relationshipProperties;
+	}
+
+	/**
+	 * Create a node using the batch inserter, recording the time taken.
+	 * 
+	 * @return Physical node id
+	 */
+	private long createNode(Map<String, Object> properties, Label... labels) {
+		long start = System.nanoTime();
+		long node = sink.createNode(properties, labels);
+		metrics.time(Phase.CREATE_NODE, start);
+		if (node >= highNodeId) {
+			highNodeId = node + 1;
+		}
+		metrics.nodeCreated();
+		if (createdByLabel != null) {
+			for (Label label : labels) {
+				tally(createdByLabel, label.name());
+			}
+		}
+		return node;
+	}
+
+	private static void tally(Map<String, long[]> counts, String name) {
+		long[] count = counts.get(name);
+		if (count == null) {
+			counts.put(name, count = new long[1]);
+		}
+		count[0]++;
+	}
+
+	/**
+	 * Create a relationship using the batch inserter, recording the time taken.
+	 * If import.relationships.dedup is set, a relationship that has already
+	 * been created is dropped and counted instead.
+	 */
+	private void createRelationship(long from, long to, RelationshipType type,
+			Map<String, Object> properties) {
+		if (createdRelationships != null) {
+			int typeId = relationshipTypeIds.computeIfAbsent(type.name(), name -> relationshipTypeIds.size());
+			if (!createdRelationships.add(from, to, typeId)) {
+				metrics.relationshipDuplicate();
+				return;
+			}
+		}
+		long start = System.nanoTime();
+		sink.createRelationship(from, to, type, properties);
+		metrics.time(Phase.CREATE_RELATIONSHIP, start);
+		metrics.relationshipCreated();
+		if (createdByType != null) {
+			tally(createdByType, type.name());
+		}
 	}
 	
 	/**
 	 * Create the indexes that will be used after the import to improve query
-	 * performance.
+	 * performance. Called at the end of the import, so that checkpoints don't
+	 * build them each time the inserter is shut down.
 	 * 
 	 */
 	private void createIndexes() {
-		inserter.createDeferredSchemaIndex(PERSON).on("name").create();
-        inserter.createDeferredSchemaIndex(ARTWORK).on("title").create();
-        inserter.createDeferredSchemaIndex(ARTWORK).on("acno").create();
-        inserter.createDeferredSchemaIndex(SUBJECT).on("name").create();
-        inserter.createDeferredSchemaIndex(MOVEMENT).on("name").create();
-        inserter.createDeferredSchemaIndex(PLACE).on("name").create();
+		sink.createIndex(PERSON, "name");
+        sink.createIndex(ARTWORK, "title");
+        sink.createIndex(ARTWORK, "acno");
+        sink.createIndex(SUBJECT, "name");
+        sink.createIndex(MOVEMENT, "name");
+        sink.createIndex(PLACE, "name");
     }
 	
 	/**
@@ -110,21 +511,61 @@ public class ImportApplication implements CommandLineRunner {
 	 * artworks, to connect to the artist.
 	 * 
 	 * @param artist
+	 * @param existingNode	Node of a changed artist from an earlier import,
+	 * 						otherwise ILookupRepository.NOT_FOUND
 	 * @return Physical node id to allow other nodes connect to an artist
 	 */
-	private Long addArtistNode(Artist artist) {
-        Map<String, Object> properties = new HashMap<>();
+	private long addArtistNode(Artist artist, long existingNode) {
+        Map<String, Object> properties = nodeProperties();
         properties.put("name", artist.getName());
         properties.put("id", artist.getId());
-        // Doubly label - we know this is a person and an artist (other non-artist
-        // persons can be added through subjects)
-        Long artistNode = inserter.createNode(properties, ARTIST, _ARTIST, PERSON, _PERSON);
+        long artistNode;
+        if (existingNode == ILookupRepository.NOT_FOUND && delta) {
+        	// artist files are named after the artist, so a corrected name
+        	// renames the file; the new file takes over the artist's node
+        	existingNode = lookupRepository.get(LookupNamespace.ARTIST, artist.getId());
+        	if (existingNode != ILookupRepository.NOT_FOUND) {
+        		renamedArtists.add(existingNode);
+        	} else if (artist.getName() != null) {
+        		// a new artist already featured in artworks as a named individual
+        		// takes over that person, as a full import would have it
+        		long person = lookupRepository.get(LookupNamespace.PERSON_BY_NAME, artist.getName());
+        		if (person != ILookupRepository.NOT_FOUND && !updatableSink.hasLabel(person, ARTIST)) {
+        			updatableSink.addLabels(person, ARTIST, _ARTIST, _PERSON);
+        			existingNode = person;
+        		}
+        	}
+        }
+        if (existingNode != ILookupRepository.NOT_FOUND) {
+        	// keep the node, so artworks stay connected, but drop the lookups
+        	// and relationships the artist had before
+        	Object oldId = updatableSink.getNodeProperty(existingNode, "id");
+        	if (oldId instanceof Integer && (Integer) oldId != artist.getId()) {
+        		removeLookup(LookupNamespace.ARTIST, (Integer) oldId, existingNode);
+        	}
+        	Object oldName = updatableSink.getNodeProperty(existingNode, "name");
+        	if (oldName instanceof String && !oldName.equals(artist.getName())) {
+        		removeLookup(LookupNamespace.PERSON_BY_NAME, (String) oldName, existingNode);
+        	}
+        	updatableSink.setNodeProperties(existingNode, properties);
+        	pruneCandidates.addAll(updatableSink.deleteRelationships(existingNode, Direction.OUTGOING,
+        			BORN_IN, INVOLVED_IN));
+        	artistNode = existingNode;
+        } else {
+        	// Doubly label - we know this is a person and an artist (other non-artist
+        	// persons can be added through subjects)
+        	artistNode = createNode(properties, ARTIST, _ARTIST, PERSON, _PERSON);
+        }
         
         // store artist node id in lookup to connect to artworks
-        lookupRepository.add(this.ARTIST_KEY + artist.getId(), Long.toString(artistNode));
+        artistKeys.clear();
+        artistKeys.setNodeId(artistKeys.add(LookupNamespace.ARTIST, artist.getId()), artistNode);
         
         // store artist name in lookup to match against subjects
-        lookupRepository.add(this.PERSON_BY_NAME_KEY + artist.getName(), Long.toString(artistNode));
+        if (artist.getName() != null) {
+        	artistKeys.setNodeId(artistKeys.add(LookupNamespace.PERSON_BY_NAME, artist.getName()), artistNode);
+        }
+        lookupRepository.addAll(artistKeys);
         
         return artistNode;
 	}
@@ -132,34 +573,46 @@ public class ImportApplication implements CommandLineRunner {
 	/**
 	 * Create an artwork node using the batch inserter
 	 * 
-	 * @param artwork
+	 * @param existingNode	Node of a changed artwork from an earlier import,
+	 * 						otherwise ILookupRepository.NOT_FOUND
+	 * @param id
+	 * @param acno
+	 * @param title
 	 * @return Physical node id to allow other nodes connect to the artwork
 	 */
-	private Long addArtworkNode(Artwork artwork) {
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("title", artwork.getTitle());
-        properties.put("id", artwork.getId());
-        properties.put("acno", artwork.getAcno());
-        long artworkNode = inserter.createNode(properties, ARTWORK, _ARTWORK);
+	private long addArtworkNode(long existingNode, int id, String acno, String title) {
+        Map<String, Object> properties = nodeProperties();
+        properties.put("title", title);
+        properties.put("id", id);
+        properties.put("acno", acno);
+        if (existingNode != ILookupRepository.NOT_FOUND) {
+        	// the artwork's relationships are all recreated from the new file
+        	updatableSink.setNodeProperties(existingNode, properties);
+        	pruneCandidates.addAll(updatableSink.deleteRelationships(existingNode, Direction.OUTGOING,
+        			PART_OF, FEATURES, BELONGS_TO, CLASSIFIED_AS, COMPRISED_OF));
+        	updatableSink.deleteRelationships(existingNode, Direction.INCOMING, CONTRIBUTED_TO);
+        	return existingNode;
+        }
+        long artworkNode = createNode(properties, ARTWORK, _ARTWORK);
         return artworkNode;
 	}	
 	
 	/**
-	 * Connect contributors / artists to an artwork. It is assumed the artist has
+	 * Connect a contributor / artist to an artwork. It is assumed the artist has
 	 * already been created.
 	 * 
 	 * @param artworkNode	Physical node id pointing to artwork node
-	 * @param contributors	List of contributors / artists who worked on the artwork
-	 */
-	private void connectArtworkToArtists(Long artworkNode, List<Artist> contributors) {
-        for (Artist artist : contributors) {
-        	Long cNode = null;
-        	String value = lookupRepository.get(this.ARTIST_KEY + artist.getId());
-        	if (value != null) {
-        		cNode = Long.parseLong(value);
-       			inserter.createRelationship(cNode, artworkNode, CONTRIBUTED_TO, null);
-        	}
-        }
+	 * @param artistId		Id of a contributor / artist who worked on the artwork
+	 * @return false if the artist wasn't among those imported
+	 */
+	private boolean connectArtworkToArtist(long artworkNode, int artistId) {
+    	long cNode = lookup(LookupNamespace.ARTIST, artistId);
+    	if (cNode != ILookupRepository.NOT_FOUND) {
+   			createRelationship(cNode, artworkNode, CONTRIBUTED_TO, null);
+   			return true;
+    	}
+    	metrics.contributorMissing();
+    	return false;
 	}
 
 	/**
@@ -170,30 +623,24 @@ public class ImportApplication implements CommandLineRunner {
 	 * @param artistNode
 	 * @param birth an object containing place of birth object and year of birth
 	 */
-	private void connectArtistToBirthPlace(Long artistNode, Birth birth) {
+	private void connectArtistToBirthPlace(long artistNode, Birth birth) {
 		// TODO: Refactor to allow non-birth places to be added and connected to
-        Long placeNode = null;
         if (birth != null && birth.getPlace() != null) {
 	        String placeName = birth.getPlace().getName();
 	        if (placeName != null) {
-	        	String value = lookupRepository.get(this.PLACE_KEY + placeName);
-		        if (value == null) {
-	        		HashMap<String, Object> properties = new HashMap<>();
+	        	// create the place node if this is the first time we've seen it
+	        	long placeNode = getOrCreate(LookupNamespace.PLACE, placeName, () -> {
+	        		Map<String, Object> properties = nodeProperties();
 	    	        properties.put("name", placeName);
-	    	        placeNode = inserter.createNode(properties, PLACE, _PLACE);
-	    	        
-	    	        // store new node id in lookup repository
-	    	        lookupRepository.add(this.PLACE_KEY + placeName, Long.toString(placeNode));
-		        } else {
-		        	placeNode = Long.parseLong(value);
-		        }
+	    	        return createNode(properties, PLACE, _PLACE);
+	        	});
 		        
 		        // connect artist to birth place
-		        HashMap<String, Object> properties = new HashMap<>();
+		        Map<String, Object> properties = relationshipProperties();
         		if (birth.getTime() != null) {
         			properties.put("startYear", birth.getTime().getStartYear());
         		}
-		        inserter.createRelationship(artistNode, placeNode, BORN_IN, properties);
+		        createRelationship(artistNode, placeNode, BORN_IN, properties);
 			}
         }
 	}
@@ -209,180 +656,119 @@ public class ImportApplication implements CommandLineRunner {
 			List<Movement> movements) {
         // Connect artists with movements. If necessary, create Movement node(s) and store new node id in lookup
         for (Movement movement : movements) {
-        	Long movementNode = getOrCreateMovementNode(movement);
+        	long movementNode = getOrCreateMovementNode(movement.getId(), movement.getName());
         	// connect artist to movement
-        	inserter.createRelationship(artistNode, movementNode, INVOLVED_IN, null);
+        	createRelationship(artistNode, movementNode, INVOLVED_IN, null);
         }
 	}
 
 	/**
-	 * Connect movements to artworks.
+	 * Connect a movement to an artwork.
 	 * 
 	 * @param artworkNode	Physical node id of artwork node
-	 * @param movements
+	 * @param id			Movement id
+	 * @param name			Movement name
 	 */
-	private void connectArtworkToMovements(Long artworkNode, List<Movement> movements) {
-        if (movements != null) {
-	        for (Movement movement : movements) {
-	        	Long movementNode = getOrCreateMovementNode(movement);
-	        	// connect artwork to movement
-	        	inserter.createRelationship(artworkNode, movementNode, PART_OF, null);
-	        }
-        }
+	private void connectArtworkToMovement(long artworkNode, int id, String name) {
+    	long movementNode = getOrCreateMovementNode(id, name);
+    	// connect artwork to movement
+    	createRelationship(artworkNode, movementNode, PART_OF, null);
 	}
 
 	/**
 	 * If a node exists for the provided movement, return the physical node id,
 	 * otherwise create the movement and store and return the newly generated id
 	 * 
-	 * @param movement
+	 * @param id
+	 * @param name
 	 * @return Physical node id
 	 */
-	private Long getOrCreateMovementNode(Movement movement) {
-		Long movementNode = null;
-		String value = lookupRepository.get(this.MOVEMENT_KEY + movement.getId());
-		if (value == null) {
-			HashMap<String, Object> properties = new HashMap<>();
-	        properties.put("name", movement.getName());
-	        properties.put("id", movement.getId());
-	        movementNode = inserter.createNode(properties, MOVEMENT, _MOVEMENT);
-	        
-	        // store new node id in lookup repository
-	        lookupRepository.add(this.MOVEMENT_KEY + movement.getId(), Long.toString(movementNode));
-		} else {
-			movementNode = Long.parseLong(value);
-		}
-		return movementNode;
+	private long getOrCreateMovementNode(int id, String name) {
+		return getOrCreate(LookupNamespace.MOVEMENT, id, () -> {
+			Map<String, Object> properties = nodeProperties();
+	        properties.put("name", name);
+	        properties.put("id", id);
+	        return createNode(properties, MOVEMENT, _MOVEMENT);
+		});
 	}
 		
-	/**
-	 * Get or create top-level subject node
-	 * @param subject
-	 * @return Physical node id
-	 */
-	private Long getOrCreateSubjectNode(Subject subject) {
-		return getOrCreateSubjectNode(subject, null, null);
-	}
-	
 	/**
 	 * Get or create subject node. If the node doesn't exist, create it. There can be special cases
 	 * of subject, such as named persons or places. These will still be added to the subject hierarchy,
 	 * but with more appropriate labels.
 	 * 
-	 * @param subject
-	 * @param parent	For 2nd and 3rd level subjects, this will be a non-null physical node id
-	 * @param parentObject The nature of the parent may alter the node label
+	 * @param id
+	 * @param name
+	 * @param parent	For 2nd and 3rd level subjects, this will be the parent's physical
+	 * 					node id, otherwise ILookupRepository.NOT_FOUND
+	 * @param namedIndividual	true if the parent is the "named individuals" subject
 	 * @return	Physical node id
 	 */
-	private Long getOrCreateSubjectNode(Subject subject, Long parent, Subject parentObject) {
-		Long node = null;
-    	String value = lookupRepository.get(this.SUBJECT_KEY + subject.getId());
-    	if (value != null) {
-    		node = Long.parseLong(value);
-    	} else {
-    		node = addSubjectNode(subject, parentObject);
-    		if (parent != null) {
-    			inserter.createRelationship(node, parent, TYPE_OF, null);
-    		}
-    	}
-    	return node;
+	private long getOrCreateSubjectNode(int id, String name, long parent, boolean namedIndividual) {
+		long subjectNode = subjectNodes.get(id, ILookupRepository.NOT_FOUND);
+		if (subjectNode == ILookupRepository.NOT_FOUND) {
+			// the TYPE_OF relationship is only created along with the node
+			subjectNode = getOrCreate(LookupNamespace.SUBJECT, id, () -> {
+	    		long node = addSubjectNode(id, name, namedIndividual);
+	    		if (parent != ILookupRepository.NOT_FOUND) {
+	    			createRelationship(node, parent, TYPE_OF, null);
+	    		}
+	    		return node;
+			});
+			subjectNodes.put(id, subjectNode);
+		}
+		return subjectNode;
 	}
 	
 	/**
-	 * Create the subject node using the batch inserter and place the generated
-	 * node id in the key-value store.
+	 * Create the subject node using the batch inserter. Named individuals are
+	 * matched by name against existing persons (e.g. artists) first.
 	 * 
-	 * @param subject
-	 * @param parentObject	Where in the 3-level subject hierarchy is the subject?
+	 * @param id
+	 * @param name
+	 * @param namedIndividual	true if the subject is a person rather than a topic
 	 * @return A node id that can be used to connect other nodes to the subject
 	 */
-	private Long addSubjectNode(Subject subject, Subject parentObject) {
-		Map<String, Object> properties = new HashMap<>();
-        Label sLabel = SUBJECT;
-        Label sLabelSdn = _SUBJECT;
+	private long addSubjectNode(int id, String name, boolean namedIndividual) {
+		Map<String, Object> properties = nodeProperties();
+		properties.put("name", name);
         
-        if (parentObject != null && parentObject.isNamedIndividuals()) {
-        	sLabel = PERSON;
-            sLabelSdn = _PERSON;
-        	properties.put("name", subject.getName());
-        	
-        	// check artist nodes to see if person already exists
-        	String value = lookupRepository.get(this.PERSON_BY_NAME_KEY + subject.getName());
-        	if (value != null) {
-        		return Long.parseLong(value);
-        	} else {
-        		Long nodeId = inserter.createNode(properties, sLabel);
-                // store artist name in lookup to match against other subjects
-                lookupRepository.add(this.PERSON_BY_NAME_KEY + subject.getName(), Long.toString(nodeId));
-                return nodeId;
-        	}
-        } else {
-        	properties.put("name", subject.getName());
-	        properties.put("id", subject.getId());
+        if (namedIndividual) {
+        	// check artist nodes to see if person already exists, storing the
+        	// name in the lookup to match against other subjects if not
+        	return getOrCreate(LookupNamespace.PERSON_BY_NAME, name,
+        			() -> createNode(properties, PERSON));
         }
         
-        Long nodeId = inserter.createNode(properties, sLabel, sLabelSdn);
-        
-        lookupRepository.add(this.SUBJECT_KEY + subject.getId(), Long.toString(nodeId));
-        
-        return nodeId;
+        properties.put("id", id);
+        return createNode(properties, SUBJECT, _SUBJECT);
 	}	
 	
-	/**
-	 * Given a list of top-level subjects, iterate through them and their child
-	 * subjects, connecting the 3rd-level subjects to the privided artwork.
-	 * 
-	 * @param artworkNode	Physical node id of artwork
-	 * @param subjects
-	 */
-	private void connectArtworkToSubjects(long artworkNode, List<Subject> subjects) {
-		for (Subject subject0 : subjects) {   // container for subjects
-			Long s0Node = getOrCreateSubjectNode(subject0);
-        	if (subject0.getChildren() != null) {
-	        	for (Subject subject1 : subject0.getChildren()) {   // top level
-	        		Long s1Node = getOrCreateSubjectNode(subject1, s0Node, null);
-	        		if (subject0.getChildren() != null) {
-		        		for (Subject subject2 : subject1.getChildren()) {    // 2nd level
-		        			Long s2Node = getOrCreateSubjectNode(subject2, s1Node, subject1);
-		        			inserter.createRelationship(artworkNode, s2Node, FEATURES, null);
-			        	}	
-	        		}
-	        	}
-        	}
-        }
-	}
-	
 	/**
 	 * Connect artwork to a catalogue group
 	 * @param artworkNode
-	 * @param catalogueGroup
+	 * @param id
+	 * @param shortTitle
 	 */
-	private void connectArtworkToCatalogueGroup(Long artworkNode, CatalogueGroup catalogueGroup) {
-		Long cgNode = getOrCreateCatalogueNode(catalogueGroup);
-		inserter.createRelationship(artworkNode, cgNode, BELONGS_TO, null);
+	private void connectArtworkToCatalogueGroup(long artworkNode, int id, String shortTitle) {
+		long cgNode = getOrCreateCatalogueNode(id, shortTitle);
+		createRelationship(artworkNode, cgNode, BELONGS_TO, null);
 	}
 
 	/**
 	 * Get or create catalogue group node. If the node doesn't exist, create it.
 	 * 
-	 * @param catalogueGroup
+	 * @param id
+	 * @param shortTitle
 	 * @return Physical node id
 	 */
-	private Long getOrCreateCatalogueNode(CatalogueGroup catalogueGroup) {
-		Long cgNode = null;
-		String value = lookupRepository.get(this.CATALOGUE_GROUP_KEY + catalogueGroup.getId());
-		if (value == null) {
-			HashMap<String, Object> properties = new HashMap<>();
-	        properties.put("shortTitle", catalogueGroup.getShortTitle() != null ? catalogueGroup.getShortTitle() : "[no short title]");
-	        properties.put("id", catalogueGroup.getId());
-	        cgNode = inserter.createNode(properties, CATALOGUE_GROUP, _CATALOGUE_GROUP);
-	        
-	        // store new node id in lookup repository
-	        lookupRepository.add(this.CATALOGUE_GROUP_KEY + catalogueGroup.getId(), Long.toString(cgNode));
-		} else {
-			cgNode = Long.parseLong(value);
-		}
-		return cgNode;
+	private long getOrCreateCatalogueNode(int id, String shortTitle) {
+		return getOrCreate(LookupNamespace.CATALOGUE_GROUP, id, () -> {
+			Map<String, Object> properties = nodeProperties();
+	        properties.put("shortTitle", shortTitle != null ? shortTitle : "[no short title]");
+	        properties.put("id", id);
+	        return createNode(properties, CATALOGUE_GROUP, _CATALOGUE_GROUP);
+		});
 	}
 
 	/**
@@ -391,32 +777,24 @@ public class ImportApplication implements CommandLineRunner {
 	 * @param artworkNode
 	 * @param classification
 	 */
-	private void connectArtworkToClassification(Long artworkNode,
+	private void connectArtworkToClassification(long artworkNode,
 			String classification) {
-		Long clNode = getOrCreateClassification(classification);
-		inserter.createRelationship(artworkNode, clNode, CLASSIFIED_AS, null);
+		long clNode = getOrCreateClassification(classification);
+		createRelationship(artworkNode, clNode, CLASSIFIED_AS, null);
 	}
 
 	/**
 	 * Get or create classification.
 	 * 
 	 * @param classification
-	 * @return
+	 * @return Physical node id
 	 */
-	private Long getOrCreateClassification(String classification) {
-		Long clNode = null;
-		String value = lookupRepository.get(this.CLASSIFICATION_KEY + classification);
-		if (value == null) {
-			HashMap<String, Object> properties = new HashMap<>();
+	private long getOrCreateClassification(String classification) {
+		return getOrCreate(LookupNamespace.CLASSIFICATION, classification, () -> {
+			Map<String, Object> properties = nodeProperties();
 	        properties.put("name", classification);
-	        clNode = inserter.createNode(properties, CLASSIFICATION, _CLASSIFICATION);
-	        
-	        // store new node id in lookup repository
-	        lookupRepository.add(this.CLASSIFICATION_KEY + classification, Long.toString(clNode));
-		} else {
-			clNode = Long.parseLong(value);
-		}
-		return clNode;
+	        return createNode(properties, CLASSIFICATION, _CLASSIFICATION);
+		});
 	}
 
 	/**
@@ -425,89 +803,1183 @@ public class ImportApplication implements CommandLineRunner {
 	 * @param artworkNode
 	 * @param medium
 	 */
-	private void connectArtworkToMediums(Long artworkNode, String medium) {
-		String[] mediums = medium.split(",| on | and ");
-		
-		Long mNode = null;
-		for (String m : mediums) {
-			String trimmed = m.trim().toLowerCase();
-			String value = lookupRepository.get(this.MEDIUM_KEY + trimmed);
-			if (value == null) {
-				HashMap<String, Object> properties = new HashMap<>();
-	        	properties.put("name", trimmed);
-	        	mNode = inserter.createNode(properties, MEDIUM, _MEDIUM);
-	        	lookupRepository.add(this.MEDIUM_KEY + trimmed, Long.toString(mNode));
-			} else {
-				mNode = Long.parseLong(value);
+	private void connectArtworkToMediums(long artworkNode, String medium) {
+		for (long mNode : getOrCreateMediumNodes(medium)) {
+			createRelationship(artworkNode, mNode, COMPRISED_OF, null);
+		}
+	}
+
+	/**
+	 * Get or create the medium node of each material named in a medium string.
+	 * 
+	 * @param medium	e.g. "Oil paint on canvas"
+	 * @return Physical node ids, in the order the materials are named
+	 */
+	private long[] getOrCreateMediumNodes(String medium) {
+		long[] nodes = mediumNodes.get(medium);
+		if (nodes == null) {
+			int count = mediumTokenizer.tokenize(medium);
+			nodes = new long[count];
+			for (int i = 0; i < count; i++) {
+				String name = mediumTokenizer.token(i);
+				nodes[i] = getOrCreate(LookupNamespace.MEDIUM, name, () -> {
+					Map<String, Object> properties = nodeProperties();
+		        	properties.put("name", name);
+		        	return createNode(properties, MEDIUM, _MEDIUM);
+				});
+			}
+			if (mediumNodes.size() < MEDIUM_CACHE_SIZE) {
+				mediumNodes.put(medium, nodes);
 			}
-			inserter.createRelationship(artworkNode, mNode, COMPRISED_OF, null);
 		}
+		return nodes;
 	}
 
 	/**
-	 * Main import algorithm implemented here. We process artists first so that
-	 * we can then link them to the artworks process thereafter.
+	 * Look up a node id, using the prefetched keys where possible.
 	 * 
-	 * @param args[0]	Neo4j database directory to create
-	 * @param args[1]	Directory of artist json files
-	 * @param args[2]	Directory of artwork json files
+	 * @return Physical node id, or ILookupRepository.NOT_FOUND
 	 */
-	@Override
-    public void run(String... args) throws Exception {
-		
-		setupDb(args[0]);
+	private long lookup(LookupNamespace namespace, int key) {
+		int i = prefetched.indexOf(namespace, key);
+		return i >= 0 ? prefetched.getNodeId(i) : lookupRepository.get(namespace, key);
+	}
 
-		String artistsDirectory = args[1];
-		String artworksDirectory = args[2];
-		
-		createIndexes();
+	/**
+	 * Get or create a node, using the prefetched keys where possible.
+	 * 
+	 * @return Physical node id
+	 */
+	private long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator) {
+		int i = prefetched.indexOf(namespace, key);
+		if (i >= 0 && prefetched.getNodeId(i) != ILookupRepository.NOT_FOUND) {
+			return prefetched.getNodeId(i);
+		}
+		long nodeId;
+		if (i >= 0) {
+			// the prefetch counted the key as a miss
+			nodeId = meteredLookup.getOrCreateCounted(namespace, key, creator);
+			prefetched.setNodeId(i, nodeId);
+		} else {
+			nodeId = lookupRepository.getOrCreate(namespace, key, creator);
+		}
+		return nodeId;
+	}
 
-		// process artists
-		List<Path> files = FileFinder.getFileList(artistsDirectory, "*.json");
-		for (Path f : files) {
-			Artist artist = new ObjectMapper().readValue(f.toFile(), Artist.class);
-			Long artistNode = addArtistNode(artist);
-	        connectArtistToMovements(artistNode, artist.getMovements());
-	        connectArtistToBirthPlace(artistNode, artist.getBirth());
-		}
-
-		// process artworks
-		files = FileFinder.getFileList(artworksDirectory, "*.json");		
-		for (Path f : files) {
-			Artwork artwork = new ObjectMapper().readValue(f.toFile(), Artwork.class);
-			try {
-				Long artworkNode = addArtworkNode(artwork);			
-			
-				connectArtworkToArtists(artworkNode, artwork.getContributors());
-				
-				if (artwork.getCatalogueGroup() != null && artwork.getCatalogueGroup().getId() != null) {
-					connectArtworkToCatalogueGroup(artworkNode, artwork.getCatalogueGroup());
+	/**
+	 * Get or create a node, using the prefetched keys where possible.
+	 * 
+	 * @return Physical node id
+	 */
+	private long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator) {
+		int i = prefetched.indexOf(namespace, key);
+		if (i >= 0 && prefetched.getNodeId(i) != ILookupRepository.NOT_FOUND) {
+			return prefetched.getNodeId(i);
+		}
+		long nodeId;
+		if (i >= 0) {
+			// the prefetch counted the key as a miss
+			nodeId = meteredLookup.getOrCreateCounted(namespace, key, creator);
+			prefetched.setNodeId(i, nodeId);
+		} else {
+			nodeId = lookupRepository.getOrCreate(namespace, key, creator);
+		}
+		return nodeId;
+	}
+
+	/**
+	 * Remove a lookup entry, unless the key has since been given to another node.
+	 */
+	private void removeLookup(LookupNamespace namespace, int key, long nodeId) {
+		if (lookupRepository.get(namespace, key) == nodeId) {
+			lookupRepository.remove(namespace, key);
+		}
+	}
+
+	private void removeLookup(LookupNamespace namespace, String key, long nodeId) {
+		if (lookupRepository.get(namespace, key) == nodeId) {
+			lookupRepository.remove(namespace, key);
+		}
+	}
+
+	/**
+	 * Create an artist and connect it to its movements and birth place.
+	 * 
+	 * @param artist
+	 * @param existingNode	Node of a changed artist, or ILookupRepository.NOT_FOUND
+	 * @return Physical node id of the artist
+	 */
+	private long importArtist(Artist artist, long existingNode) {
+		long start = System.nanoTime();
+		long artistNode = addArtistNode(artist, existingNode);
+        connectArtistToMovements(artistNode, artist.getMovements());
+        connectArtistToBirthPlace(artistNode, artist.getBirth());
+        metrics.time(Phase.WRITE_ARTIST, start);
+        return artistNode;
+	}
+
+	/**
+	 * Create an artwork and connect it to its artists and related entities.
+	 * Every lookup key the artwork refers to is first resolved with a single
+	 * call to the lookup repository; for Redis this replaces a round trip per
+	 * contributor, movement, subject and medium with one pipeline.
+	 * 
+	 * @param artwork
+	 * @param existingNode	Node of a changed artwork, or ILookupRepository.NOT_FOUND
+	 * @return false if the artwork couldn't be imported
+	 */
+	private boolean importArtwork(ArtworkRecord artwork, long existingNode) {
+		long start = System.nanoTime();
+		boolean imported = true;
+		artworkWriter.reset(existingNode);
+		try {
+			prefetched.clear();
+			if (prefetchLookups) {
+				artwork.emit(artworkKeyCollector);
+				lookupRepository.getAll(prefetched);
+			}
+			artwork.emit(artworkWriter);
+        } catch (Exception e) {
+        	metrics.recordFailed();
+			System.out.println("Problem with artwork: " + artwork.getAcno());
+			imported = false;
+		}
+		metrics.time(Phase.WRITE_ARTWORK, start);
+		return imported;
+	}
+
+	/**
+	 * Collects the lookup keys an artwork refers to into the prefetch batch.
+	 */
+	private class ArtworkKeyCollector implements ArtworkHandler {
+
+		@Override
+		public void startArtwork(int id, String acno, String title) {
+		}
+
+		@Override
+		public void contributor(int artistId) {
+			prefetched.add(LookupNamespace.ARTIST, artistId);
+		}
+
+		@Override
+		public void catalogueGroup(int id, String shortTitle) {
+			prefetched.add(LookupNamespace.CATALOGUE_GROUP, id);
+		}
+
+		@Override
+		public void movement(int id, String name) {
+			prefetched.add(LookupNamespace.MOVEMENT, id);
+		}
+
+		@Override
+		public void subject(int level, int id, String name) {
+			if (!subjectNodes.containsKey(id)) {
+				prefetched.add(LookupNamespace.SUBJECT, id);
+			}
+		}
+
+		@Override
+		public void classification(String classification) {
+			prefetched.add(LookupNamespace.CLASSIFICATION, classification);
+		}
+
+		@Override
+		public void medium(String medium) {
+			// already resolved mediums need no lookups
+			if (!mediumNodes.containsKey(medium)) {
+				int count = mediumTokenizer.tokenize(medium);
+				for (int i = 0; i < count; i++) {
+					prefetched.add(LookupNamespace.MEDIUM, mediumTokenizer.token(i));
 				}
-				
-		        connectArtworkToMovements(artworkNode, artwork.getMovements());
-		        	        
-		        // connect subjects with the artwork
-		        if (artwork.getSubjects() != null && artwork.getSubjects().getChildren() != null) {
-		        	connectArtworkToSubjects(artworkNode, artwork.getSubjects().getChildren());
-		        }
-		        
-		        // connect classification to the artwork
-		        if (artwork.getClassification() != null) {
-		        	connectArtworkToClassification(artworkNode, artwork.getClassification());
-		        }
-		        
-		        // connect mediums to the artwork
-		        if (artwork.getMedium() != null) {
-		        	connectArtworkToMediums(artworkNode, artwork.getMedium());
-		        }
-		        
-	        } catch (Exception e) {
-    			System.out.println("Problem with artwork: " + artwork.getAcno());
 			}
 		}
-		
-        inserter.shutdown();
-    }
+
+		@Override
+		public void endArtwork() {
+		}
+	}
+
+	/**
+	 * Creates the entities an artwork connects to, where necessary, but not
+	 * the artwork itself. Used by the pre-pass of import.artworks.prepass.
+	 */
+	private class DimensionWriter implements ArtworkHandler {
+
+		// the subject hierarchy is walked parents first, so remember the
+		// most recent node at each of the first two levels
+		private long s0Node;
+
+		private long s1Node;
+
+		private boolean s1NamedIndividuals;
+
+		@Override
+		public void startArtwork(int id, String acno, String title) {
+			s0Node = ILookupRepository.NOT_FOUND;
+			s1Node = ILookupRepository.NOT_FOUND;
+			s1NamedIndividuals = false;
+		}
+
+		@Override
+		public void contributor(int artistId) {
+		}
+
+		@Override
+		public void catalogueGroup(int id, String shortTitle) {
+			getOrCreateCatalogueNode(id, shortTitle);
+		}
+
+		@Override
+		public void movement(int id, String name) {
+			getOrCreateMovementNode(id, name);
+		}
+
+		@Override
+		public void subject(int level, int id, String name) {
+			subjectNode(level, id, name);
+		}
+
+		/**
+		 * Get or create a subject node, along with its TYPE_OF relationship.
+		 * 
+		 * @return Physical node id
+		 */
+		long subjectNode(int level, int id, String name) {
+			switch (level) {
+			case 0:		// container for subjects
+				s0Node = getOrCreateSubjectNode(id, name, ILookupRepository.NOT_FOUND, false);
+				return s0Node;
+			case 1:		// top level
+				s1Node = getOrCreateSubjectNode(id, name, s0Node, false);
+				s1NamedIndividuals = Subject.NAMED_INDIVIDUALS.equals(name);
+				return s1Node;
+			default:	// 2nd level, connected to the artwork
+				return getOrCreateSubjectNode(id, name, s1Node, s1NamedIndividuals);
+			}
+		}
+
+		@Override
+		public void classification(String classification) {
+			getOrCreateClassification(classification);
+		}
+
+		@Override
+		public void medium(String medium) {
+			getOrCreateMediumNodes(medium);
+		}
+
+		@Override
+		public void endArtwork() {
+		}
+	}
+
+	/**
+	 * Creates the artwork node and connects it to its artists and related
+	 * entities, creating those where necessary.
+	 */
+	private class ArtworkWriter extends DimensionWriter {
+
+		private long existingNode = ILookupRepository.NOT_FOUND;
+
+		private long artworkNode = ILookupRepository.NOT_FOUND;
+
+		private boolean contributorMissing;
+
+		/**
+		 * Prepare for the next artwork.
+		 * 
+		 * @param existingNode	Node to reuse, or ILookupRepository.NOT_FOUND
+		 */
+		void reset(long existingNode) {
+			this.existingNode = existingNode;
+			artworkNode = ILookupRepository.NOT_FOUND;
+			contributorMissing = false;
+		}
+
+		/**
+		 * @return true if a contributor of the last artwork wasn't among the
+		 * 			artists
+		 */
+		boolean isContributorMissing() {
+			return contributorMissing;
+		}
+
+		/**
+		 * @return Node of the last artwork, or ILookupRepository.NOT_FOUND if
+		 * 			it failed before the node was created
+		 */
+		long getArtworkNode() {
+			return artworkNode;
+		}
+
+		@Override
+		public void startArtwork(int id, String acno, String title) {
+			artworkNode = addArtworkNode(existingNode, id, acno, title);
+			super.startArtwork(id, acno, title);
+		}
+
+		@Override
+		public void contributor(int artistId) {
+			if (!connectArtworkToArtist(artworkNode, artistId)) {
+				contributorMissing = true;
+			}
+		}
+
+		@Override
+		public void catalogueGroup(int id, String shortTitle) {
+			connectArtworkToCatalogueGroup(artworkNode, id, shortTitle);
+		}
+
+		@Override
+		public void movement(int id, String name) {
+			connectArtworkToMovement(artworkNode, id, name);
+		}
+
+		@Override
+		public void subject(int level, int id, String name) {
+			long subjectNode = subjectNode(level, id, name);
+			if (level >= 2) {
+				createRelationship(artworkNode, subjectNode, FEATURES, null);
+			}
+		}
+
+		@Override
+		public void classification(String classification) {
+			connectArtworkToClassification(artworkNode, classification);
+		}
+
+		@Override
+		public void medium(String medium) {
+			connectArtworkToMediums(artworkNode, medium);
+		}
+	}
+
+	/**
+	 * An artwork whose relationships have been resolved to the nodes they
+	 * connect to, ready to be written.
+	 */
+	private static class PreparedArtwork {
+
+		final ArtworkRecord record;
+
+		// node at the other end of each relationship, and its type
+		final List<RelationshipType> types = new ArrayList<>();
+		long[] nodes = new long[16];
+
+		// why the artwork couldn't be prepared, or null
+		String problem;
+
+		// a contributor wasn't among the artists
+		boolean contributorMissing;
+
+		PreparedArtwork(ArtworkRecord record) {
+			this.record = record;
+		}
+
+		void add(RelationshipType type, long node) {
+			if (types.size() == nodes.length) {
+				nodes = Arrays.copyOf(nodes, nodes.length << 1);
+			}
+			nodes[types.size()] = node;
+			types.add(type);
+		}
+	}
+
+	/**
+	 * Resolves the relationships of an artwork against the frozen lookup.
+	 * Called on the parser threads, so holds no state beyond the artwork.
+	 */
+	private class ArtworkPreparer implements ArtworkHandler {
+
+		private final PreparedArtwork prepared;
+
+		ArtworkPreparer(PreparedArtwork prepared) {
+			this.prepared = prepared;
+		}
+
+		private long node(LookupNamespace namespace, long node, Object key) {
+			if (node == ILookupRepository.NOT_FOUND) {
+				throw new IllegalStateException(namespace + " " + key + " wasn't created by the pre-pass");
+			}
+			return node;
+		}
+
+		@Override
+		public void startArtwork(int id, String acno, String title) {
+		}
+
+		@Override
+		public void contributor(int artistId) {
+			// as when writing directly, unknown artists are left out
+			long node = frozenLookup.get(LookupNamespace.ARTIST, artistId);
+			if (node != ILookupRepository.NOT_FOUND) {
+				prepared.add(CONTRIBUTED_TO, node);
+			} else {
+				prepared.contributorMissing = true;
+				metrics.contributorMissing();
+			}
+		}
+
+		@Override
+		public void catalogueGroup(int id, String shortTitle) {
+			prepared.add(BELONGS_TO, node(LookupNamespace.CATALOGUE_GROUP,
+					frozenLookup.get(LookupNamespace.CATALOGUE_GROUP, id), id));
+		}
+
+		@Override
+		public void movement(int id, String name) {
+			prepared.add(PART_OF, node(LookupNamespace.MOVEMENT, frozenLookup.get(LookupNamespace.MOVEMENT, id), id));
+		}
+
+		@Override
+		public void subject(int level, int id, String name) {
+			// parents are connected to their children by the pre-pass
+			if (level >= 2) {
+				prepared.add(FEATURES, node(LookupNamespace.SUBJECT, frozenLookup.get(LookupNamespace.SUBJECT, id), id));
+			}
+		}
+
+		@Override
+		public void classification(String classification) {
+			prepared.add(CLASSIFIED_AS, node(LookupNamespace.CLASSIFICATION,
+					frozenLookup.get(LookupNamespace.CLASSIFICATION, classification), classification));
+		}
+
+		@Override
+		public void medium(String medium) {
+			for (String name : MediumTokenizer.split(medium)) {
+				prepared.add(COMPRISED_OF, node(LookupNamespace.MEDIUM, frozenLookup.get(LookupNamespace.MEDIUM, name), name));
+			}
+		}
+
+		@Override
+		public void endArtwork() {
+		}
+	}
+
+	/**
+	 * Resolve an artwork's relationships. Called on the parser threads.
+	 */
+	private PreparedArtwork prepareArtwork(ArtworkRecord artwork) {
+		long start = System.nanoTime();
+		PreparedArtwork prepared = new PreparedArtwork(artwork);
+		try {
+			artwork.emit(new ArtworkPreparer(prepared));
+		} catch (RuntimeException e) {
+			prepared.problem = e.getMessage();
+		}
+		metrics.time(Phase.PREPARE_ARTWORK, start);
+		return prepared;
+	}
+
+	/**
+	 * Create a prepared artwork and its relationships.
+	 * 
+	 * @param artwork
+	 * @param existingNode	Node of a changed artwork, or ILookupRepository.NOT_FOUND
+	 * @return Node of the artwork, or ILookupRepository.NOT_FOUND if the
+	 * 			pre-pass failed on it or it couldn't be prepared
+	 */
+	private long writeArtwork(PreparedArtwork artwork, long existingNode) {
+		if (prepassFailures.contains(artwork.record.getId())) {
+			return ILookupRepository.NOT_FOUND;
+		}
+		if (artwork.problem != null) {
+			metrics.recordFailed();
+			System.out.println("Problem with artwork: " + artwork.record.getAcno() + " (" + artwork.problem + ")");
+			return ILookupRepository.NOT_FOUND;
+		}
+		long start = System.nanoTime();
+		ArtworkRecord record = artwork.record;
+		long artworkNode = addArtworkNode(existingNode, record.getId(), record.getAcno(), record.getTitle());
+		for (int i = 0; i < artwork.types.size(); i++) {
+			RelationshipType type = artwork.types.get(i);
+			if (type == CONTRIBUTED_TO) {
+				createRelationship(artwork.nodes[i], artworkNode, type, null);
+			} else {
+				createRelationship(artworkNode, artwork.nodes[i], type, null);
+			}
+		}
+		metrics.time(Phase.WRITE_ARTWORK, start);
+		return artworkNode;
+	}
+
+	/**
+	 * Create every entity the artworks at a location connect to - catalogue
+	 * groups, movements, subjects, classifications and mediums - then freeze
+	 * the lookup. The files are parsed on the parser threads while the nodes
+	 * are created on this one; each value is created once, however many
+	 * artworks share it.
+	 * 
+	 * @param location	Directory or record file of artworks
+	 * @param parser
+	 * @throws IOException
+	 */
+	private void createArtworkDimensions(String location, BulkFileReader.BufferParser<ArtworkRecord> parser)
+			throws IOException {
+		long start = System.nanoTime();
+		prepassFailures.clear();
+		parseInput(location, Kind.ARTWORK, 0, false, parser, input -> {
+			ArtworkRecord artwork = input.record;
+			try {
+				prefetched.clear();
+				if (prefetchLookups) {
+					artwork.emit(artworkKeyCollector);
+					lookupRepository.getAll(prefetched);
+				}
+				artwork.emit(dimensionWriter);
+			} catch (Exception e) {
+				// the artwork is left out when it's written, not counted again
+				prepassFailures.add(artwork.getId());
+				metrics.recordFailed();
+				System.out.println("Problem with artwork in pre-pass: " + artwork.getAcno() + " (" + e.getMessage() + ")");
+			}
+		});
+		frozenLookup = FrozenLookup.of(lookupRepository, LookupNamespace.ARTIST, LookupNamespace.CATALOGUE_GROUP,
+				LookupNamespace.MOVEMENT, LookupNamespace.SUBJECT, LookupNamespace.CLASSIFICATION,
+				LookupNamespace.MEDIUM);
+		metrics.time(Phase.PREPASS, start);
+		System.out.println("Pre-pass: " + frozenLookup.size() + " lookup entries frozen in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * Read every artwork for its first contributor and catalogue group, and
+	 * put the artwork files, or records, in the order of ArtworkOrder for
+	 * parseInput to import them in. Records are held in memory until then;
+	 * for directories only the paths are.
+	 * 
+	 * @throws IOException
+	 */
+	private void orderArtworks(String location, BulkFileReader.BufferParser<ArtworkRecord> parser)
+			throws IOException {
+		long start = System.nanoTime();
+		ArtworkOrder order = new ArtworkOrder();
+		Path path = Paths.get(location);
+		if (Files.isDirectory(path)) {
+			List<Path> files;
+			try (Stream<Path> found = FileFinder.streamFiles(location, "*.json", finderThreads)) {
+				files = found.collect(Collectors.toList());
+			}
+			new ParallelParser<Path, ArtworkRecord>(f -> fileReader.read(f, parser), parserThreads, parserQueueSize)
+					.parse(files, order::add);
+			artworkFiles = order.sort(files);
+		} else {
+			List<byte[]> records;
+			try (Stream<byte[]> found = JsonRecords.open(path)) {
+				records = found.collect(Collectors.toList());
+			}
+			new ParallelParser<byte[], ArtworkRecord>(r -> parser.parse(r, r.length), parserThreads, parserQueueSize)
+					.parse(records, order::add);
+			artworkRecords = order.sort(records);
+		}
+		metrics.time(Phase.ORDER_ARTWORKS, start);
+		System.out.println(order.size() + " artworks ordered by contributor and catalogue group in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * A record parsed from a file, or from an NDJSON file or archive, in
+	 * which case there's no source.
+	 */
+	private static class Input<T> {
+
+		// path of the file relative to the input directory
+		final String source;
+
+		// content hash of the file, if a manifest is being kept
+		final String hash;
+
+		// null if the file is unchanged since the last import and wasn't parsed
+		final T record;
+
+		Input(String source, String hash, T record) {
+			this.source = source;
+			this.hash = hash;
+			this.record = record;
+		}
+	}
+
+	/**
+	 * Parse every record at a location and pass them, in order, to the writer.
+	 * The location is either a directory of json files, walked recursively, or
+	 * a single NDJSON file or archive of json files (see JsonRecords). Files
+	 * whose content is unchanged since the import recorded in the manifest
+	 * aren't parsed or written.
+	 * 
+	 * @param location	Directory or record file
+	 * @param kind		What the records are, for the manifest
+	 * @param skip		Number of records at the start to skip, as they were
+	 * 					imported before a checkpoint
+	 * @param counted	false for a pre-pass, whose records are neither counted
+	 * 					towards checkpoints nor noted in the manifest
+	 * @param parser	Parses one record from a buffer
+	 * @param writer	Called on this thread for each record
+	 * @throws IOException
+	 */
+	private <T> void parseInput(String location, Kind kind, int skip, boolean counted,
+			BulkFileReader.BufferParser<T> parser, Consumer<Input<T>> writer) throws IOException {
+		BulkFileReader.BufferParser<T> timedParser = (buffer, length) -> {
+			long start = System.nanoTime();
+			T parsed = parser.parse(buffer, length);
+			metrics.time(Phase.PARSE, start);
+			metrics.recordParsed();
+			return parsed;
+		};
+		Path path = Paths.get(location);
+		if (Files.isDirectory(path)) {
+			try (Stream<Path> files = kind == Kind.ARTWORK && artworkFiles != null ? artworkFiles.stream()
+					: FileFinder.streamFiles(location, "*.json", finderThreads)) {
+				new ParallelParser<Path, Input<T>>(f -> fileReader.read(f,
+						(buffer, length) -> parseFile(path.relativize(f).toString(), kind, timedParser, buffer, length)),
+						parserThreads, parserQueueSize).parse(files.skip(skip)::iterator, input -> {
+							if (input.record != null) {
+								writer.accept(input);
+							} else if (counted) {
+								manifest.unchanged(kind, input.source);
+							}
+							if (counted) {
+								recordDone(kind);
+							}
+						});
+			}
+		} else {
+			try (Stream<byte[]> records = kind == Kind.ARTWORK && artworkRecords != null ? artworkRecords.stream()
+					: JsonRecords.open(path)) {
+				new ParallelParser<byte[], Input<T>>(r -> new Input<>(null, null, timedParser.parse(r, r.length)),
+						parserThreads, parserQueueSize).parse(records.skip(skip)::iterator, input -> {
+							writer.accept(input);
+							if (counted) {
+								recordDone(kind);
+							}
+						});
+			}
+		}
+	}
+
+	/**
+	 * Count a record as done, taking a checkpoint every
+	 * import.checkpoint.records records.
+	 */
+	private void recordDone(Kind kind) {
+		recordsDone[kind.ordinal()]++;
+		if (checkpoint != null && ++sinceCheckpoint >= checkpointRecords) {
+			try {
+				checkpoint();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Shut down the inserter, so the store is complete, and copy it along
+	 * with the import's progress. The inserter is then reopened on the store.
+	 * Redis lookup entries are written as they're made, so need no flushing;
+	 * an in-process lookup is saved with the store by import.lookup.snapshot.
+	 * 
+	 * @throws IOException
+	 */
+	private void checkpoint() throws IOException {
+		long start = System.nanoTime();
+		if (manifest != null) {
+			manifest.save(manifestFile);
+		}
+		writeLookupSnapshot();
+		sink.shutdown();
+		checkpoint.save(Paths.get(dbDir), recordsDone[Kind.ARTIST.ordinal()],
+				recordsDone[Kind.ARTWORK.ordinal()], highNodeId);
+		setupDb(dbDir);
+		sinceCheckpoint = 0;
+		metrics.time(Phase.CHECKPOINT, start);
+		System.out.println("Checkpoint: " + checkpoint.getArtists() + " artists, "
+				+ checkpoint.getArtworks() + " artworks");
+	}
+
+	/**
+	 * Restore the store from the last checkpoint, and remove the lookup
+	 * entries of nodes created after it.
+	 * 
+	 * @throws IOException
+	 */
+	private void resume() throws IOException {
+		if (!checkpoint.load()) {
+			throw new IllegalStateException("No checkpoint to resume from in " + checkpoint.getDirectory());
+		}
+		checkpoint.restore(Paths.get(dbDir));
+		loadLookupSnapshot();
+		long removed = lookupRepository.truncate(checkpoint.getHighNodeId());
+		highNodeId = checkpoint.getHighNodeId();
+		// the records skipped count as done, so later checkpoints count from
+		// the start of the input too
+		recordsDone[Kind.ARTIST.ordinal()] = checkpoint.getArtists();
+		recordsDone[Kind.ARTWORK.ordinal()] = checkpoint.getArtworks();
+		System.out.println("Resuming after " + checkpoint.getArtists() + " artists and "
+				+ checkpoint.getArtworks() + " artworks (" + removed + " lookup entries for lost nodes removed)");
+	}
+
+	/**
+	 * Parse a file, unless the manifest shows it's unchanged. Called on the
+	 * parser threads.
+	 */
+	private <T> Input<T> parseFile(String source, Kind kind, BulkFileReader.BufferParser<T> parser,
+			byte[] buffer, int length) throws IOException {
+		if (manifest == null) {
+			return new Input<>(source, null, parser.parse(buffer, length));
+		}
+		String hash = ImportManifest.hash(buffer, length);
+		if (manifest.isUnchanged(kind, source, hash)) {
+			return new Input<>(source, hash, null);
+		}
+		return new Input<>(source, hash, parser.parse(buffer, length));
+	}
+
+	/**
+	 * @return The node a file was imported as by an earlier import, or
+	 * 			ILookupRepository.NOT_FOUND
+	 */
+	private long existingNode(Kind kind, Input<?> input) {
+		if (manifest == null || input.source == null) {
+			return ILookupRepository.NOT_FOUND;
+		}
+		ImportManifest.Entry entry = manifest.get(kind, input.source);
+		return entry != null ? entry.getNodeId() : ILookupRepository.NOT_FOUND;
+	}
+
+	/**
+	 * Note the node a file was imported as in the manifest, if one is kept,
+	 * and count the artworks left without a node for verifying.
+	 * 
+	 * @param hash	Empty for a file to import again next time: one that failed,
+	 * 				or an artwork whose contributor wasn't among the artists, so
+	 * 				a delta that adds the artist connects it
+	 */
+	private void recordImport(Kind kind, Input<?> input, String hash, int entityId, long nodeId) {
+		if (kind == Kind.ARTWORK && nodeId == ILookupRepository.NOT_FOUND) {
+			artworksWithoutNode++;
+		}
+		if (manifest != null && input.source != null) {
+			manifest.put(kind, input.source, hash, entityId, nodeId);
+		}
+	}
+
+	/**
+	 * Delete the nodes of the artists and artworks whose files have gone since
+	 * the last import. An artist that is also featured in artworks, as a named
+	 * individual, is kept as a person.
+	 */
+	private void removeDeleted() {
+		for (ImportManifest.Entry entry : manifest.unseen(Kind.ARTWORK)) {
+			long node = entry.getNodeId();
+			if (node != ILookupRepository.NOT_FOUND) {
+				pruneCandidates.addAll(updatableSink.deleteRelationships(node, Direction.OUTGOING,
+						PART_OF, FEATURES, BELONGS_TO, CLASSIFIED_AS, COMPRISED_OF));
+				updatableSink.deleteNode(node);
+			}
+			manifest.remove(entry);
+		}
+		for (ImportManifest.Entry entry : manifest.unseen(Kind.ARTIST)) {
+			long node = entry.getNodeId();
+			if (!renamedArtists.contains(node)) {
+				removeLookup(LookupNamespace.ARTIST, entry.getEntityId(), node);
+				updatableSink.deleteRelationships(node, Direction.OUTGOING, CONTRIBUTED_TO);
+				pruneCandidates.addAll(updatableSink.deleteRelationships(node, Direction.OUTGOING,
+						BORN_IN, INVOLVED_IN));
+				// leave the person a named individual of the same name would be,
+				// deleted below unless artworks feature them
+				Map<String, Object> properties = nodeProperties();
+				Object name = updatableSink.getNodeProperty(node, "name");
+				if (name != null) {
+					properties.put("name", name);
+				}
+				updatableSink.setNodeProperties(node, properties);
+				updatableSink.removeLabels(node, ARTIST, _ARTIST, _PERSON);
+				pruneCandidates.add(node);
+			}
+			// a renamed artist is still there, under its new file name
+			manifest.remove(entry);
+		}
+		renamedArtists.clear();
+		pruneUnreferenced();
+	}
+
+	/**
+	 * Delete the nodes that lost a relationship in this delta and that nothing
+	 * refers to any more, such as the mediums only a removed artwork was
+	 * comprised of, along with their lookup entries. A full import of the
+	 * files left wouldn't have created them. Once a subject has gone, the
+	 * subject it is a type of is checked in turn.
+	 */
+	private void pruneUnreferenced() {
+		Deque<Long> candidates = new ArrayDeque<>(pruneCandidates);
+		pruneCandidates.clear();
+		Set<Long> deleted = new HashSet<>();
+		Set<Long> persons = new HashSet<>();
+		while (!candidates.isEmpty()) {
+			long node = candidates.pop();
+			if (deleted.contains(node) || updatableSink.hasRelationships(node, Direction.INCOMING)
+					|| updatableSink.hasLabel(node, ARTIST) || updatableSink.hasLabel(node, ARTWORK)) {
+				continue;
+			}
+			if (updatableSink.hasLabel(node, PERSON)) {
+				persons.add(node);
+			}
+			removeLookups(node);
+			candidates.addAll(updatableSink.deleteRelationships(node, Direction.OUTGOING, TYPE_OF));
+			updatableSink.deleteNode(node);
+			deleted.add(node);
+		}
+		if (!persons.isEmpty()) {
+			// a named individual is also looked up by the id of its subject,
+			// which the person node doesn't keep
+			List<Integer> subjects = new ArrayList<>();
+			lookupRepository.forEachEntry(LookupNamespace.SUBJECT, new LookupEntryVisitor() {
+				@Override
+				public void entry(LookupNamespace namespace, int key, long nodeId) {
+					if (persons.contains(nodeId)) {
+						subjects.add(key);
+					}
+				}
+
+				@Override
+				public void entry(LookupNamespace namespace, String key, long nodeId) {
+				}
+			});
+			for (int subject : subjects) {
+				lookupRepository.remove(LookupNamespace.SUBJECT, subject);
+			}
+		}
+	}
+
+	/**
+	 * Remove the lookup entry of a node about to be deleted, found from its
+	 * label and the property it was created with.
+	 */
+	private void removeLookups(long node) {
+		Object id = updatableSink.getNodeProperty(node, "id");
+		Object name = updatableSink.getNodeProperty(node, "name");
+		if (updatableSink.hasLabel(node, SUBJECT)) {
+			removeLookup(LookupNamespace.SUBJECT, (Integer) id, node);
+		} else if (updatableSink.hasLabel(node, MOVEMENT)) {
+			removeLookup(LookupNamespace.MOVEMENT, (Integer) id, node);
+		} else if (updatableSink.hasLabel(node, CATALOGUE_GROUP)) {
+			removeLookup(LookupNamespace.CATALOGUE_GROUP, (Integer) id, node);
+		} else if (updatableSink.hasLabel(node, PERSON)) {
+			removeLookup(LookupNamespace.PERSON_BY_NAME, (String) name, node);
+		} else if (updatableSink.hasLabel(node, PLACE)) {
+			removeLookup(LookupNamespace.PLACE, (String) name, node);
+		} else if (updatableSink.hasLabel(node, CLASSIFICATION)) {
+			removeLookup(LookupNamespace.CLASSIFICATION, (String) name, node);
+		} else if (updatableSink.hasLabel(node, MEDIUM)) {
+			removeLookup(LookupNamespace.MEDIUM, (String) name, node);
+		}
+	}
+
+	/**
+	 * Write every lookup entry to lookup.snapshot in the store directory, if
+	 * import.lookup.snapshot is set.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeLookupSnapshot() throws IOException {
+		if (lookupSnapshot) {
+			long entries = LookupSnapshot.write(lookupRepository, Paths.get(dbDir, SNAPSHOT_FILE));
+			System.out.println("Lookup snapshot: " + entries + " entries");
+		}
+	}
+
+	/**
+	 * Load the lookup saved by an earlier import into the in-process lookup.
+	 * A Redis lookup already holds the entries, so isn't loaded.
+	 * 
+	 * @throws IOException
+	 */
+	private void loadLookupSnapshot() throws IOException {
+		if (!lookupSnapshot || lookupRepository.isPersistent()) {
+			return;
+		}
+		Path file = Paths.get(dbDir, SNAPSHOT_FILE);
+		if (!Files.exists(file)) {
+			throw new IllegalStateException("No " + SNAPSHOT_FILE + " in " + dbDir + " to load the lookup from");
+		}
+		long start = System.nanoTime();
+		long entries = LookupSnapshot.read(file, mapLookupSnapshot, lookupRepository);
+		System.out.println("Loaded " + entries + " lookup entries in "
+				+ (System.nanoTime() - start) / 1000000 + "ms");
+	}
+
+	/**
+	 * Main import algorithm implemented here. We process artists first so that
+	 * we can then link them to the artworks process thereafter. JSON records are
+	 * parsed on import.parser.threads threads, while all writes to the batch
+	 * inserter happen on this thread in input order. Artworks are databound
+	 * unless import.parser.streaming is set, in which case only the fields
+	 * that are imported are read, by a token-level parser.
+	 * 
+	 * When the inputs are directories, the content hash and node of every file
+	 * is written to import-manifest.tsv in the store directory. With
+	 * import.delta set, the store and lookup of an earlier import are updated
+	 * instead: only files that are new or changed since the manifest was
+	 * written are imported, and the nodes of files that have gone are deleted.
+	 * 
+	 * With import.lookup.snapshot set, the lookup is saved to lookup.snapshot
+	 * in the store directory too, and loaded from there by deltas and resumed
+	 * imports, so these can use the in-process lookup rather than Redis.
+	 * 
+	 * With import.artworks.prepass set, the artworks are read twice: first to
+	 * create every entity they connect to, after which the lookup is frozen,
+	 * then to write the artworks, with each artwork's relationships resolved
+	 * on the parser threads.
+	 * 
+	 * With import.artworks.order set, the artworks are read once beforehand to
+	 * be imported grouped by their first contributor and catalogue group.
+	 * 
+	 * With import.relationships.order set, relationships are buffered, spilling
+	 * to disk past import.relationships.order.memory, and written once every
+	 * node has been created, in order of start node.
+	 * 
+	 * With import.verify set, the finished store is read back in parallel and
+	 * reconciled with what the import read and created, into a JSON report.
+	 * 
+	 * With import.checkpoint.records set, the store is copied to
+	 * &lt;store&gt;.checkpoint every so many records. If the import dies, run
+	 * it again with --resume to carry on from the last checkpoint.
+	 * 
+	 * @param args[0]	Neo4j database directory to create (or update, for a
+	 * 					delta), or with import.output=csv the directory to write
+	 * 					CSV files for neo4j-import to; not used when loading a
+	 * 					server (import.output=server)
+	 * @param args[1]	Directory of artist json files, or an NDJSON file / archive of them
+	 * @param args[2]	Directory of artwork json files, or an NDJSON file / archive of them
+	 * @param --resume	Resume from the last checkpoint
+	 */
+	@Override
+    public void run(String... args) throws Exception {
+		long started = System.nanoTime();
+		
+		// Spring passes --property=value options through as well
+		String[] paths = Arrays.stream(args).filter(arg -> !arg.startsWith("--")).toArray(String[]::new);
+		if (paths.length < 3) {
+			System.out.println("Usage: <store dir> <artists dir or file> <artworks dir or file> [--resume]");
+			return;
+		}
+		dbDir = paths[0];
+		String artistsLocation = paths[1];
+		String artworksLocation = paths[2];
+		boolean resume = Arrays.asList(args).contains("--resume");
+
+		boolean directories = Files.isDirectory(Paths.get(artistsLocation))
+				&& Files.isDirectory(Paths.get(artworksLocation));
+		boolean batch = !delta && !OTHER_OUTPUTS.contains(output);
+		// an in-process lookup outlives the import in its snapshot
+		boolean persistentLookup = lookupRepository.isPersistent() || lookupSnapshot;
+		if ((checkpointRecords > 0 || resume) && (!batch || !persistentLookup)) {
+			throw new IllegalStateException("Checkpoints need the batch inserter and a persistent lookup"
+					+ " (the redis profile, or import.lookup.snapshot)");
+		}
+		if (verify && !batch) {
+			throw new IllegalStateException("import.verify needs a new store built by the batch inserter");
+		}
+		if (verify && !resume) {
+			// a resumed import didn't create what came before its checkpoint
+			createdByLabel = new TreeMap<>();
+			createdByType = new TreeMap<>();
+		}
+		if (checkpointRecords > 0 || resume) {
+			checkpoint = new ImportCheckpoint(Paths.get(dbDir + ".checkpoint"));
+		}
+		if (resume) {
+			resume();
+		}
+
+		manifestFile = Paths.get(dbDir, MANIFEST_FILE);
+		if (delta) {
+			if (OTHER_OUTPUTS.contains(output)) {
+				throw new IllegalStateException("import.delta can't be used with import.output=" + output);
+			}
+			if (!directories) {
+				throw new IllegalStateException("import.delta needs directories of artist and artwork files");
+			}
+			if (!persistentLookup) {
+				throw new IllegalStateException("import.delta needs the lookup of the earlier import"
+						+ " (the redis or mapped lookup, or import.lookup.snapshot)");
+			}
+			if (orderRelationships) {
+				throw new IllegalStateException("import.relationships.order can't be used with import.delta");
+			}
+			if (!Files.exists(manifestFile)) {
+				throw new IllegalStateException("No " + MANIFEST_FILE + " in " + dbDir + "; run a full import first");
+			}
+			manifest = ImportManifest.load(manifestFile);
+			loadLookupSnapshot();
+		} else if (writeManifest && directories && batch) {
+			// a resumed import carries on with the manifest of its checkpoint
+			manifest = resume ? ImportManifest.load(manifestFile) : new ImportManifest();
+		}
+
+		if (batch && storeSizing) {
+			sizeStore(artistsLocation, artworksLocation, resume);
+		}
+		setupDb(dbDir);
+		if (dedupRelationships) {
+			createdRelationships = new RelationshipSet();
+		}
+		meteredLookup = new MeteredLookupRepository(lookupRepository, metrics);
+		lookupRepository = meteredLookup;
+		metrics.startProgress(progressSeconds);
+
+		// process artists
+		int skipArtists = resume ? checkpoint.getArtists() : 0;
+		parseInput(artistsLocation, Kind.ARTIST, skipArtists, true, (buffer, length) -> artistReader.readValue(buffer, 0, length),
+				(Input<Artist> input) -> {
+					long node = importArtist(input.record, existingNode(Kind.ARTIST, input));
+					recordImport(Kind.ARTIST, input, input.hash, input.record.getId(), node);
+				});
+
+		// process artworks - only once all artists have been imported
+		BulkFileReader.BufferParser<ArtworkRecord> artworkParser = streamingParser
+				? (buffer, length) -> streamingArtworkParser.parse(buffer, 0, length)
+				: (buffer, length) -> ArtworkRecord.from(artworkReader.readValue(buffer, 0, length));
+		int skipArtworks = resume ? checkpoint.getArtworks() : 0;
+		if (orderArtworks) {
+			// the same order every time, so a resumed import skips the same artworks
+			orderArtworks(artworksLocation, artworkParser);
+		}
+		if (artworkPrepass) {
+			// every entity is created up front, so only the artworks themselves
+			// and their relationships are left for this thread to write
+			createArtworkDimensions(artworksLocation, artworkParser);
+			parseInput(artworksLocation, Kind.ARTWORK, skipArtworks, true,
+					(buffer, length) -> prepareArtwork(artworkParser.parse(buffer, length)), input -> {
+						long node = writeArtwork(input.record, existingNode(Kind.ARTWORK, input));
+						boolean complete = node != ILookupRepository.NOT_FOUND && !input.record.contributorMissing;
+						recordImport(Kind.ARTWORK, input, complete ? input.hash : "", input.record.record.getId(), node);
+					});
+		} else {
+			parseInput(artworksLocation, Kind.ARTWORK, skipArtworks, true, artworkParser, input -> {
+				boolean imported = importArtwork(input.record, existingNode(Kind.ARTWORK, input));
+				boolean complete = imported && !artworkWriter.isContributorMissing();
+				recordImport(Kind.ARTWORK, input, complete ? input.hash : "", input.record.getId(),
+						artworkWriter.getArtworkNode());
+			});
+		}
+
+		if (delta) {
+			removeDeleted();
+		}
+		if (orderingSink != null) {
+			long start = System.nanoTime();
+			int spills = orderingSink.getSpills();
+			long relationships = orderingSink.flush();
+			metrics.time(Phase.ORDER_RELATIONSHIPS, start);
+			System.out.println("Ordered " + relationships + " relationships"
+					+ (spills > 0 ? " (spilled to disk " + spills + " times)" : "") + " in "
+					+ (System.nanoTime() - start) / 1000000 + "ms");
+		}
+		createIndexes();
+		
+		// shutting down flushes the stores and builds the deferred indexes
+		long start = System.nanoTime();
+        sink.shutdown();
+        metrics.time(Phase.SHUTDOWN, start);
+        metrics.stopProgress();
+
+        // written once the store is complete, so it never describes a store
+        // that doesn't exist
+        if (manifest != null) {
+        	manifest.save(manifestFile);
+        	if (delta) {
+        		System.out.println(manifest.summary());
+        	}
+        }
+        writeLookupSnapshot();
+        if (checkpoint != null) {
+        	checkpoint.delete();
+        }
+        if (verify) {
+        	verifyStore(System.nanoTime() - started);
+        }
+        
+        if (lookupRepository.getRoundTrips() > 0) {
+        	System.out.println("Lookup round trips: " + lookupRepository.getRoundTrips()
+        			+ " (" + lookupRepository.getRoundTripsSaved() + " saved by batching)");
+        }
+        writeMetricsReport();
+    }
+
+	/**
+	 * Open the finished store and count what is in it on import.verify.threads
+	 * threads, reconciling the counts with what was read and created, unless
+	 * the import was resumed. The report is written to import.verify.report,
+	 * or import-verification.json in the store.
+	 * 
+	 * @param importNanos	Time the import took, to compare against
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void verifyStore(long importNanos) throws IOException, InterruptedException {
+		GraphDatabaseService db = StoreVerifier.open(dbDir);
+		VerificationReport report;
+		try {
+			report = new StoreVerifier(db, verifyThreads).verify(highNodeId);
+		} finally {
+			db.shutdown();
+		}
+		if (createdByLabel != null) {
+			reconcile(report);
+		} else {
+			System.out.println("Resumed import: store counted, not reconciled");
+		}
+		System.out.println("Verifying took " + report.getMillis() * 100 / Math.max(1, importNanos / 1000000)
+				+ "% of the import's time");
+		System.out.println(report.summary());
+		Path file = verifyReport.isEmpty() ? Paths.get(dbDir, VERIFICATION_FILE) : Paths.get(verifyReport);
+		report.write(file);
+	}
+
+	/**
+	 * Check the store holds a node for every artist and artwork record read
+	 * (less the artworks that failed before their node was created), and as many nodes of each label and
+	 * relationships of each type as were created, and that no contributor was
+	 * left out for want of an artist.
+	 */
+	private void reconcile(VerificationReport report) {
+		report.expect("artist records", recordsDone[Kind.ARTIST.ordinal()], report.getNodes("Artist"));
+		// an artwork can fail after its node is created, so failures aren't
+		// all missing nodes
+		report.expect("artwork records with a node", recordsDone[Kind.ARTWORK.ordinal()] - artworksWithoutNode,
+				report.getNodes("Artwork"));
+		Set<String> labels = new TreeSet<>(createdByLabel.keySet());
+		report.getLabels().forEach(labels::add);
+		for (String label : labels) {
+			long[] created = createdByLabel.get(label);
+			report.expect("nodes :" + label, created != null ? created[0] : 0, report.getNodes(label));
+		}
+		Set<String> types = new TreeSet<>(createdByType.keySet());
+		report.getTypes().forEach(types::add);
+		for (String type : types) {
+			long[] created = createdByType.get(type);
+			report.expect("relationships [:" + type + "]", created != null ? created[0] : 0,
+					report.getRelationships(type));
+		}
+		report.expect("artwork contributors missing", 0, metrics.getMissingContributors());
+	}
+
+	/**
+	 * Print the metrics summary as JSON, and also write it to the file named by
+	 * import.metrics.report if set.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeMetricsReport() throws IOException {
+		metrics.writeSummary(System.out);
+		if (!metricsReport.isEmpty()) {
+			try (OutputStream out = Files.newOutputStream(Paths.get(metricsReport))) {
+				metrics.writeSummary(out);
+			}
+		}
+	}
 
 	/**
 	 * Entry point into application. Delegates to Spring boot command line runner.
@@ -2,11 +2,13 @@ package io.larkin.tate2neo;
 
 import java.util.List;
 
-import org.codehaus.jackson.annotate.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Subject {
 
+	public static final String NAMED_INDIVIDUALS = "named individuals";
+
 	private int id;
 	
 	private String name;
@@ -38,6 +40,6 @@ public class Subject {
 	}
 
 	public boolean isNamedIndividuals() {
-		return this.name.equals("named individuals") ? true : false;
+		return NAMED_INDIVIDUALS.equals(this.name);
 	}
 }
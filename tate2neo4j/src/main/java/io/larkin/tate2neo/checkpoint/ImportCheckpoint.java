@@ -0,0 +1,187 @@
+package io.larkin.tate2neo.checkpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * A copy of the store as it was after a number of artists and artworks had
+ * been imported, so that an import which dies part way can resume from there
+ * rather than starting again. The BatchInserter only leaves a usable store
+ * once it has been shut down, and writes to its files in place, so a
+ * checkpoint shuts the inserter down and copies the whole store.
+ *
+ * The checkpoint directory holds the copy in store/ and the progress in
+ * checkpoint.properties. A new checkpoint is written alongside the last one
+ * and only replaces it once complete.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class ImportCheckpoint {
+
+	private static final String STORE = "store";
+
+	private static final String PROPERTIES = "checkpoint.properties";
+
+	private final Path directory;
+
+	private int artists;
+
+	private int artworks;
+
+	private long highNodeId;
+
+	/**
+	 * @param directory	Where checkpoints are kept, e.g. next to the store
+	 */
+	public ImportCheckpoint(Path directory) {
+		this.directory = directory;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return Number of artist records (files, or records of an NDJSON file
+	 * 			or archive) imported, in input order
+	 */
+	public int getArtists() {
+		return artists;
+	}
+
+	/**
+	 * @return Number of artwork records imported, in input order
+	 */
+	public int getArtworks() {
+		return artworks;
+	}
+
+	/**
+	 * @return One more than the highest node id in the checkpointed store
+	 */
+	public long getHighNodeId() {
+		return highNodeId;
+	}
+
+	/**
+	 * Read the progress of the last checkpoint.
+	 * 
+	 * @return false if there is no checkpoint
+	 * @throws IOException
+	 */
+	public boolean load() throws IOException {
+		Path file = directory.resolve(PROPERTIES);
+		if (!Files.exists(file)) {
+			return false;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+		artists = Integer.parseInt(properties.getProperty("artists"));
+		artworks = Integer.parseInt(properties.getProperty("artworks"));
+		highNodeId = Long.parseLong(properties.getProperty("highNodeId"));
+		return true;
+	}
+
+	/**
+	 * Copy a shut down store and record the progress made.
+	 * 
+	 * @param store		Store directory; must not be open
+	 * @param artists	Artist records imported so far
+	 * @param artworks	Artwork records imported so far
+	 * @param highNodeId	One more than the highest node id in the store
+	 * @throws IOException
+	 */
+	public void save(Path store, int artists, int artworks, long highNodeId) throws IOException {
+		Path temp = directory.resolveSibling(directory.getFileName() + ".tmp");
+		delete(temp);
+		copy(store, temp.resolve(STORE));
+
+		Properties properties = new Properties();
+		properties.setProperty("artists", Integer.toString(artists));
+		properties.setProperty("artworks", Integer.toString(artworks));
+		properties.setProperty("highNodeId", Long.toString(highNodeId));
+		try (OutputStream out = Files.newOutputStream(temp.resolve(PROPERTIES))) {
+			properties.store(out, "Import checkpoint");
+		}
+
+		// the previous checkpoint is kept until this one is in place
+		Path old = directory.resolveSibling(directory.getFileName() + ".old");
+		delete(old);
+		if (Files.exists(directory)) {
+			Files.move(directory, old);
+		}
+		Files.move(temp, directory);
+		delete(old);
+
+		this.artists = artists;
+		this.artworks = artworks;
+		this.highNodeId = highNodeId;
+	}
+
+	/**
+	 * Replace the store with the checkpointed copy.
+	 * 
+	 * @param store
+	 * @throws IOException
+	 */
+	public void restore(Path store) throws IOException {
+		delete(store);
+		copy(directory.resolve(STORE), store);
+	}
+
+	/**
+	 * Remove the checkpoint, once the import it was for has finished.
+	 * 
+	 * @throws IOException
+	 */
+	public void delete() throws IOException {
+		delete(directory);
+	}
+
+	private static void copy(Path from, Path to) throws IOException {
+		try (Stream<Path> files = Files.walk(from)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Path target = to.resolve(from.relativize(file).toString());
+				if (Files.isDirectory(file)) {
+					Files.createDirectories(target);
+				} else {
+					Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+		}
+	}
+
+	private static void delete(Path path) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,272 @@
+package io.larkin.tate2neo.delta;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records, for every artist and artwork file imported, a hash of its content
+ * and the node it was imported as. A delta import compares each file against
+ * the manifest of the previous import to find the files that were added,
+ * changed or removed since, and applies only those.
+ *
+ * The manifest is a tab separated file of kind, source (the file's path
+ * relative to the input directory), hash, entity id and node id, e.g.
+ *
+ * <pre>
+ * ARTIST	a/001/a00123-1688.json	3f786850e387550fdab836ed7e6dc881de23001b	1688	12
+ * </pre>
+ *
+ * Sources may be checked from several parser threads at once, but entries
+ * are only changed by the thread doing the import.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class ImportManifest {
+
+	public enum Kind {
+		ARTIST, ARTWORK
+	}
+
+	/**
+	 * The import of one file
+	 */
+	public static class Entry {
+
+		private final Kind kind;
+
+		private final String source;
+
+		private String hash;
+
+		private int entityId;
+
+		private long nodeId;
+
+		// false until the file is seen by the current import
+		private boolean seen;
+
+		Entry(Kind kind, String source, String hash, int entityId, long nodeId) {
+			this.kind = kind;
+			this.source = source;
+			this.hash = hash;
+			this.entityId = entityId;
+			this.nodeId = nodeId;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public String getSource() {
+			return source;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		public int getEntityId() {
+			return entityId;
+		}
+
+		public long getNodeId() {
+			return nodeId;
+		}
+	}
+
+	private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Map<Kind, Map<String, Entry>> entries = new EnumMap<>(Kind.class);
+
+	private int added;
+
+	private int changed;
+
+	private int unchanged;
+
+	private int removed;
+
+	public ImportManifest() {
+		for (Kind kind : Kind.values()) {
+			entries.put(kind, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return The manifest in the file, or an empty manifest if there is no file
+	 * @throws IOException
+	 */
+	public static ImportManifest load(Path file) throws IOException {
+		ImportManifest manifest = new ImportManifest();
+		if (!Files.exists(file)) {
+			return manifest;
+		}
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 5) {
+					throw new IOException("Bad manifest line in " + file + ": " + line);
+				}
+				Kind kind = Kind.valueOf(fields[0]);
+				manifest.entries.get(kind).put(fields[1], new Entry(kind, fields[1], fields[2],
+						Integer.parseInt(fields[3]), Long.parseLong(fields[4])));
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Write every entry, replacing the file only once it has been written in
+	 * full.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for (Map<String, Entry> kindEntries : entries.values()) {
+				for (Entry entry : kindEntries.values()) {
+					out.write(entry.kind.name());
+					out.write('\t');
+					out.write(entry.source);
+					out.write('\t');
+					out.write(entry.hash);
+					out.write('\t');
+					out.write(Integer.toString(entry.entityId));
+					out.write('\t');
+					out.write(Long.toString(entry.nodeId));
+					out.write('\n');
+				}
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return Hex SHA-1 of buffer[0..length)
+	 */
+	public static String hash(byte[] buffer, int length) {
+		MessageDigest digest = DIGESTS.get();
+		digest.reset();
+		digest.update(buffer, 0, length);
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * @return The entry for a file, or null if it wasn't imported before
+	 */
+	public Entry get(Kind kind, String source) {
+		return entries.get(kind).get(source);
+	}
+
+	/**
+	 * @return true if the file was imported before with the same content.
+	 * 			Safe to call from any thread.
+	 */
+	public boolean isUnchanged(Kind kind, String source, String hash) {
+		Entry entry = get(kind, source);
+		return entry != null && entry.hash.equals(hash);
+	}
+
+	/**
+	 * Note that a file is still present and unchanged.
+	 */
+	public void unchanged(Kind kind, String source) {
+		get(kind, source).seen = true;
+		unchanged++;
+	}
+
+	/**
+	 * Record the import of a new or changed file.
+	 *
+	 * @param kind
+	 * @param source
+	 * @param hash		Content hash, or empty to import the file again next time
+	 * @param entityId
+	 * @param nodeId
+	 */
+	public void put(Kind kind, String source, String hash, int entityId, long nodeId) {
+		Entry entry = get(kind, source);
+		if (entry == null) {
+			entry = new Entry(kind, source, hash, entityId, nodeId);
+			entries.get(kind).put(source, entry);
+			added++;
+		} else {
+			entry.hash = hash;
+			entry.entityId = entityId;
+			entry.nodeId = nodeId;
+			changed++;
+		}
+		entry.seen = true;
+	}
+
+	/**
+	 * @return Entries for files that haven't been seen by this import, i.e.
+	 * 			files removed since the previous import
+	 */
+	public List<Entry> unseen(Kind kind) {
+		List<Entry> unseen = new ArrayList<>();
+		for (Entry entry : entries.get(kind).values()) {
+			if (!entry.seen) {
+				unseen.add(entry);
+			}
+		}
+		return unseen;
+	}
+
+	public void remove(Entry entry) {
+		entries.get(entry.kind).remove(entry.source);
+		removed++;
+	}
+
+	/**
+	 * @return Number of entries for a kind of file
+	 */
+	public int size(Kind kind) {
+		return entries.get(kind).size();
+	}
+
+	/**
+	 * @return e.g. "Delta: 12 added, 40 changed, 69000 unchanged, 3 removed"
+	 */
+	public String summary() {
+		return "Delta: " + added + " added, " + changed + " changed, " + unchanged + " unchanged, "
+				+ removed + " removed";
+	}
+}
@@ -0,0 +1,273 @@
+package io.larkin.tate2neo.metrics;
+
+import io.larkin.tate2neo.repository.LookupNamespace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Timers, rates and lookup hit/miss counts for an import, held in a
+ * Dropwizard MetricRegistry. Progress can be printed periodically while the
+ * import runs, and a summary of everything is written as JSON at the end.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+@Component
+public class ImportMetrics {
+
+	/**
+	 * The timed phases of an import
+	 */
+	public enum Phase {
+		PARSE("parse"),
+		LOOKUP("lookup"),
+		CREATE_NODE("createNode"),
+		CREATE_RELATIONSHIP("createRelationship"),
+		WRITE_ARTIST("writeArtist"),
+		WRITE_ARTWORK("writeArtwork"),
+		PREPASS("prepass"),
+		PREPARE_ARTWORK("prepareArtwork"),
+		ORDER_ARTWORKS("orderArtworks"),
+		ORDER_RELATIONSHIPS("orderRelationships"),
+		CHECKPOINT("checkpoint"),
+		SHUTDOWN("shutdown");
+
+		private final String name;
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	private final MetricRegistry registry = new MetricRegistry();
+
+	private final Timer[] timers = new Timer[Phase.values().length];
+
+	// timers sample durations, so the exact time spent in each phase is kept alongside
+	private final LongAdder[] totals = new LongAdder[Phase.values().length];
+
+	private final Counter[] hits = new Counter[LookupNamespace.values().length];
+
+	private final Counter[] misses = new Counter[LookupNamespace.values().length];
+
+	// records (files or archive entries) parsed
+	private final Meter records = registry.meter("records");
+
+	private final Meter nodes = registry.meter("nodes");
+
+	private final Meter relationships = registry.meter("relationships");
+
+	private final Counter duplicates = registry.counter("relationships.duplicate");
+
+	private final Counter failures = registry.counter("failures");
+
+	// contributors of artworks who weren't among the artists imported
+	private final Counter missingContributors = registry.counter("contributors.missing");
+
+	private final long started = System.nanoTime();
+
+	private ScheduledExecutorService progress;
+
+	public ImportMetrics() {
+		for (Phase phase : Phase.values()) {
+			timers[phase.ordinal()] = registry.timer(MetricRegistry.name("phase", phase.getName()));
+			totals[phase.ordinal()] = new LongAdder();
+		}
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			hits[namespace.ordinal()] = registry.counter(MetricRegistry.name("lookup", namespace.getKey(), "hit"));
+			misses[namespace.ordinal()] = registry.counter(MetricRegistry.name("lookup", namespace.getKey(), "miss"));
+		}
+	}
+
+	public MetricRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Record time spent in a phase.
+	 *
+	 * @param phase
+	 * @param startNanos	System.nanoTime() when the phase started
+	 */
+	public void time(Phase phase, long startNanos) {
+		long elapsed = System.nanoTime() - startNanos;
+		timers[phase.ordinal()].update(elapsed, TimeUnit.NANOSECONDS);
+		totals[phase.ordinal()].add(elapsed);
+	}
+
+	public void recordParsed() {
+		records.mark();
+	}
+
+	public void nodeCreated() {
+		nodes.mark();
+	}
+
+	public void relationshipCreated() {
+		relationships.mark();
+	}
+
+	/**
+	 * A relationship that was dropped because it had already been created
+	 */
+	public void relationshipDuplicate() {
+		duplicates.inc();
+	}
+
+	/**
+	 * A record that couldn't be imported
+	 */
+	public void recordFailed() {
+		failures.inc();
+	}
+
+	/**
+	 * An artwork contributor left unconnected, as no artist with the id was
+	 * imported
+	 */
+	public void contributorMissing() {
+		missingContributors.inc();
+	}
+
+	public long getMissingContributors() {
+		return missingContributors.getCount();
+	}
+
+	public long getFailures() {
+		return failures.getCount();
+	}
+
+	/**
+	 * A lookup key that was already in the lookup repository
+	 */
+	public void lookupHit(LookupNamespace namespace) {
+		hits[namespace.ordinal()].inc();
+	}
+
+	/**
+	 * A lookup key that wasn't in the lookup repository
+	 */
+	public void lookupMiss(LookupNamespace namespace) {
+		misses[namespace.ordinal()].inc();
+	}
+
+	/**
+	 * Print a line of progress every interval until stopProgress is called.
+	 *
+	 * @param intervalSeconds	0 or less to print nothing
+	 */
+	public synchronized void startProgress(long intervalSeconds) {
+		if (intervalSeconds <= 0 || progress != null) {
+			return;
+		}
+		progress = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "import-progress");
+			thread.setDaemon(true);
+			return thread;
+		});
+		progress.scheduleAtFixedRate(() -> System.out.println(progressLine()),
+				intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public synchronized void stopProgress() {
+		if (progress != null) {
+			progress.shutdownNow();
+			progress = null;
+		}
+	}
+
+	/**
+	 * @return e.g. "Progress: 120000 records (2400.0/s), ..." with one-minute rates
+	 */
+	public String progressLine() {
+		return String.format("Progress: %d records (%.1f/s), %d nodes (%.1f/s), %d relationships (%.1f/s), "
+				+ "%d duplicate relationships, %d failed",
+				records.getCount(), records.getOneMinuteRate(),
+				nodes.getCount(), nodes.getOneMinuteRate(),
+				relationships.getCount(), relationships.getOneMinuteRate(),
+				duplicates.getCount(), failures.getCount());
+	}
+
+	/**
+	 * @return Every metric, keyed for the JSON summary
+	 */
+	public Map<String, Object> summary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		summary.put("records", rate(records));
+		summary.put("nodes", rate(nodes));
+		summary.put("relationships", rate(relationships));
+		summary.put("duplicateRelationships", duplicates.getCount());
+		summary.put("failures", failures.getCount());
+		summary.put("missingContributors", missingContributors.getCount());
+
+		Map<String, Object> phases = new LinkedHashMap<>();
+		for (Phase phase : Phase.values()) {
+			phases.put(phase.getName(), timing(timers[phase.ordinal()], totals[phase.ordinal()].sum()));
+		}
+		summary.put("phases", phases);
+
+		Map<String, Object> lookups = new LinkedHashMap<>();
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			long hit = hits[namespace.ordinal()].getCount();
+			long miss = misses[namespace.ordinal()].getCount();
+			Map<String, Object> counts = new LinkedHashMap<>();
+			counts.put("hits", hit);
+			counts.put("misses", miss);
+			counts.put("hitRate", hit + miss > 0 ? (double) hit / (hit + miss) : 0.0);
+			lookups.put(namespace.getKey(), counts);
+		}
+		summary.put("lookups", lookups);
+		return summary;
+	}
+
+	/**
+	 * Write the summary as pretty-printed JSON.
+	 *
+	 * @param out	Left open
+	 * @throws IOException
+	 */
+	public void writeSummary(OutputStream out) throws IOException {
+		out.write(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(summary()));
+		out.write('\n');
+		out.flush();
+	}
+
+	private Map<String, Object> rate(Meter meter) {
+		Map<String, Object> rate = new LinkedHashMap<>();
+		rate.put("count", meter.getCount());
+		rate.put("perSecond", meter.getMeanRate());
+		return rate;
+	}
+
+	private Map<String, Object> timing(Timer timer, long totalNanos) {
+		Snapshot snapshot = timer.getSnapshot();
+		Map<String, Object> timing = new LinkedHashMap<>();
+		timing.put("count", timer.getCount());
+		timing.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos));
+		timing.put("meanMicros", snapshot.getMean() / 1e3);
+		timing.put("p99Micros", snapshot.get99thPercentile() / 1e3);
+		timing.put("maxMicros", snapshot.getMax() / 1e3);
+		return timing;
+	}
+}
@@ -0,0 +1,208 @@
+package io.larkin.tate2neo.metrics;
+
+import io.larkin.tate2neo.metrics.ImportMetrics.Phase;
+import io.larkin.tate2neo.repository.ILookupRepository;
+import io.larkin.tate2neo.repository.LookupBatch;
+import io.larkin.tate2neo.repository.LookupEntryVisitor;
+import io.larkin.tate2neo.repository.LookupNamespace;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps a lookup repository to time its calls and count, per namespace, how
+ * many keys were found (hits) and how many had to be created (misses). Time
+ * spent in a getOrCreate creator is node creation rather than lookup, so it
+ * isn't included in the lookup timer. Each key is counted once: a key a getAll
+ * has counted is then got or created with getOrCreateCounted.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class MeteredLookupRepository implements ILookupRepository {
+
+	private final ILookupRepository delegate;
+
+	private final ImportMetrics metrics;
+
+	public MeteredLookupRepository(ILookupRepository delegate, ImportMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void add(LookupNamespace namespace, int key, long nodeId) {
+		long start = System.nanoTime();
+		delegate.add(namespace, key, nodeId);
+		metrics.time(Phase.LOOKUP, start);
+	}
+
+	@Override
+	public void add(LookupNamespace namespace, String key, long nodeId) {
+		long start = System.nanoTime();
+		delegate.add(namespace, key, nodeId);
+		metrics.time(Phase.LOOKUP, start);
+	}
+
+	@Override
+	public long get(LookupNamespace namespace, int key) {
+		long start = System.nanoTime();
+		long nodeId = delegate.get(namespace, key);
+		metrics.time(Phase.LOOKUP, start);
+		count(namespace, nodeId);
+		return nodeId;
+	}
+
+	@Override
+	public long get(LookupNamespace namespace, String key) {
+		long start = System.nanoTime();
+		long nodeId = delegate.get(namespace, key);
+		metrics.time(Phase.LOOKUP, start);
+		count(namespace, nodeId);
+		return nodeId;
+	}
+
+	@Override
+	public long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator) {
+		MeteredCreator metered = new MeteredCreator(creator);
+		long start = System.nanoTime();
+		long nodeId = delegate.getOrCreate(namespace, key, metered);
+		metered.finish(namespace, start);
+		return nodeId;
+	}
+
+	@Override
+	public long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator) {
+		MeteredCreator metered = new MeteredCreator(creator);
+		long start = System.nanoTime();
+		long nodeId = delegate.getOrCreate(namespace, key, metered);
+		metered.finish(namespace, start);
+		return nodeId;
+	}
+
+	/**
+	 * Get or create a node whose key a getAll has already counted, timing the
+	 * lookup but not counting it again.
+	 */
+	public long getOrCreateCounted(LookupNamespace namespace, int key, LongSupplier creator) {
+		MeteredCreator metered = new MeteredCreator(creator);
+		long start = System.nanoTime();
+		long nodeId = delegate.getOrCreate(namespace, key, metered);
+		metered.finish(null, start);
+		return nodeId;
+	}
+
+	public long getOrCreateCounted(LookupNamespace namespace, String key, LongSupplier creator) {
+		MeteredCreator metered = new MeteredCreator(creator);
+		long start = System.nanoTime();
+		long nodeId = delegate.getOrCreate(namespace, key, metered);
+		metered.finish(null, start);
+		return nodeId;
+	}
+
+	@Override
+	public void remove(LookupNamespace namespace, int key) {
+		long start = System.nanoTime();
+		delegate.remove(namespace, key);
+		metrics.time(Phase.LOOKUP, start);
+	}
+
+	@Override
+	public void remove(LookupNamespace namespace, String key) {
+		long start = System.nanoTime();
+		delegate.remove(namespace, key);
+		metrics.time(Phase.LOOKUP, start);
+	}
+
+	@Override
+	public void getAll(LookupBatch batch) {
+		long start = System.nanoTime();
+		delegate.getAll(batch);
+		metrics.time(Phase.LOOKUP, start);
+		for (int i = 0; i < batch.size(); i++) {
+			count(batch.getNamespace(i), batch.getNodeId(i));
+		}
+	}
+
+	@Override
+	public void addAll(LookupBatch batch) {
+		long start = System.nanoTime();
+		delegate.addAll(batch);
+		metrics.time(Phase.LOOKUP, start);
+	}
+
+	@Override
+	public long truncate(long highNodeId) {
+		return delegate.truncate(highNodeId);
+	}
+
+	@Override
+	public void forEachEntry(LookupNamespace namespace, LookupEntryVisitor visitor) {
+		delegate.forEachEntry(namespace, visitor);
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return delegate.isPersistent();
+	}
+
+	@Override
+	public long getRoundTrips() {
+		return delegate.getRoundTrips();
+	}
+
+	@Override
+	public long getRoundTripsSaved() {
+		return delegate.getRoundTripsSaved();
+	}
+
+	private void count(LookupNamespace namespace, long nodeId) {
+		if (nodeId == NOT_FOUND) {
+			metrics.lookupMiss(namespace);
+		} else {
+			metrics.lookupHit(namespace);
+		}
+	}
+
+	/**
+	 * Notes whether, and for how long, a getOrCreate call created its node.
+	 */
+	private class MeteredCreator implements LongSupplier {
+
+		private final LongSupplier creator;
+
+		private long createNanos = -1;
+
+		MeteredCreator(LongSupplier creator) {
+			this.creator = creator;
+		}
+
+		@Override
+		public long getAsLong() {
+			long start = System.nanoTime();
+			try {
+				return creator.getAsLong();
+			} finally {
+				createNanos = System.nanoTime() - start;
+			}
+		}
+
+		/**
+		 * @param namespace	To count a hit or miss in; null if already counted
+		 * @param start
+		 */
+		void finish(LookupNamespace namespace, long start) {
+			if (createNanos < 0) {
+				metrics.time(Phase.LOOKUP, start);
+				if (namespace != null) {
+					metrics.lookupHit(namespace);
+				}
+			} else {
+				// exclude the creator, which is timed as node creation
+				metrics.time(Phase.LOOKUP, start + createNanos);
+				if (namespace != null) {
+					metrics.lookupMiss(namespace);
+				}
+			}
+		}
+	}
+}
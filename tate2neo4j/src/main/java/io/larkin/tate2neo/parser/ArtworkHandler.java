@@ -0,0 +1,36 @@
+package io.larkin.tate2neo.parser;
+
+/**
+ * Receives the parts of an artwork that the import uses, in the order they
+ * should be written: the artwork itself, then the entities it connects to.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public interface ArtworkHandler {
+
+	void startArtwork(int id, String acno, String title);
+
+	void contributor(int artistId);
+
+	void catalogueGroup(int id, String shortTitle);
+
+	void movement(int id, String name);
+
+	/**
+	 * Called for each subject in the 3-level hierarchy, parents before their
+	 * children, so level 1 and 2 subjects belong to the most recent subject
+	 * one level up.
+	 * 
+	 * @param level	0 for the top-level container, 2 for the subjects artworks feature
+	 * @param id
+	 * @param name
+	 */
+	void subject(int level, int id, String name);
+
+	void classification(String classification);
+
+	void medium(String medium);
+
+	void endArtwork();
+}
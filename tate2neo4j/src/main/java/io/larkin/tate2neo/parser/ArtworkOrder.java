@@ -0,0 +1,81 @@
+package io.larkin.tate2neo.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Order in which to import artworks so that each artist's artworks, and
+ * within them each catalogue group's, are created one after another. Node
+ * ids are handed out in creation order, so a query going from an artist to
+ * its artworks then reads neighbouring records of the node store, rather
+ * than one record from each of many pages, as it does when artworks are
+ * created in the order their files are found.
+ *
+ * Artworks are ordered by their first contributor, then catalogue group,
+ * then their original position; those without either come after those with.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class ArtworkOrder {
+
+	private int[] contributors = new int[1024];
+
+	private int[] catalogueGroups = new int[1024];
+
+	private int size;
+
+	/**
+	 * Note the next artwork, in input order.
+	 *
+	 * @param artwork
+	 */
+	public void add(ArtworkRecord artwork) {
+		if (size == contributors.length) {
+			contributors = Arrays.copyOf(contributors, size << 1);
+			catalogueGroups = Arrays.copyOf(catalogueGroups, size << 1);
+		}
+		contributors[size] = last(artwork.getPrimaryContributor());
+		catalogueGroups[size] = last(artwork.getCatalogueGroupId());
+		size++;
+	}
+
+	// missing ids (-1) sort after every real one
+	private static int last(int id) {
+		return id < 0 ? Integer.MAX_VALUE : id;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Input positions of the artworks, in the order to import them
+	 */
+	public int[] order() {
+		// both ids are non-negative ints, so pack into one key; the stream
+		// sort is stable, keeping input order within a group
+		return IntStream.range(0, size).boxed()
+				.sorted(Comparator.comparingLong(i -> (long) contributors[i] << 32 | catalogueGroups[i]))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * @param inputs	The artworks' files or records, in input order
+	 * @return The inputs in the order to import them
+	 * @throws IllegalArgumentException if there aren't as many inputs as artworks
+	 */
+	public <T> List<T> sort(List<T> inputs) {
+		if (inputs.size() != size) {
+			throw new IllegalArgumentException(inputs.size() + " inputs for " + size + " artworks");
+		}
+		List<T> sorted = new ArrayList<>(size);
+		for (int i : order()) {
+			sorted.add(inputs.get(i));
+		}
+		return sorted;
+	}
+}
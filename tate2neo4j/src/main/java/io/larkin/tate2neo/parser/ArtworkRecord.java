@@ -0,0 +1,232 @@
+package io.larkin.tate2neo.parser;
+
+import io.larkin.tate2neo.Artist;
+import io.larkin.tate2neo.Artwork;
+import io.larkin.tate2neo.Movement;
+import io.larkin.tate2neo.Subject;
+
+import java.util.Arrays;
+
+/**
+ * Flat representation of the artwork fields used by the import, held in
+ * primitive arrays rather than an object graph. Produced either by the
+ * streaming parser or from a databound Artwork, and replayed to an
+ * ArtworkHandler so both parse paths write the same graph.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public class ArtworkRecord {
+
+	private int id;
+	
+	private String acno;
+	
+	private String title;
+	
+	private String classification;
+	
+	private String medium;
+	
+	private int[] contributorIds = new int[4];
+	
+	private int contributorCount;
+	
+	private boolean hasCatalogueGroup;
+	
+	private int catalogueGroupId;
+	
+	private String catalogueGroupShortTitle;
+	
+	private int[] movementIds = new int[4];
+	
+	private String[] movementNames = new String[4];
+	
+	private int movementCount;
+	
+	private int[] subjectLevels = new int[16];
+	
+	private int[] subjectIds = new int[16];
+	
+	private String[] subjectNames = new String[16];
+	
+	private int subjectCount;
+
+	/**
+	 * Flatten a databound artwork.
+	 * 
+	 * @param artwork
+	 * @return A new record holding the fields used by the import
+	 */
+	public static ArtworkRecord from(Artwork artwork) {
+		ArtworkRecord record = new ArtworkRecord();
+		record.setId(artwork.getId());
+		record.setAcno(artwork.getAcno());
+		record.setTitle(artwork.getTitle());
+		record.setClassification(artwork.getClassification());
+		record.setMedium(artwork.getMedium());
+		if (artwork.getContributors() != null) {
+			for (Artist artist : artwork.getContributors()) {
+				record.addContributor(artist.getId());
+			}
+		}
+		if (artwork.getCatalogueGroup() != null && artwork.getCatalogueGroup().getId() != null) {
+			record.setCatalogueGroup(artwork.getCatalogueGroup().getId(), artwork.getCatalogueGroup().getShortTitle());
+		}
+		if (artwork.getMovements() != null) {
+			for (Movement movement : artwork.getMovements()) {
+				record.addMovement(movement.getId(), movement.getName());
+			}
+		}
+		if (artwork.getSubjects() != null && artwork.getSubjects().getChildren() != null) {
+			for (Subject subject0 : artwork.getSubjects().getChildren()) {
+				record.setSubject(record.addSubject(0), subject0.getId(), subject0.getName());
+				if (subject0.getChildren() != null) {
+					for (Subject subject1 : subject0.getChildren()) {
+						record.setSubject(record.addSubject(1), subject1.getId(), subject1.getName());
+						if (subject1.getChildren() != null) {
+							for (Subject subject2 : subject1.getChildren()) {
+								record.setSubject(record.addSubject(2), subject2.getId(), subject2.getName());
+							}
+						}
+					}
+				}
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Replay the artwork to a handler.
+	 * 
+	 * @param handler
+	 */
+	public void emit(ArtworkHandler handler) {
+		handler.startArtwork(id, acno, title);
+		for (int i = 0; i < contributorCount; i++) {
+			handler.contributor(contributorIds[i]);
+		}
+		if (hasCatalogueGroup) {
+			handler.catalogueGroup(catalogueGroupId, catalogueGroupShortTitle);
+		}
+		for (int i = 0; i < movementCount; i++) {
+			handler.movement(movementIds[i], movementNames[i]);
+		}
+		for (int i = 0; i < subjectCount; i++) {
+			handler.subject(subjectLevels[i], subjectIds[i], subjectNames[i]);
+		}
+		if (classification != null) {
+			handler.classification(classification);
+		}
+		if (medium != null) {
+			handler.medium(medium);
+		}
+		handler.endArtwork();
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public void setId(int id) {
+		this.id = id;
+	}
+
+	public String getAcno() {
+		return acno;
+	}
+
+	public void setAcno(String acno) {
+		this.acno = acno;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getClassification() {
+		return classification;
+	}
+
+	public void setClassification(String classification) {
+		this.classification = classification;
+	}
+
+	public String getMedium() {
+		return medium;
+	}
+
+	public void setMedium(String medium) {
+		this.medium = medium;
+	}
+
+	/**
+	 * @return Id of the first contributor, or -1 if the artwork has none
+	 */
+	public int getPrimaryContributor() {
+		return contributorCount > 0 ? contributorIds[0] : -1;
+	}
+
+	/**
+	 * @return Id of the catalogue group, or -1 if the artwork isn't in one
+	 */
+	public int getCatalogueGroupId() {
+		return hasCatalogueGroup ? catalogueGroupId : -1;
+	}
+
+	public void addContributor(int artistId) {
+		if (contributorCount == contributorIds.length) {
+			contributorIds = Arrays.copyOf(contributorIds, contributorCount << 1);
+		}
+		contributorIds[contributorCount++] = artistId;
+	}
+
+	public void setCatalogueGroup(int id, String shortTitle) {
+		hasCatalogueGroup = true;
+		catalogueGroupId = id;
+		catalogueGroupShortTitle = shortTitle;
+	}
+
+	public void addMovement(int id, String name) {
+		if (movementCount == movementIds.length) {
+			movementIds = Arrays.copyOf(movementIds, movementCount << 1);
+			movementNames = Arrays.copyOf(movementNames, movementCount << 1);
+		}
+		movementIds[movementCount] = id;
+		movementNames[movementCount++] = name;
+	}
+
+	/**
+	 * Reserve a place for a subject. Its id and name are set separately as the
+	 * streaming parser can meet a subject's children before its id and name.
+	 * 
+	 * @param level
+	 * @return Index to pass to setSubject
+	 */
+	public int addSubject(int level) {
+		if (subjectCount == subjectIds.length) {
+			subjectLevels = Arrays.copyOf(subjectLevels, subjectCount << 1);
+			subjectIds = Arrays.copyOf(subjectIds, subjectCount << 1);
+			subjectNames = Arrays.copyOf(subjectNames, subjectCount << 1);
+		}
+		subjectLevels[subjectCount] = level;
+		return subjectCount++;
+	}
+
+	public void setSubjectId(int index, int id) {
+		subjectIds[index] = id;
+	}
+
+	public void setSubjectName(int index, String name) {
+		subjectNames[index] = name;
+	}
+
+	private void setSubject(int index, int id, String name) {
+		setSubjectId(index, id);
+		setSubjectName(index, name);
+	}
+}
@@ -0,0 +1,132 @@
+package io.larkin.tate2neo.parser;
+
+import java.util.Arrays;
+
+/**
+ * Splits the medium text of an artwork into the materials it names, each of
+ * which becomes a Medium node: "Graphite and watercolour on paper" gives
+ * "graphite", "watercolour" and "paper".
+ * 
+ * Materials are separated by ",", " on " or " and ", then trimmed and lower
+ * cased. This gives exactly the result of medium.split(",| on | and ") with
+ * each part trimmed and lower cased, including its empty parts, but with a
+ * single scan of the text rather than a regular expression compiled and run
+ * for every artwork.
+ * 
+ * An instance reuses its token arrays between calls, so is not thread-safe.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public class MediumTokenizer {
+
+	private static final String ON = " on ";
+
+	private static final String AND = " and ";
+
+	private int[] starts = new int[8];
+
+	private int[] ends = new int[8];
+
+	private String[] tokens = new String[8];
+
+	private int count;
+
+	/**
+	 * Split a medium string, replacing the tokens of the previous call.
+	 * 
+	 * @param medium	e.g. "Oil paint on canvas"
+	 * @return Number of tokens
+	 */
+	public int tokenize(String medium) {
+		count = 0;
+		int length = medium.length();
+		int start = 0;
+		int i = 0;
+		while (i < length) {
+			int separator = separatorLength(medium, i);
+			if (separator > 0) {
+				addSegment(start, i);
+				i += separator;
+				start = i;
+			} else {
+				i++;
+			}
+		}
+		if (count == 0) {
+			// no separator: the whole string, even if empty
+			addSegment(0, length);
+		} else {
+			addSegment(start, length);
+			// as String.split, drop empty trailing parts (before trimming)
+			while (count > 0 && starts[count - 1] == ends[count - 1]) {
+				count--;
+			}
+		}
+		for (int t = 0; t < count; t++) {
+			tokens[t] = normalise(medium, starts[t], ends[t]);
+		}
+		return count;
+	}
+
+	/**
+	 * @param i	0 to the number of tokens - 1
+	 * @return Normalised material name
+	 */
+	public String token(int i) {
+		return tokens[i];
+	}
+
+	/**
+	 * Convenience for callers that want the tokens in their own array.
+	 * 
+	 * @param medium
+	 * @return e.g. ["oil paint", "canvas"]
+	 */
+	public static String[] split(String medium) {
+		MediumTokenizer tokenizer = new MediumTokenizer();
+		int count = tokenizer.tokenize(medium);
+		return Arrays.copyOf(tokenizer.tokens, count);
+	}
+
+	private static int separatorLength(String medium, int i) {
+		char c = medium.charAt(i);
+		if (c == ',') {
+			return 1;
+		}
+		if (c == ' ') {
+			if (medium.startsWith(ON, i)) {
+				return ON.length();
+			}
+			if (medium.startsWith(AND, i)) {
+				return AND.length();
+			}
+		}
+		return 0;
+	}
+
+	private void addSegment(int start, int end) {
+		if (count == starts.length) {
+			int capacity = count << 1;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			tokens = Arrays.copyOf(tokens, capacity);
+		}
+		starts[count] = start;
+		ends[count] = end;
+		count++;
+	}
+
+	/**
+	 * Trim (as String.trim) and lower case without an intermediate string.
+	 */
+	private static String normalise(String medium, int start, int end) {
+		while (start < end && medium.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && medium.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return medium.substring(start, end).toLowerCase();
+	}
+}
@@ -0,0 +1,237 @@
+package io.larkin.tate2neo.parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Token-level parser for Tate artwork files. Only the fields used by the
+ * import are read, straight into an ArtworkRecord; everything else (dates,
+ * dimensions, credit lines, contributor details, eras...) is skipped with
+ * skipChildren() rather than being databound.
+ * 
+ * Thread-safe: each call uses its own JsonParser.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public class StreamingArtworkParser {
+
+	// subjects below this level aren't used by the import
+	private static final int MAX_SUBJECT_LEVEL = 2;
+
+	private final JsonFactory factory;
+
+	public StreamingArtworkParser(JsonFactory factory) {
+		this.factory = factory;
+	}
+
+	public ArtworkRecord parse(Path file) throws IOException {
+		try (JsonParser parser = factory.createParser(file.toFile())) {
+			return parse(parser);
+		}
+	}
+
+	public ArtworkRecord parse(byte[] data, int offset, int length) throws IOException {
+		try (JsonParser parser = factory.createParser(data, offset, length)) {
+			return parse(parser);
+		}
+	}
+
+	/**
+	 * Parse the next artwork object from the parser.
+	 * 
+	 * @param parser
+	 * @return The fields of the artwork used by the import
+	 * @throws IOException
+	 */
+	public ArtworkRecord parse(JsonParser parser) throws IOException {
+		ArtworkRecord record = new ArtworkRecord();
+		if (parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException("Expected an artwork object", parser.getCurrentLocation());
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			switch (field) {
+			case "id":
+				record.setId(parser.getValueAsInt());
+				break;
+			case "acno":
+				record.setAcno(text(parser, token));
+				break;
+			case "title":
+				record.setTitle(text(parser, token));
+				break;
+			case "classification":
+				record.setClassification(text(parser, token));
+				break;
+			case "medium":
+				record.setMedium(text(parser, token));
+				break;
+			case "contributors":
+				parseContributors(parser, token, record);
+				break;
+			case "catalogueGroup":
+				parseCatalogueGroup(parser, token, record);
+				break;
+			case "movements":
+				parseMovements(parser, token, record);
+				break;
+			case "subjects":
+				parseSubjectRoot(parser, token, record);
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+		return record;
+	}
+
+	private void parseContributors(JsonParser parser, JsonToken token, ArtworkRecord record) throws IOException {
+		if (token != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return;
+		}
+		while (nextElement(parser)) {
+			int id = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if ("id".equals(field)) {
+					id = parser.getValueAsInt();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			record.addContributor(id);
+		}
+	}
+
+	private void parseCatalogueGroup(JsonParser parser, JsonToken token, ArtworkRecord record) throws IOException {
+		if (token != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return;
+		}
+		boolean hasId = false;
+		int id = 0;
+		String shortTitle = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("id".equals(field)) {
+				hasId = value != JsonToken.VALUE_NULL;
+				id = parser.getValueAsInt();
+			} else if ("shortTitle".equals(field)) {
+				shortTitle = text(parser, value);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (hasId) {
+			record.setCatalogueGroup(id, shortTitle);
+		}
+	}
+
+	private void parseMovements(JsonParser parser, JsonToken token, ArtworkRecord record) throws IOException {
+		if (token != JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return;
+		}
+		while (nextElement(parser)) {
+			int id = 0;
+			String name = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("id".equals(field)) {
+					id = parser.getValueAsInt();
+				} else if ("name".equals(field)) {
+					name = text(parser, value);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			record.addMovement(id, name);
+		}
+	}
+
+	/**
+	 * The "subjects" field is a root subject whose children are the level 0
+	 * containers; the root itself isn't imported.
+	 */
+	private void parseSubjectRoot(JsonParser parser, JsonToken token, ArtworkRecord record) throws IOException {
+		if (token != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return;
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("children".equals(field) && value == JsonToken.START_ARRAY) {
+				parseSubjects(parser, record, 0);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * Parse an array of subjects at the given level. Each subject's place in
+	 * the record is reserved before its fields are read, so parents come
+	 * before their children even though "children" precedes "id" and "name"
+	 * in the Tate files.
+	 */
+	private void parseSubjects(JsonParser parser, ArtworkRecord record, int level) throws IOException {
+		while (nextElement(parser)) {
+			int index = record.addSubject(level);
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if ("id".equals(field)) {
+					record.setSubjectId(index, parser.getValueAsInt());
+				} else if ("name".equals(field)) {
+					record.setSubjectName(index, text(parser, value));
+				} else if ("children".equals(field) && value == JsonToken.START_ARRAY && level < MAX_SUBJECT_LEVEL) {
+					parseSubjects(parser, record, level + 1);
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move to the next object in an array, skipping anything that isn't one.
+	 * 
+	 * @return false at the end of the array
+	 */
+	private boolean nextElement(JsonParser parser) throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == null) {
+				throw new JsonParseException("Unexpected end of input in array", parser.getCurrentLocation());
+			}
+			if (token == JsonToken.START_OBJECT) {
+				return true;
+			}
+			parser.skipChildren();
+		}
+		return false;
+	}
+
+	private String text(JsonParser parser, JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			parser.skipChildren();
+			return null;
+		}
+		return parser.getText();
+	}
+}
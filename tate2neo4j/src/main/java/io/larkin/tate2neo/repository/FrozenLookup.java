@@ -0,0 +1,103 @@
+package io.larkin.tate2neo.repository;
+
+import io.larkin.tate2neo.utility.IntLongHashMap;
+import io.larkin.tate2neo.utility.ObjectLongHashMap;
+
+/**
+ * Read-only copy, on the heap, of some namespaces of a lookup. Once every
+ * entry that will be needed has been created the lookup can be frozen, and
+ * the copy read by any number of threads at once: nothing changes it after
+ * it is built, so reads need no locks and, for Redis, no round trips.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public final class FrozenLookup {
+
+	private final IntLongHashMap[] intKeyed = new IntLongHashMap[LookupNamespace.values().length];
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final ObjectLongHashMap<String>[] nameKeyed = new ObjectLongHashMap[LookupNamespace.values().length];
+
+	private FrozenLookup() {
+	}
+
+	/**
+	 * Copy the entries of some namespaces of a lookup.
+	 *
+	 * @param lookup
+	 * @param namespaces	Namespaces that will be read
+	 * @return The copy
+	 */
+	public static FrozenLookup of(ILookupRepository lookup, LookupNamespace... namespaces) {
+		FrozenLookup frozen = new FrozenLookup();
+		for (LookupNamespace namespace : namespaces) {
+			if (namespace.isIntKeyed()) {
+				IntLongHashMap entries = new IntLongHashMap();
+				lookup.forEachEntry(namespace, new LookupEntryVisitor() {
+					@Override
+					public void entry(LookupNamespace namespace, int key, long nodeId) {
+						entries.put(key, nodeId);
+					}
+
+					@Override
+					public void entry(LookupNamespace namespace, String key, long nodeId) {
+					}
+				});
+				frozen.intKeyed[namespace.ordinal()] = entries;
+			} else {
+				ObjectLongHashMap<String> entries = new ObjectLongHashMap<>();
+				lookup.forEachEntry(namespace, new LookupEntryVisitor() {
+					@Override
+					public void entry(LookupNamespace namespace, int key, long nodeId) {
+					}
+
+					@Override
+					public void entry(LookupNamespace namespace, String key, long nodeId) {
+						entries.put(key, nodeId);
+					}
+				});
+				frozen.nameKeyed[namespace.ordinal()] = entries;
+			}
+		}
+		return frozen;
+	}
+
+	/**
+	 * @return Physical node id, or ILookupRepository.NOT_FOUND
+	 * @throws IllegalArgumentException if the namespace wasn't copied
+	 */
+	public long get(LookupNamespace namespace, int key) {
+		IntLongHashMap entries = intKeyed[namespace.ordinal()];
+		if (entries == null) {
+			throw new IllegalArgumentException(namespace + " is not in the frozen lookup");
+		}
+		return entries.get(key, ILookupRepository.NOT_FOUND);
+	}
+
+	/**
+	 * @return Physical node id, or ILookupRepository.NOT_FOUND
+	 * @throws IllegalArgumentException if the namespace wasn't copied
+	 */
+	public long get(LookupNamespace namespace, String key) {
+		ObjectLongHashMap<String> entries = nameKeyed[namespace.ordinal()];
+		if (entries == null) {
+			throw new IllegalArgumentException(namespace + " is not in the frozen lookup");
+		}
+		return entries.get(key, ILookupRepository.NOT_FOUND);
+	}
+
+	/**
+	 * @return Number of entries copied
+	 */
+	public long size() {
+		long size = 0;
+		for (IntLongHashMap entries : intKeyed) {
+			size += entries != null ? entries.size() : 0;
+		}
+		for (ObjectLongHashMap<String> entries : nameKeyed) {
+			size += entries != null ? entries.size() : 0;
+		}
+		return size;
+	}
+}
@@ -1,11 +1,126 @@
 package io.larkin.tate2neo.repository;
 
+import java.util.function.LongSupplier;
+
 import org.springframework.stereotype.Repository;
 
+/**
+ * Maps entities in the Tate metadata to the physical node ids they were
+ * given by the batch inserter, so that later records can connect to them.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
 @Repository
 public interface ILookupRepository {
 
-	void add(String key, String value);
-	
-	String get(String key);
+	/**
+	 * Returned by get operations when there is no entry for a key
+	 */
+	long NOT_FOUND = -1L;
+
+	void add(LookupNamespace namespace, int key, long nodeId);
+
+	void add(LookupNamespace namespace, String key, long nodeId);
+
+	long get(LookupNamespace namespace, int key);
+
+	long get(LookupNamespace namespace, String key);
+
+	/**
+	 * Return the node id stored against the key, or create the node with the
+	 * supplied creator and store its id. The creator is called at most once
+	 * per key.
+	 * 
+	 * @param namespace
+	 * @param key
+	 * @param creator	Creates the node and returns its physical node id
+	 * @return Physical node id
+	 */
+	long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator);
+
+	long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator);
+
+	/**
+	 * Remove the entry for a key, e.g. when its node has been deleted.
+	 * 
+	 * @param namespace
+	 * @param key
+	 */
+	void remove(LookupNamespace namespace, int key);
+
+	void remove(LookupNamespace namespace, String key);
+
+	/**
+	 * Remove every entry whose node id is highNodeId or above, i.e. the nodes
+	 * created after a checkpoint, which are lost when the store is restored.
+	 * 
+	 * @param highNodeId
+	 * @return Number of entries removed
+	 */
+	long truncate(long highNodeId);
+
+	/**
+	 * Pass every entry of a namespace to the visitor, in no particular order.
+	 * 
+	 * @param namespace
+	 * @param visitor
+	 */
+	void forEachEntry(LookupNamespace namespace, LookupEntryVisitor visitor);
+
+	/**
+	 * Resolve every key in the batch, setting each entry's node id or leaving
+	 * it as NOT_FOUND. Remote implementations should do this in one round trip.
+	 * 
+	 * @param batch
+	 */
+	default void getAll(LookupBatch batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			LookupNamespace namespace = batch.getNamespace(i);
+			batch.setNodeId(i, namespace.isIntKeyed()
+					? get(namespace, batch.getIntKey(i))
+					: get(namespace, batch.getStringKey(i)));
+		}
+	}
+
+	/**
+	 * Store every entry in the batch that has a node id. Remote implementations
+	 * should do this in one round trip.
+	 * 
+	 * @param batch
+	 */
+	default void addAll(LookupBatch batch) {
+		for (int i = 0; i < batch.size(); i++) {
+			LookupNamespace namespace = batch.getNamespace(i);
+			if (batch.getNodeId(i) != NOT_FOUND) {
+				if (namespace.isIntKeyed()) {
+					add(namespace, batch.getIntKey(i), batch.getNodeId(i));
+				} else {
+					add(namespace, batch.getStringKey(i), batch.getNodeId(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if entries outlive the import process, so that a later
+	 * 			import can carry on from them
+	 */
+	default boolean isPersistent() {
+		return true;
+	}
+
+	/**
+	 * @return Number of requests made to a remote store, 0 for in-process lookups
+	 */
+	default long getRoundTrips() {
+		return 0;
+	}
+
+	/**
+	 * @return Number of requests avoided by batching keys into a single request
+	 */
+	default long getRoundTripsSaved() {
+		return 0;
+	}
 }
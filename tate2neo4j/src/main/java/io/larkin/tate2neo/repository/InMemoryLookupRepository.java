@@ -0,0 +1,154 @@
+package io.larkin.tate2neo.repository;
+
+import io.larkin.tate2neo.utility.IntLongHashMap;
+import io.larkin.tate2neo.utility.ObjectLongHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * In-process implementation of the lookup. Node ids are held in one primitive
+ * map per namespace: int ids for artists, movements, subjects and catalogue
+ * groups, strings for names such as places, mediums and classifications.
+ *
+ * Activated with the "memory" Spring profile, so an import can run without
+ * a Redis server. The lookup only lives as long as the import process.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+@Repository
+@Profile("memory")
+public class InMemoryLookupRepository implements ILookupRepository {
+
+	private final IntLongHashMap[] intMaps = new IntLongHashMap[LookupNamespace.values().length];
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final ObjectLongHashMap<String>[] stringMaps = new ObjectLongHashMap[LookupNamespace.values().length];
+
+	public InMemoryLookupRepository() {
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			if (namespace.isIntKeyed()) {
+				intMaps[namespace.ordinal()] = new IntLongHashMap();
+			} else {
+				stringMaps[namespace.ordinal()] = new ObjectLongHashMap<>();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void add(LookupNamespace namespace, int key, long nodeId) {
+		intMap(namespace).put(key, nodeId);
+	}
+
+	@Override
+	public synchronized void add(LookupNamespace namespace, String key, long nodeId) {
+		stringMap(namespace).put(key, nodeId);
+	}
+
+	@Override
+	public synchronized long get(LookupNamespace namespace, int key) {
+		return intMap(namespace).get(key, NOT_FOUND);
+	}
+
+	@Override
+	public synchronized long get(LookupNamespace namespace, String key) {
+		return stringMap(namespace).get(key, NOT_FOUND);
+	}
+
+	@Override
+	public synchronized long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator) {
+		IntLongHashMap map = intMap(namespace);
+		long nodeId = map.get(key, NOT_FOUND);
+		if (nodeId == NOT_FOUND) {
+			nodeId = creator.getAsLong();
+			map.put(key, nodeId);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public synchronized long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator) {
+		ObjectLongHashMap<String> map = stringMap(namespace);
+		long nodeId = map.get(key, NOT_FOUND);
+		if (nodeId == NOT_FOUND) {
+			nodeId = creator.getAsLong();
+			map.put(key, nodeId);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public synchronized void remove(LookupNamespace namespace, int key) {
+		intMap(namespace).remove(key);
+	}
+
+	@Override
+	public synchronized void remove(LookupNamespace namespace, String key) {
+		stringMap(namespace).remove(key);
+	}
+
+	@Override
+	public synchronized long truncate(long highNodeId) {
+		long removed = 0;
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			if (namespace.isIntKeyed()) {
+				IntLongHashMap map = intMap(namespace);
+				List<Integer> keys = new ArrayList<>();
+				map.forEach((key, nodeId) -> {
+					if (nodeId >= highNodeId) {
+						keys.add(key);
+					}
+				});
+				keys.forEach(map::remove);
+				removed += keys.size();
+			} else {
+				ObjectLongHashMap<String> map = stringMap(namespace);
+				List<String> keys = new ArrayList<>();
+				map.forEach((key, nodeId) -> {
+					if (nodeId >= highNodeId) {
+						keys.add(key);
+					}
+				});
+				keys.forEach(map::remove);
+				removed += keys.size();
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void forEachEntry(LookupNamespace namespace, LookupEntryVisitor visitor) {
+		if (namespace.isIntKeyed()) {
+			intMap(namespace).forEach((key, nodeId) -> visitor.entry(namespace, key, nodeId));
+		} else {
+			stringMap(namespace).forEach((key, nodeId) -> visitor.entry(namespace, key, nodeId));
+		}
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return false;
+	}
+
+	private IntLongHashMap intMap(LookupNamespace namespace) {
+		IntLongHashMap map = intMaps[namespace.ordinal()];
+		if (map == null) {
+			throw new IllegalArgumentException(namespace + " is not keyed by int");
+		}
+		return map;
+	}
+
+	private ObjectLongHashMap<String> stringMap(LookupNamespace namespace) {
+		ObjectLongHashMap<String> map = stringMaps[namespace.ordinal()];
+		if (map == null) {
+			throw new IllegalArgumentException(namespace + " is not keyed by name");
+		}
+		return map;
+	}
+
+}
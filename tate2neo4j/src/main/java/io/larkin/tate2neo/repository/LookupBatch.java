@@ -0,0 +1,132 @@
+package io.larkin.tate2neo.repository;
+
+import java.util.Arrays;
+
+/**
+ * A set of lookup keys, possibly across several namespaces, to be resolved
+ * together. Lets a remote lookup answer all of an artwork's keys in a single
+ * round trip. Instances are intended to be cleared and reused.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class LookupBatch {
+
+	private LookupNamespace[] namespaces = new LookupNamespace[32];
+
+	private int[] intKeys = new int[32];
+
+	private String[] stringKeys = new String[32];
+
+	private long[] nodeIds = new long[32];
+
+	private int size;
+
+	/**
+	 * Add an int key to the batch, unless it is already present.
+	 *
+	 * @param namespace
+	 * @param key
+	 * @return Position of the key in the batch
+	 */
+	public int add(LookupNamespace namespace, int key) {
+		int i = indexOf(namespace, key);
+		if (i < 0) {
+			i = append(namespace);
+			intKeys[i] = key;
+		}
+		return i;
+	}
+
+	/**
+	 * Add a name key to the batch, unless it is already present.
+	 *
+	 * @param namespace
+	 * @param key
+	 * @return Position of the key in the batch
+	 */
+	public int add(LookupNamespace namespace, String key) {
+		int i = indexOf(namespace, key);
+		if (i < 0) {
+			i = append(namespace);
+			stringKeys[i] = key;
+		}
+		return i;
+	}
+
+	/**
+	 * @return Position of the key in the batch, or -1 if it isn't present
+	 */
+	public int indexOf(LookupNamespace namespace, int key) {
+		for (int i = 0; i < size; i++) {
+			if (namespaces[i] == namespace && intKeys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Position of the key in the batch, or -1 if it isn't present
+	 */
+	public int indexOf(LookupNamespace namespace, String key) {
+		for (int i = 0; i < size; i++) {
+			if (namespaces[i] == namespace && key.equals(stringKeys[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public LookupNamespace getNamespace(int i) {
+		return namespaces[i];
+	}
+
+	public int getIntKey(int i) {
+		return intKeys[i];
+	}
+
+	public String getStringKey(int i) {
+		return stringKeys[i];
+	}
+
+	/**
+	 * @return The key at position i as it would be written to a string-based store
+	 */
+	public String getKeyAsString(int i) {
+		return namespaces[i].isIntKeyed() ? Integer.toString(intKeys[i]) : stringKeys[i];
+	}
+
+	/**
+	 * @return Resolved node id, or ILookupRepository.NOT_FOUND
+	 */
+	public long getNodeId(int i) {
+		return nodeIds[i];
+	}
+
+	public void setNodeId(int i, long nodeId) {
+		nodeIds[i] = nodeId;
+	}
+
+	public void clear() {
+		Arrays.fill(stringKeys, 0, size, null);
+		size = 0;
+	}
+
+	private int append(LookupNamespace namespace) {
+		if (size == namespaces.length) {
+			int capacity = size << 1;
+			namespaces = Arrays.copyOf(namespaces, capacity);
+			intKeys = Arrays.copyOf(intKeys, capacity);
+			stringKeys = Arrays.copyOf(stringKeys, capacity);
+			nodeIds = Arrays.copyOf(nodeIds, capacity);
+		}
+		namespaces[size] = namespace;
+		nodeIds[size] = ILookupRepository.NOT_FOUND;
+		return size++;
+	}
+}
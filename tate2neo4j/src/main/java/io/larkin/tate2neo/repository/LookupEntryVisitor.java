@@ -0,0 +1,20 @@
+package io.larkin.tate2neo.repository;
+
+/**
+ * Receives the entries of a lookup, e.g. to write them to a snapshot.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public interface LookupEntryVisitor {
+
+	/**
+	 * An entry of an int keyed namespace
+	 */
+	void entry(LookupNamespace namespace, int key, long nodeId);
+
+	/**
+	 * An entry of a name keyed namespace
+	 */
+	void entry(LookupNamespace namespace, String key, long nodeId);
+}
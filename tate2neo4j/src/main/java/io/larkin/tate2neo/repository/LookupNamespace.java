@@ -0,0 +1,44 @@
+package io.larkin.tate2neo.repository;
+
+/**
+ * The kinds of entity that are resolved to physical node ids during the
+ * import. Each namespace is keyed either by the entity's integer id in the
+ * Tate metadata or by a name.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public enum LookupNamespace {
+
+	ARTIST("artist", true),
+	PERSON_BY_NAME("person_by_name", false),
+	CATALOGUE_GROUP("catalogue_group", true),
+	CLASSIFICATION("classification", false),
+	MEDIUM("medium", false),
+	MOVEMENT("movement", true),
+	PLACE("place", false),
+	SUBJECT("subject", true);
+	
+	private final String key;
+	
+	private final boolean intKeyed;
+	
+	private LookupNamespace(String key, boolean intKeyed) {
+		this.key = key;
+		this.intKeyed = intKeyed;
+	}
+
+	/**
+	 * @return Name of the namespace, e.g. used as the Redis hash key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return true if entries are keyed by integer id rather than by name
+	 */
+	public boolean isIntKeyed() {
+		return intKeyed;
+	}
+}
@@ -0,0 +1,196 @@
+package io.larkin.tate2neo.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes every entry of a lookup to a compact binary file, and loads such a
+ * file into a lookup, so that a later import (a delta, or one resuming from a
+ * checkpoint) can start from the lookup of an earlier one without Redis.
+ *
+ * The file is a header - the magic number 0x54324E4C ("T2NL"), a version and
+ * the number of sections - followed by a section per namespace: its name,
+ * entry count and length in bytes, then its entries. An entry is an int key
+ * or a length-prefixed UTF-8 name, followed by the node id. Numbers are
+ * big-endian, as written by DataOutputStream.
+ *
+ * Loading can memory-map the file rather than read it onto the heap, which
+ * for a large lookup saves copying it through a buffer.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public final class LookupSnapshot {
+
+	private static final int MAGIC = 0x54324E4C;
+
+	private static final int VERSION = 1;
+
+	// entries are loaded in batches, a single round trip each for Redis
+	private static final int LOAD_BATCH_SIZE = 512;
+
+	private LookupSnapshot() {
+	}
+
+	/**
+	 * Write every entry of the lookup, replacing the file only once it has
+	 * been written in full.
+	 *
+	 * @param lookup
+	 * @param file
+	 * @return Number of entries written
+	 * @throws IOException
+	 */
+	public static long write(ILookupRepository lookup, Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		long total = 0;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(LookupNamespace.values().length);
+			for (LookupNamespace namespace : LookupNamespace.values()) {
+				Section section = new Section();
+				lookup.forEachEntry(namespace, section);
+				out.writeUTF(namespace.getKey());
+				out.writeInt(section.count);
+				out.writeInt(section.bytes.size());
+				section.bytes.writeTo(out);
+				total += section.count;
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		return total;
+	}
+
+	/**
+	 * Add every entry of a snapshot to a lookup.
+	 *
+	 * @param file
+	 * @param mapped	true to memory-map the file rather than read it
+	 * @param lookup	Entries are added to whatever the lookup already holds
+	 * @return Number of entries loaded
+	 * @throws IOException if the file isn't a snapshot
+	 */
+	public static long read(Path file, boolean mapped, ILookupRepository lookup) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (mapped) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} else {
+				buffer = ByteBuffer.allocate((int) channel.size());
+				while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+					// keep reading until the file is in the buffer
+				}
+				buffer.flip();
+			}
+		}
+		if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+			throw new IOException(file + " is not a lookup snapshot");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException(file + " is a version " + version + " lookup snapshot, expected " + VERSION);
+		}
+
+		long total = 0;
+		LookupBatch batch = new LookupBatch();
+		byte[] name = new byte[256];
+		for (int sections = buffer.getInt(); sections > 0; sections--) {
+			LookupNamespace namespace = namespace(readUTF(buffer));
+			int count = buffer.getInt();
+			int length = buffer.getInt();
+			if (namespace == null) {
+				// written by a later version; skip it
+				buffer.position(buffer.position() + length);
+				continue;
+			}
+			for (int i = 0; i < count; i++) {
+				int entry;
+				if (namespace.isIntKeyed()) {
+					entry = batch.add(namespace, buffer.getInt());
+				} else {
+					int size = buffer.getInt();
+					if (name.length < size) {
+						name = new byte[size];
+					}
+					buffer.get(name, 0, size);
+					entry = batch.add(namespace, new String(name, 0, size, StandardCharsets.UTF_8));
+				}
+				batch.setNodeId(entry, buffer.getLong());
+				if (batch.size() == LOAD_BATCH_SIZE) {
+					lookup.addAll(batch);
+					batch.clear();
+				}
+			}
+			total += count;
+		}
+		lookup.addAll(batch);
+		return total;
+	}
+
+	private static LookupNamespace namespace(String key) {
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			if (namespace.getKey().equals(key)) {
+				return namespace;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Read a string written by DataOutputStream.writeUTF. Namespace names are
+	 * ASCII, so the modified UTF-8 is plain UTF-8.
+	 */
+	private static String readUTF(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The entries of one namespace, written to memory so that the section
+	 * can be prefixed with its count and length.
+	 */
+	private static class Section implements LookupEntryVisitor {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		private int count;
+
+		@Override
+		public void entry(LookupNamespace namespace, int key, long nodeId) {
+			try {
+				out.writeInt(key);
+				out.writeLong(nodeId);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			count++;
+		}
+
+		@Override
+		public void entry(LookupNamespace namespace, String key, long nodeId) {
+			byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+			try {
+				out.writeInt(utf8.length);
+				out.write(utf8);
+				out.writeLong(nodeId);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			count++;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package io.larkin.tate2neo.repository;
+
+import io.larkin.tate2neo.utility.MappedHashTable;
+import io.larkin.tate2neo.utility.MappedKeyStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Lookup held in memory-mapped files, for collections whose lookup is too
+ * large for the heap (tens of millions of names) but where Redis isn't
+ * wanted. Each namespace is a MappedHashTable of 64-bit key hashes; int ids
+ * are kept in the slot to verify a match, while names are appended to a
+ * MappedKeyStore and the slot keeps their offset. A lookup is a hash, a probe
+ * of the mapped table and one comparison of the key, with nothing on the heap.
+ *
+ * The files are kept in import.lookup.mapped.dir, so the lookup outlives the
+ * import just as a Redis one does; remove the directory to start afresh.
+ * Activated with the "mapped" Spring profile.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+@Repository
+@Profile("mapped")
+public class MappedLookupRepository implements ILookupRepository, DisposableBean {
+
+	private final MappedHashTable[] tables = new MappedHashTable[LookupNamespace.values().length];
+
+	private final MappedKeyStore[] keyStores = new MappedKeyStore[LookupNamespace.values().length];
+
+	/**
+	 * @param directory		Where the lookup files are kept; created if necessary
+	 * @param expectedSize	Entries per namespace to allow for before a table grows
+	 * @throws IOException
+	 */
+	@Autowired
+	public MappedLookupRepository(@Value("${import.lookup.mapped.dir:lookup}") String directory,
+			@Value("${import.lookup.mapped.expectedSize:1000000}") long expectedSize) throws IOException {
+		this(Paths.get(directory), expectedSize);
+	}
+
+	public MappedLookupRepository(Path directory, long expectedSize) throws IOException {
+		Files.createDirectories(directory);
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			tables[namespace.ordinal()] = new MappedHashTable(directory.resolve(namespace.getKey() + ".table"),
+					expectedSize);
+			if (!namespace.isIntKeyed()) {
+				keyStores[namespace.ordinal()] = new MappedKeyStore(directory.resolve(namespace.getKey() + ".keys"));
+			}
+		}
+	}
+
+	@Override
+	public synchronized void add(LookupNamespace namespace, int key, long nodeId) {
+		MappedHashTable table = table(namespace, true);
+		long hash = hash(key);
+		long slot = table.find(hash, check -> check == key);
+		if (slot >= 0) {
+			table.setValue(slot, nodeId);
+		} else {
+			insert(table, -1 - slot, hash, key, nodeId);
+		}
+	}
+
+	@Override
+	public synchronized void add(LookupNamespace namespace, String key, long nodeId) {
+		MappedHashTable table = table(namespace, false);
+		MappedKeyStore keys = keyStores[namespace.ordinal()];
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		long hash = hash(bytes);
+		long slot = table.find(hash, offset -> keys.matches(offset, bytes));
+		if (slot >= 0) {
+			table.setValue(slot, nodeId);
+		} else {
+			insert(table, -1 - slot, hash, append(keys, bytes), nodeId);
+		}
+	}
+
+	@Override
+	public synchronized long get(LookupNamespace namespace, int key) {
+		MappedHashTable table = table(namespace, true);
+		long slot = table.find(hash(key), check -> check == key);
+		return slot >= 0 ? table.getValue(slot) : NOT_FOUND;
+	}
+
+	@Override
+	public synchronized long get(LookupNamespace namespace, String key) {
+		MappedHashTable table = table(namespace, false);
+		MappedKeyStore keys = keyStores[namespace.ordinal()];
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		long slot = table.find(hash(bytes), offset -> keys.matches(offset, bytes));
+		return slot >= 0 ? table.getValue(slot) : NOT_FOUND;
+	}
+
+	@Override
+	public synchronized long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator) {
+		MappedHashTable table = table(namespace, true);
+		long hash = hash(key);
+		long slot = table.find(hash, check -> check == key);
+		if (slot >= 0) {
+			return table.getValue(slot);
+		}
+		long nodeId = creator.getAsLong();
+		// the creator may have added keys of its own, moving the free slot
+		slot = table.find(hash, check -> check == key);
+		if (slot >= 0) {
+			table.setValue(slot, nodeId);
+		} else {
+			insert(table, -1 - slot, hash, key, nodeId);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public synchronized long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator) {
+		MappedHashTable table = table(namespace, false);
+		MappedKeyStore keys = keyStores[namespace.ordinal()];
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		long hash = hash(bytes);
+		long slot = table.find(hash, offset -> keys.matches(offset, bytes));
+		if (slot >= 0) {
+			return table.getValue(slot);
+		}
+		long nodeId = creator.getAsLong();
+		slot = table.find(hash, offset -> keys.matches(offset, bytes));
+		if (slot >= 0) {
+			table.setValue(slot, nodeId);
+		} else {
+			insert(table, -1 - slot, hash, append(keys, bytes), nodeId);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public synchronized void remove(LookupNamespace namespace, int key) {
+		MappedHashTable table = table(namespace, true);
+		long slot = table.find(hash(key), check -> check == key);
+		if (slot >= 0) {
+			table.remove(slot);
+		}
+	}
+
+	/**
+	 * The key's bytes stay in the key store; they are only reclaimed by
+	 * starting a new lookup.
+	 */
+	@Override
+	public synchronized void remove(LookupNamespace namespace, String key) {
+		MappedHashTable table = table(namespace, false);
+		MappedKeyStore keys = keyStores[namespace.ordinal()];
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		long slot = table.find(hash(bytes), offset -> keys.matches(offset, bytes));
+		if (slot >= 0) {
+			table.remove(slot);
+		}
+	}
+
+	@Override
+	public synchronized long truncate(long highNodeId) {
+		long removed = 0;
+		for (MappedHashTable table : tables) {
+			removed += table.removeIf(nodeId -> nodeId >= highNodeId);
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void forEachEntry(LookupNamespace namespace, LookupEntryVisitor visitor) {
+		MappedHashTable table = tables[namespace.ordinal()];
+		if (namespace.isIntKeyed()) {
+			table.forEach((key, nodeId) -> visitor.entry(namespace, (int) key, nodeId));
+		} else {
+			MappedKeyStore keys = keyStores[namespace.ordinal()];
+			table.forEach((offset, nodeId) -> visitor.entry(namespace, keys.get(offset), nodeId));
+		}
+	}
+
+	/**
+	 * @return Number of entries in a namespace
+	 */
+	public synchronized long size(LookupNamespace namespace) {
+		return tables[namespace.ordinal()].size();
+	}
+
+	/**
+	 * Write everything through to the files and unmap them.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		for (int i = 0; i < tables.length; i++) {
+			tables[i].close();
+			if (keyStores[i] != null) {
+				keyStores[i].close();
+			}
+		}
+	}
+
+	/**
+	 * Close the files when the application context shuts down.
+	 */
+	@Override
+	public void destroy() throws IOException {
+		close();
+	}
+
+	private MappedHashTable table(LookupNamespace namespace, boolean intKeyed) {
+		if (namespace.isIntKeyed() != intKeyed) {
+			throw new IllegalArgumentException(namespace + (intKeyed ? " is not keyed by int" : " is not keyed by name"));
+		}
+		return tables[namespace.ordinal()];
+	}
+
+	private static void insert(MappedHashTable table, long freeSlot, long hash, long check, long nodeId) {
+		try {
+			table.insert(freeSlot, hash, check, nodeId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long append(MappedKeyStore keys, byte[] key) {
+		try {
+			return keys.append(key);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static long hash(int key) {
+		return nonZero(mix(key));
+	}
+
+	/**
+	 * 64-bit FNV-1a, mixed so that the low bits used for the slot are spread.
+	 */
+	private static long hash(byte[] key) {
+		long h = 0xCBF29CE484222325L;
+		for (byte b : key) {
+			h ^= b & 0xFF;
+			h *= 0x100000001B3L;
+		}
+		return nonZero(mix(h));
+	}
+
+	/**
+	 * The finalizer of MurmurHash3
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// a zero hash marks a free slot
+	private static long nonZero(long hash) {
+		return hash == 0 ? 1 : hash;
+	}
+}
@@ -1,29 +1,197 @@
 package io.larkin.tate2neo.repository;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
 /**
- * Basic implementation of Redis key-value add and get operations.
+ * Redis implementation of the lookup. Each namespace is stored as a Redis
+ * hash whose fields are the entity keys and whose values are node ids. Batches
+ * of keys are resolved with pipelined HGET / HSET commands, so a whole batch
+ * costs a single network round trip. This is the default lookup; activate the
+ * "memory" profile to use the in-process lookup instead.
+ *
+ * Only one importer may use a Redis database at a time: the node ids it
+ * holds are those of one store, and a node the BatchInserter has created
+ * can't be taken back if another importer stores the same key first.
  * 
  * @author Larkin.Cunningham
  *
  */
 @Repository
+@Profile({"default", "redis"})
 public class RedisLookupRepository implements ILookupRepository {
 	
 	@Autowired
 	private RedisTemplate<String, String> redisTemplate;
 	
+	private final AtomicLong roundTrips = new AtomicLong();
+	
+	private final AtomicLong roundTripsSaved = new AtomicLong();
+	
+	@Override
+	public void add(LookupNamespace namespace, int key, long nodeId) {
+		add(namespace, Integer.toString(key), nodeId);
+	}
+
+	@Override
+	public void add(LookupNamespace namespace, String key, long nodeId) {
+		roundTrips.incrementAndGet();
+		hashOps().put(namespace.getKey(), key, Long.toString(nodeId));
+	}
+
+	@Override
+	public long get(LookupNamespace namespace, int key) {
+		return get(namespace, Integer.toString(key));
+	}
+
+	@Override
+	public long get(LookupNamespace namespace, String key) {
+		roundTrips.incrementAndGet();
+		String value = hashOps().get(namespace.getKey(), key);
+		return value == null ? NOT_FOUND : Long.parseLong(value);
+	}
+
+	@Override
+	public long getOrCreate(LookupNamespace namespace, int key, LongSupplier creator) {
+		return getOrCreate(namespace, Integer.toString(key), creator);
+	}
+
+	/**
+	 * Synchronised so that the importer can't create a node twice for the same
+	 * key. HSETNX detects another process having stored the key in the
+	 * meantime, i.e. a second importer using the same database, which would
+	 * leave the node just created without an entry.
+	 *
+	 * @throws IllegalStateException if another process stored the key first
+	 */
+	@Override
+	public synchronized long getOrCreate(LookupNamespace namespace, String key, LongSupplier creator) {
+		long nodeId = get(namespace, key);
+		if (nodeId == NOT_FOUND) {
+			nodeId = creator.getAsLong();
+			roundTrips.incrementAndGet();
+			if (!hashOps().putIfAbsent(namespace.getKey(), key, Long.toString(nodeId))) {
+				throw new IllegalStateException("Another importer stored " + namespace.getKey() + " " + key
+						+ " while node " + nodeId + " was created for it; only one importer may use a Redis database");
+			}
+		}
+		return nodeId;
+	}
+
 	@Override
-	public void add(String key, String value) {
-		redisTemplate.boundValueOps(key).append(value);
+	public void remove(LookupNamespace namespace, int key) {
+		remove(namespace, Integer.toString(key));
 	}
 
 	@Override
-	public String get(String key) {
-		return redisTemplate.opsForValue().get(key);
+	public void remove(LookupNamespace namespace, String key) {
+		roundTrips.incrementAndGet();
+		hashOps().delete(namespace.getKey(), key);
+	}
+
+	/**
+	 * Reads each namespace's hash in full, so only suitable for occasional use.
+	 */
+	@Override
+	public long truncate(long highNodeId) {
+		long removed = 0;
+		for (LookupNamespace namespace : LookupNamespace.values()) {
+			roundTrips.incrementAndGet();
+			List<Object> stale = new ArrayList<>();
+			for (Map.Entry<String, String> entry : hashOps().entries(namespace.getKey()).entrySet()) {
+				if (Long.parseLong(entry.getValue()) >= highNodeId) {
+					stale.add(entry.getKey());
+				}
+			}
+			if (!stale.isEmpty()) {
+				roundTrips.incrementAndGet();
+				hashOps().delete(namespace.getKey(), stale.toArray());
+				removed += stale.size();
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public void forEachEntry(LookupNamespace namespace, LookupEntryVisitor visitor) {
+		roundTrips.incrementAndGet();
+		for (Map.Entry<String, String> entry : hashOps().entries(namespace.getKey()).entrySet()) {
+			long nodeId = Long.parseLong(entry.getValue());
+			if (namespace.isIntKeyed()) {
+				visitor.entry(namespace, Integer.parseInt(entry.getKey()), nodeId);
+			} else {
+				visitor.entry(namespace, entry.getKey(), nodeId);
+			}
+		}
+	}
+
+	@Override
+	public void getAll(LookupBatch batch) {
+		if (batch.size() == 0) {
+			return;
+		}
+		RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+		List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (int i = 0; i < batch.size(); i++) {
+				connection.hGet(serializer.serialize(batch.getNamespace(i).getKey()),
+						serializer.serialize(batch.getKeyAsString(i)));
+			}
+			return null;
+		}, serializer);
+		for (int i = 0; i < batch.size(); i++) {
+			Object value = values.get(i);
+			batch.setNodeId(i, value == null ? NOT_FOUND : Long.parseLong((String) value));
+		}
+		countPipeline(batch.size());
+	}
+
+	@Override
+	public void addAll(LookupBatch batch) {
+		if (batch.size() == 0) {
+			return;
+		}
+		RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+		redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (int i = 0; i < batch.size(); i++) {
+				if (batch.getNodeId(i) != NOT_FOUND) {
+					connection.hSet(serializer.serialize(batch.getNamespace(i).getKey()),
+							serializer.serialize(batch.getKeyAsString(i)),
+							serializer.serialize(Long.toString(batch.getNodeId(i))));
+				}
+			}
+			return null;
+		});
+		countPipeline(batch.size());
+	}
+
+	@Override
+	public long getRoundTrips() {
+		return roundTrips.get();
+	}
+
+	@Override
+	public long getRoundTripsSaved() {
+		return roundTripsSaved.get();
+	}
+
+	private void countPipeline(int commands) {
+		roundTrips.incrementAndGet();
+		roundTripsSaved.addAndGet(commands - 1);
+	}
+
+	private HashOperations<String, String, String> hashOps() {
+		return redisTemplate.opsForHash();
 	}
 
 }
@@ -0,0 +1,61 @@
+package io.larkin.tate2neo.sink;
+
+import java.util.Map;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+/**
+ * Writes directly to the files of a new Neo4j store with the BatchInserter,
+ * bypassing transactions. Indexes are created as deferred schema indexes,
+ * which are built when the inserter is shut down.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public class BatchInserterSink implements ImportSink {
+
+	private final BatchInserter inserter;
+
+	/**
+	 * @param storeDir	Neo4j database directory to create
+	 */
+	public BatchInserterSink(String storeDir) {
+		this(BatchInserters.inserter(storeDir));
+	}
+
+	/**
+	 * @param storeDir	Neo4j database directory to create
+	 * @param config	Store settings, e.g. from StoreSizing
+	 */
+	public BatchInserterSink(String storeDir, Map<String, String> config) {
+		this(BatchInserters.inserter(storeDir, config));
+	}
+
+	public BatchInserterSink(BatchInserter inserter) {
+		this.inserter = inserter;
+	}
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		return inserter.createNode(properties, labels);
+	}
+
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		inserter.createRelationship(startNode, endNode, type, properties);
+	}
+
+	@Override
+	public void createIndex(Label label, String property) {
+		inserter.createDeferredSchemaIndex(label).on(property).create();
+	}
+
+	@Override
+	public void shutdown() {
+		inserter.shutdown();
+	}
+}
@@ -0,0 +1,125 @@
+package io.larkin.tate2neo.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Writes nothing, only counting what it is given. With it the import does
+ * all its parsing and transforming, and its lookups, but no disk I/O, so the
+ * throughput of that work can be measured on its own.
+ *
+ * Node ids are assigned in creation order, from 0, as a new BatchInserter
+ * store would assign them.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class CountingSink implements ImportSink {
+
+	private long nodes;
+
+	private long relationships;
+
+	private long properties;
+
+	// by label and relationship type, sorted for the summary
+	private final Map<String, long[]> labelCounts = new TreeMap<>();
+
+	private final Map<String, long[]> typeCounts = new TreeMap<>();
+
+	private final List<String> indexes = new ArrayList<>();
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		for (Label label : labels) {
+			count(labelCounts, label.name());
+		}
+		this.properties += properties != null ? properties.size() : 0;
+		return nodes++;
+	}
+
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		if (startNode < 0 || startNode >= nodes || endNode < 0 || endNode >= nodes) {
+			throw new IllegalArgumentException("No node " + (startNode < 0 || startNode >= nodes ? startNode : endNode));
+		}
+		count(typeCounts, type.name());
+		this.properties += properties != null ? properties.size() : 0;
+		relationships++;
+	}
+
+	@Override
+	public void createIndex(Label label, String property) {
+		indexes.add(label.name() + "(" + property + ")");
+	}
+
+	@Override
+	public void shutdown() {
+		System.out.println(summary());
+	}
+
+	private static void count(Map<String, long[]> counts, String name) {
+		long[] count = counts.get(name);
+		if (count == null) {
+			counts.put(name, count = new long[1]);
+		}
+		count[0]++;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getRelationships() {
+		return relationships;
+	}
+
+	/**
+	 * @return Properties of nodes and relationships together
+	 */
+	public long getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @return Nodes with the label
+	 */
+	public long getNodes(String label) {
+		long[] count = labelCounts.get(label);
+		return count != null ? count[0] : 0;
+	}
+
+	/**
+	 * @return Relationships of the type
+	 */
+	public long getRelationships(String type) {
+		long[] count = typeCounts.get(type);
+		return count != null ? count[0] : 0;
+	}
+
+	public List<String> getIndexes() {
+		return indexes;
+	}
+
+	/**
+	 * @return What would have been written, by label and relationship type
+	 */
+	public String summary() {
+		StringBuilder summary = new StringBuilder("Nothing written: ")
+				.append(nodes).append(" nodes, ").append(relationships).append(" relationships, ")
+				.append(properties).append(" properties, ").append(indexes.size()).append(" indexes");
+		for (Map.Entry<String, long[]> count : labelCounts.entrySet()) {
+			summary.append("\n  :").append(count.getKey()).append(' ').append(count.getValue()[0]);
+		}
+		for (Map.Entry<String, long[]> count : typeCounts.entrySet()) {
+			summary.append("\n  [:").append(count.getKey()).append("] ").append(count.getValue()[0]);
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,263 @@
+package io.larkin.tate2neo.sink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Writes nodes and relationships as header + data CSV files for the parallel
+ * bulk importer, neo4j-import (Neo4j 2.2 or later), instead of building the
+ * store directly.
+ *
+ * Node ids are assigned by the sink in creation order, from 0, so they are
+ * stable for a given input and match the ids a BatchInserter would assign.
+ * Each combination of labels and properties gets its own file, with its own
+ * header, e.g. nodes-1-Artist.csv:
+ *
+ * <pre>
+ * :ID,id:int,name,:LABEL
+ * 0,1688,"Nash, Paul",Artist;_Artist;Person;_Person
+ * </pre>
+ *
+ * On shutdown, import.sh is written with the neo4j-import command line for
+ * every file, along with indexes.cypher to create the indexes once the store
+ * has been built.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class CsvSink implements ImportSink {
+
+	private final Path directory;
+
+	private final Map<String, CsvFile> nodeFiles = new LinkedHashMap<>();
+
+	private final Map<String, CsvFile> relationshipFiles = new LinkedHashMap<>();
+
+	private final List<String> indexes = new ArrayList<>();
+
+	private final StringBuilder key = new StringBuilder();
+
+	private long nextNodeId;
+
+	/**
+	 * @param directory	Directory to write the CSV files to; created if necessary
+	 * @throws IOException
+	 */
+	public CsvSink(Path directory) throws IOException {
+		this.directory = Files.createDirectories(directory);
+	}
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		long nodeId = nextNodeId++;
+		CsvFile file = nodeFile(properties, labels);
+		try {
+			Writer out = file.out;
+			out.write(Long.toString(nodeId));
+			file.writeProperties(properties);
+			out.write(',');
+			for (int i = 0; i < labels.length; i++) {
+				if (i > 0) {
+					out.write(';');
+				}
+				out.write(labels[i].name());
+			}
+			out.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		CsvFile file = relationshipFile(type, properties);
+		try {
+			Writer out = file.out;
+			out.write(Long.toString(startNode));
+			out.write(',');
+			out.write(Long.toString(endNode));
+			out.write(',');
+			out.write(type.name());
+			file.writeProperties(properties);
+			out.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void createIndex(Label label, String property) {
+		indexes.add("CREATE INDEX ON :" + label.name() + "(" + property + ");");
+	}
+
+	@Override
+	public void shutdown() throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add("#!/bin/sh");
+		command.add("# Build a Neo4j store from the CSV files in this directory: ./import.sh <store dir>");
+		command.add("# then create the indexes with: neo4j-shell -path <store dir> -file indexes.cypher");
+		command.add("cd \"$(dirname \"$0\")\" && neo4j-import --into \"$1\" --multiline-fields=true \\");
+		for (CsvFile file : nodeFiles.values()) {
+			file.out.close();
+			command.add("  --nodes " + file.name + " \\");
+		}
+		for (CsvFile file : relationshipFiles.values()) {
+			file.out.close();
+			command.add("  --relationships " + file.name + " \\");
+		}
+		command.add("");
+		Files.write(directory.resolve("import.sh"), command, StandardCharsets.UTF_8);
+		Files.write(directory.resolve("indexes.cypher"), indexes, StandardCharsets.UTF_8);
+	}
+
+	private CsvFile nodeFile(Map<String, Object> properties, Label[] labels) {
+		key.setLength(0);
+		for (Label label : labels) {
+			key.append(label.name()).append(';');
+		}
+		String[] columns = columns(properties);
+		CsvFile file = nodeFiles.get(key.toString());
+		if (file == null) {
+			String name = "nodes-" + (nodeFiles.size() + 1) + "-" + (labels.length > 0 ? labels[0].name() : "Node") + ".csv";
+			file = new CsvFile(name, columns);
+			file.writeHeader(":ID", columns, properties, ":LABEL");
+			nodeFiles.put(key.toString(), file);
+		}
+		return file;
+	}
+
+	private CsvFile relationshipFile(RelationshipType type, Map<String, Object> properties) {
+		key.setLength(0);
+		key.append(type.name()).append(';');
+		String[] columns = columns(properties);
+		CsvFile file = relationshipFiles.get(key.toString());
+		if (file == null) {
+			String name = "relationships-" + (relationshipFiles.size() + 1) + "-" + type.name() + ".csv";
+			file = new CsvFile(name, columns);
+			file.writeHeader(":START_ID,:END_ID,:TYPE", columns, properties, null);
+			relationshipFiles.put(key.toString(), file);
+		}
+		return file;
+	}
+
+	/**
+	 * Append the property names and types to the file key.
+	 *
+	 * @return The property names, sorted
+	 */
+	private String[] columns(Map<String, Object> properties) {
+		if (properties == null || properties.isEmpty()) {
+			return new String[0];
+		}
+		String[] columns = properties.keySet().toArray(new String[properties.size()]);
+		Arrays.sort(columns);
+		for (String column : columns) {
+			key.append(column).append(':').append(type(properties.get(column))).append(';');
+		}
+		return columns;
+	}
+
+	/**
+	 * @return neo4j-import type of a property value
+	 */
+	private static String type(Object value) {
+		if (value instanceof Integer) {
+			return "int";
+		} else if (value instanceof Long) {
+			return "long";
+		} else if (value instanceof Boolean) {
+			return "boolean";
+		} else if (value instanceof Double) {
+			return "double";
+		} else if (value instanceof Float) {
+			return "float";
+		} else if (value instanceof Short) {
+			return "short";
+		} else if (value instanceof Byte) {
+			return "byte";
+		}
+		return "string";
+	}
+
+	/**
+	 * One CSV file, holding nodes or relationships with the same labels or
+	 * type and the same property names and types.
+	 */
+	private class CsvFile {
+
+		private final String name;
+
+		private final String[] columns;
+
+		private final Writer out;
+
+		CsvFile(String name, String[] columns) {
+			this.name = name;
+			this.columns = columns;
+			try {
+				this.out = Files.newBufferedWriter(directory.resolve(name), StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		void writeHeader(String idColumns, String[] columns, Map<String, Object> properties, String lastColumn) {
+			List<String> header = new ArrayList<>();
+			header.add(idColumns);
+			for (String column : columns) {
+				String type = type(properties.get(column));
+				header.add("string".equals(type) ? column : column + ":" + type);
+			}
+			if (lastColumn != null) {
+				header.add(lastColumn);
+			}
+			try {
+				out.write(String.join(",", header));
+				out.write('\n');
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Write each property column, preceded by a comma.
+		 */
+		void writeProperties(Map<String, Object> properties) throws IOException {
+			for (String column : columns) {
+				out.write(',');
+				Object value = properties.get(column);
+				if (value instanceof String) {
+					quote((String) value);
+				} else if (value != null) {
+					out.write(value.toString());
+				}
+			}
+		}
+
+		private void quote(String value) throws IOException {
+			out.write('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					out.write('"');
+				}
+				out.write(c);
+			}
+			out.write('"');
+		}
+	}
+}
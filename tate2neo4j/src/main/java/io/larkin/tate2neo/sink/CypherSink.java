@@ -0,0 +1,432 @@
+package io.larkin.tate2neo.sink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Loads a running Neo4j server, for when the store can't be taken offline for
+ * the BatchInserter. Nodes and relationships are buffered and sent as batched,
+ * parameterised Cypher statements over the transactional HTTP endpoint, one
+ * transaction per batch:
+ *
+ * <pre>
+ * UNWIND {rows} AS row CREATE (n:`Artist`:`Person`) SET n = row RETURN id(n)
+ * UNWIND {rows} AS row MATCH (a) WHERE id(a) = row.s MATCH (b) WHERE id(b) = row.e
+ *   CREATE (a)-[r:`BORN_IN`]-&gt;(b) SET r = row.p
+ * </pre>
+ *
+ * Nodes are buffered by their labels, and batches for different labels are
+ * sent concurrently, as they can't conflict. The importer is given node ids
+ * of the sink's own, in creation order, which are mapped to the ids returned
+ * by the server. A relationship batch needs the nodes at both ends, so the
+ * node batches holding any of them are sent, if still buffered, and waited
+ * for before it is; other node batches carry on filling. Relationships are
+ * sent one batch at a time, as concurrent batches would contend for the locks
+ * on the nodes they share. Indexes are created once everything else is loaded.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class CypherSink implements ImportSink {
+
+	private static final String ENDPOINT = "/db/data/transaction/commit";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final URL endpoint;
+
+	// Basic authentication header, or null
+	private final String authorization;
+
+	private final int batchSize;
+
+	private final int threads;
+
+	private final ExecutorService executor;
+
+	// by labels or relationship type, in the order first seen
+	private final Map<String, NodeBatch> nodeBatches = new LinkedHashMap<>();
+
+	private final Map<String, RelationshipBatch> relationshipBatches = new LinkedHashMap<>();
+
+	// node batches sent but not yet waited for
+	private final Deque<NodeBatch> sent = new ArrayDeque<>();
+
+	// node batches buffered or sent but not yet waited for, by number
+	private final Map<Long, NodeBatch> pending = new HashMap<>();
+
+	private long nextBatch;
+
+	private final List<String> indexes = new ArrayList<>();
+
+	// id on the server of each node, by the sink's id; until it is loaded,
+	// -2 less the number of the batch holding it
+	private long[] serverIds = new long[1024];
+
+	private long nextNodeId;
+
+	private long statements;
+
+	/**
+	 * @param url		Server, e.g. http://localhost:7474
+	 * @param user		For servers with authentication; empty or null if none
+	 * @param password
+	 * @param batchSize	Nodes or relationships per statement and transaction
+	 * @param threads	Node batches sent at once
+	 */
+	public CypherSink(String url, String user, String password, int batchSize, int threads) {
+		try {
+			this.endpoint = new URL(url.replaceAll("/+$", "") + ENDPOINT);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Not a server URL: " + url, e);
+		}
+		this.authorization = user == null || user.isEmpty() ? null : "Basic " + Base64.getEncoder()
+				.encodeToString((user + ":" + (password != null ? password : "")).getBytes(StandardCharsets.UTF_8));
+		this.batchSize = Math.max(1, batchSize);
+		this.threads = Math.max(1, threads);
+		this.executor = Executors.newFixedThreadPool(this.threads, r -> {
+			Thread thread = new Thread(r, "cypher-sink");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Arrays.fill(serverIds, -1);
+	}
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		StringBuilder key = new StringBuilder();
+		for (Label label : labels) {
+			key.append(':').append('`').append(label.name()).append('`');
+		}
+		NodeBatch batch = nodeBatches.get(key.toString());
+		if (batch == null) {
+			batch = newBatch(key.toString());
+		}
+		long nodeId = nextNodeId++;
+		if (nodeId == serverIds.length) {
+			serverIds = Arrays.copyOf(serverIds, serverIds.length << 1);
+		}
+		serverIds[(int) nodeId] = -2 - batch.number;
+		// the caller may reuse the map
+		batch.add(nodeId, properties != null ? new HashMap<>(properties) : Collections.emptyMap());
+		if (batch.size() >= batchSize) {
+			send(batch);
+			newBatch(batch.labels);
+		}
+		return nodeId;
+	}
+
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		if (startNode < 0 || startNode >= nextNodeId || endNode < 0 || endNode >= nextNodeId) {
+			throw new IllegalArgumentException("No node " + (startNode < 0 || startNode >= nextNodeId ? startNode : endNode));
+		}
+		RelationshipBatch batch = relationshipBatches.get(type.name());
+		if (batch == null) {
+			batch = new RelationshipBatch(type.name());
+			relationshipBatches.put(type.name(), batch);
+		}
+		batch.add(startNode, endNode, properties != null ? new HashMap<>(properties) : Collections.emptyMap());
+		if (batch.size() >= batchSize) {
+			send(batch);
+		}
+	}
+
+	@Override
+	public void createIndex(Label label, String property) {
+		indexes.add("CREATE INDEX ON :`" + label.name() + "`(`" + property + "`)");
+	}
+
+	/**
+	 * Send everything still buffered, then create the indexes.
+	 */
+	@Override
+	public void shutdown() throws IOException {
+		try {
+			sendNodes();
+			for (RelationshipBatch batch : relationshipBatches.values()) {
+				if (batch.size() > 0) {
+					send(batch);
+				}
+			}
+			// schema changes can't share a transaction with data
+			for (String index : indexes) {
+				execute(index, Collections.emptyMap());
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			executor.shutdownNow();
+		}
+		System.out.println("Loaded " + nextNodeId + " nodes into " + endpoint.getHost() + " with " + statements
+				+ " statements");
+	}
+
+	/**
+	 * @return Node id on the server of a node created by this sink, or -1 if it
+	 * 			hasn't been sent yet
+	 */
+	public long getServerId(long nodeId) {
+		return Math.max(-1, serverIds[(int) nodeId]);
+	}
+
+	/**
+	 * Start buffering nodes with some labels in a new batch.
+	 */
+	private NodeBatch newBatch(String labels) {
+		NodeBatch batch = new NodeBatch(labels, nextBatch++);
+		nodeBatches.put(labels, batch);
+		pending.put(batch.number, batch);
+		return batch;
+	}
+
+	private void send(NodeBatch batch) {
+		// bound the batches in flight, and so the memory they hold
+		while (sent.size() >= threads * 2) {
+			await(sent.poll());
+		}
+		String statement = "UNWIND {rows} AS row CREATE (n" + batch.labels + ") SET n = row RETURN id(n)";
+		Map<String, Object> parameters = Collections.singletonMap("rows", batch.rows);
+		batch.result = executor.submit(() -> execute(statement, parameters));
+		sent.add(batch);
+	}
+
+	/**
+	 * Send every node buffer, and wait until every node batch is loaded.
+	 */
+	private void sendNodes() {
+		for (NodeBatch batch : new ArrayList<>(nodeBatches.values())) {
+			if (batch.size() > 0) {
+				send(batch);
+				newBatch(batch.labels);
+			}
+		}
+		while (!sent.isEmpty()) {
+			await(sent.poll());
+		}
+	}
+
+	/**
+	 * Send the node buffers holding any of the nodes a relationship batch
+	 * connects, and wait until those nodes are loaded.
+	 */
+	private void sendNodes(RelationshipBatch batch) {
+		Map<Long, NodeBatch> needed = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			for (long nodeId : new long[] { batch.starts[i], batch.ends[i] }) {
+				long serverId = serverIds[(int) nodeId];
+				if (serverId < 0) {
+					needed.put(-2 - serverId, pending.get(-2 - serverId));
+				}
+			}
+		}
+		for (NodeBatch nodes : needed.values()) {
+			if (nodes.result == null) {
+				send(nodes);
+				newBatch(nodes.labels);
+			}
+		}
+		for (NodeBatch nodes : needed.values()) {
+			if (sent.remove(nodes)) {
+				await(nodes);
+			}
+		}
+	}
+
+	/**
+	 * Note the server ids of a batch of nodes, once it has been loaded.
+	 */
+	private void await(NodeBatch batch) {
+		JsonNode data;
+		try {
+			data = batch.result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted loading nodes"));
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw (UncheckedIOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		if (data.size() != batch.nodeIds.size()) {
+			throw new IllegalStateException("Server created " + data.size() + " of a batch of "
+					+ batch.nodeIds.size() + " nodes");
+		}
+		for (int i = 0; i < data.size(); i++) {
+			serverIds[batch.nodeIds.get(i).intValue()] = data.get(i).get("row").get(0).asLong();
+		}
+		pending.remove(batch.number);
+	}
+
+	private void send(RelationshipBatch batch) {
+		sendNodes(batch);
+		List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			Map<String, Object> row = new HashMap<>(4);
+			row.put("s", serverIds[(int) batch.starts[i]]);
+			row.put("e", serverIds[(int) batch.ends[i]]);
+			row.put("p", batch.properties.get(i));
+			rows.add(row);
+		}
+		// a MATCH for each end, so each is a lookup by id rather than a scan
+		execute("UNWIND {rows} AS row MATCH (a) WHERE id(a) = row.s MATCH (b) WHERE id(b) = row.e CREATE (a)-[r:`"
+				+ batch.type + "`]->(b) SET r = row.p", Collections.singletonMap("rows", rows));
+		batch.clear();
+	}
+
+	/**
+	 * Run one statement in a transaction of its own.
+	 *
+	 * @return The rows of the result, each {"row": [...]}
+	 * @throws UncheckedIOException if the server can't be reached
+	 * @throws IllegalStateException if the statement fails
+	 */
+	JsonNode execute(String statement, Map<String, ?> parameters) {
+		Map<String, Object> body = Collections.singletonMap("statements", Collections.singletonList(
+				new Statement(statement, parameters)));
+		try {
+			HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+			connection.setRequestProperty("Accept", "application/json; charset=UTF-8");
+			if (authorization != null) {
+				connection.setRequestProperty("Authorization", authorization);
+			}
+			try (OutputStream out = connection.getOutputStream()) {
+				MAPPER.writeValue(out, body);
+			}
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Server returned " + status + " for " + endpoint);
+			}
+			JsonNode response;
+			try (InputStream in = connection.getInputStream()) {
+				response = MAPPER.readTree(in);
+			}
+			JsonNode errors = response.path("errors");
+			if (errors.size() > 0) {
+				throw new IllegalStateException(errors.get(0).path("code").asText() + ": "
+						+ errors.get(0).path("message").asText() + " (" + statement + ")");
+			}
+			synchronized (this) {
+				statements++;
+			}
+			return response.path("results").path(0).path("data");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * A statement as the transactional endpoint expects it
+	 */
+	private static class Statement {
+
+		public final String statement;
+
+		public final Map<String, ?> parameters;
+
+		Statement(String statement, Map<String, ?> parameters) {
+			this.statement = statement;
+			this.parameters = parameters;
+		}
+	}
+
+	/**
+	 * Nodes with the same labels, waiting to be sent or being loaded
+	 */
+	private static class NodeBatch {
+
+		// as they appear in a CREATE, e.g. :`Artist`:`Person`
+		final String labels;
+
+		final long number;
+
+		final List<Long> nodeIds = new ArrayList<>();
+
+		final List<Map<String, Object>> rows = new ArrayList<>();
+
+		// null until sent
+		Future<JsonNode> result;
+
+		NodeBatch(String labels, long number) {
+			this.labels = labels;
+			this.number = number;
+		}
+
+		void add(long nodeId, Map<String, Object> properties) {
+			nodeIds.add(nodeId);
+			rows.add(properties);
+		}
+
+		int size() {
+			return rows.size();
+		}
+	}
+
+	/**
+	 * Relationships of the same type, by the sink's node ids
+	 */
+	private static class RelationshipBatch {
+
+		final String type;
+
+		long[] starts = new long[64];
+
+		long[] ends = new long[64];
+
+		final List<Map<String, Object>> properties = new ArrayList<>();
+
+		RelationshipBatch(String type) {
+			this.type = type;
+		}
+
+		void add(long start, long end, Map<String, Object> properties) {
+			int i = this.properties.size();
+			if (i == starts.length) {
+				starts = Arrays.copyOf(starts, i << 1);
+				ends = Arrays.copyOf(ends, i << 1);
+			}
+			starts[i] = start;
+			ends[i] = end;
+			this.properties.add(properties);
+		}
+
+		int size() {
+			return properties.size();
+		}
+
+		void clear() {
+			properties.clear();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package io.larkin.tate2neo.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.schema.IndexDefinition;
+
+/**
+ * Writes to an existing Neo4j store through an embedded database, for delta
+ * imports. Unlike the BatchInserter this can delete, but every write goes
+ * through a transaction, so writes are committed in batches of
+ * OPERATIONS_PER_TRANSACTION rather than one transaction per write.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class GraphDatabaseSink implements UpdatableSink {
+
+	private static final int OPERATIONS_PER_TRANSACTION = 10000;
+
+	private final GraphDatabaseService db;
+
+	private Transaction tx;
+
+	private int operations;
+
+	/**
+	 * @param storeDir	Neo4j database directory, created by an earlier import
+	 */
+	public GraphDatabaseSink(String storeDir) {
+		this(new GraphDatabaseFactory().newEmbeddedDatabase(storeDir));
+	}
+
+	public GraphDatabaseSink(GraphDatabaseService db) {
+		this.db = db;
+	}
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		write();
+		Node node = db.createNode(labels);
+		setProperties(node, properties);
+		return node.getId();
+	}
+
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		write();
+		Relationship relationship = db.getNodeById(startNode)
+				.createRelationshipTo(db.getNodeById(endNode), type);
+		if (properties != null) {
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				relationship.setProperty(property.getKey(), property.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Create the index unless the store already has it. Schema changes can't
+	 * share a transaction with data changes, so pending writes are committed
+	 * first.
+	 */
+	@Override
+	public void createIndex(Label label, String property) {
+		commit();
+		try (Transaction schemaTx = db.beginTx()) {
+			for (IndexDefinition index : db.schema().getIndexes(label)) {
+				for (String key : index.getPropertyKeys()) {
+					if (key.equals(property)) {
+						return;
+					}
+				}
+			}
+			db.schema().indexFor(label).on(property).create();
+			schemaTx.success();
+		}
+	}
+
+	@Override
+	public Object getNodeProperty(long node, String property) {
+		write();
+		return db.getNodeById(node).getProperty(property, null);
+	}
+
+	@Override
+	public void setNodeProperties(long nodeId, Map<String, Object> properties) {
+		write();
+		Node node = db.getNodeById(nodeId);
+		List<String> keys = new ArrayList<>();
+		for (String key : node.getPropertyKeys()) {
+			keys.add(key);
+		}
+		for (String key : keys) {
+			node.removeProperty(key);
+		}
+		setProperties(node, properties);
+	}
+
+	@Override
+	public List<Long> deleteRelationships(long nodeId, Direction direction, RelationshipType... types) {
+		write();
+		Node node = db.getNodeById(nodeId);
+		List<Long> others = new ArrayList<>();
+		for (Relationship relationship : node.getRelationships(direction, types)) {
+			others.add(relationship.getOtherNode(node).getId());
+			relationship.delete();
+		}
+		return others;
+	}
+
+	@Override
+	public boolean hasRelationships(long node, Direction direction) {
+		write();
+		return db.getNodeById(node).hasRelationship(direction);
+	}
+
+	@Override
+	public boolean hasLabel(long node, Label label) {
+		write();
+		return db.getNodeById(node).hasLabel(label);
+	}
+
+	@Override
+	public void addLabels(long nodeId, Label... labels) {
+		write();
+		Node node = db.getNodeById(nodeId);
+		for (Label label : labels) {
+			node.addLabel(label);
+		}
+	}
+
+	@Override
+	public void removeLabels(long nodeId, Label... labels) {
+		write();
+		Node node = db.getNodeById(nodeId);
+		for (Label label : labels) {
+			node.removeLabel(label);
+		}
+	}
+
+	@Override
+	public void deleteNode(long nodeId) {
+		write();
+		Node node = db.getNodeById(nodeId);
+		for (Relationship relationship : node.getRelationships()) {
+			relationship.delete();
+		}
+		node.delete();
+	}
+
+	@Override
+	public void shutdown() {
+		try {
+			commit();
+		} finally {
+			db.shutdown();
+		}
+	}
+
+	private void setProperties(Node node, Map<String, Object> properties) {
+		if (properties != null) {
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				node.setProperty(property.getKey(), property.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Make sure a transaction is open, committing the current one once it
+	 * holds enough operations.
+	 */
+	private void write() {
+		if (tx != null && operations >= OPERATIONS_PER_TRANSACTION) {
+			commit();
+		}
+		if (tx == null) {
+			tx = db.beginTx();
+		}
+		operations++;
+	}
+
+	private void commit() {
+		if (tx != null) {
+			try {
+				tx.success();
+			} finally {
+				tx.close();
+				tx = null;
+				operations = 0;
+			}
+		}
+	}
+}
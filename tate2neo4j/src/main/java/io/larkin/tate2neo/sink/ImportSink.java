@@ -0,0 +1,57 @@
+package io.larkin.tate2neo.sink;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Destination for the nodes and relationships produced by an import. The
+ * importer only creates nodes and relationships and declares indexes, so it
+ * can write to a BatchInserter store or to files for another tool to load.
+ * 
+ * Sinks are called from a single thread. Property maps are only read during
+ * the call they're passed to, so a caller may refill the same map each time.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public interface ImportSink {
+
+	/**
+	 * Create a node.
+	 * 
+	 * @param properties	May be null for a node with no properties
+	 * @param labels
+	 * @return Node id, used to create relationships to the node
+	 */
+	long createNode(Map<String, Object> properties, Label... labels);
+
+	/**
+	 * Create a relationship between two nodes created by this sink.
+	 * 
+	 * @param startNode
+	 * @param endNode
+	 * @param type
+	 * @param properties	May be null for a relationship with no properties
+	 */
+	void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties);
+
+	/**
+	 * Declare an index on a property of the nodes with a label, to be built
+	 * once the import is complete.
+	 * 
+	 * @param label
+	 * @param property
+	 */
+	void createIndex(Label label, String property);
+
+	/**
+	 * Finish the import, flushing everything written to the sink.
+	 * 
+	 * @throws IOException
+	 */
+	void shutdown() throws IOException;
+}
@@ -0,0 +1,424 @@
+package io.larkin.tate2neo.sink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Holds back relationships until every node has been created, then writes
+ * them to another sink in order of start node, type and end node. An import
+ * creates relationships in input order, interleaving those of many nodes;
+ * ordered, each node's outgoing relationships are neighbours in the store,
+ * and the nodes at either end are read in order of id. Relationships past
+ * the memory budget are sorted and spilled to files, which are merged.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class OrderingSink implements ImportSink {
+
+	// two node ids, a type, a reference to the properties and the two
+	// indexes used while sorting
+	private static final int RECORD_BYTES = 36;
+
+	// a rough cost of each property copied, as a map entry and its value
+	private static final int PROPERTY_BYTES = 64;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ImportSink sink;
+
+	private final long memoryBudget;
+
+	private final Path spillDir;
+
+	private final List<RelationshipType> types = new ArrayList<>();
+
+	private final Map<String, Integer> typeIds = new HashMap<>();
+
+	private Chunk chunk = new Chunk();
+
+	private long bytesBuffered;
+
+	private final List<Path> spills = new ArrayList<>();
+
+	private long relationships;
+
+	/**
+	 * @param sink			Sink to write to
+	 * @param memoryBudget	Bytes of relationships to hold before spilling
+	 * @param spillDir		Directory for the spilled files, created if necessary
+	 * 						and removed again once empty
+	 */
+	public OrderingSink(ImportSink sink, long memoryBudget, Path spillDir) {
+		this.sink = sink;
+		this.memoryBudget = Math.max(RECORD_BYTES, memoryBudget);
+		this.spillDir = spillDir;
+	}
+
+	@Override
+	public long createNode(Map<String, Object> properties, Label... labels) {
+		return sink.createNode(properties, labels);
+	}
+
+	/**
+	 * Buffer a relationship. Its properties are copied, as the caller may
+	 * reuse the map.
+	 */
+	@Override
+	public void createRelationship(long startNode, long endNode, RelationshipType type,
+			Map<String, Object> properties) {
+		Integer typeId = typeIds.get(type.name());
+		if (typeId == null) {
+			typeId = types.size();
+			typeIds.put(type.name(), typeId);
+			types.add(type);
+		}
+		Map<String, Object> copy = properties == null || properties.isEmpty() ? null : new HashMap<>(properties);
+		chunk.add(startNode, endNode, typeId, copy);
+		bytesBuffered += RECORD_BYTES + (copy != null ? copy.size() * PROPERTY_BYTES : 0);
+		relationships++;
+		if (bytesBuffered >= memoryBudget) {
+			try {
+				spill();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Write the chunk to a file in order, as a run to be merged.
+	 */
+	private void spill() throws IOException {
+		Files.createDirectories(spillDir);
+		Path file = Files.createTempFile(spillDir, "relationships", ".run");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+				BUFFER_SIZE))) {
+			for (int i : chunk.sort()) {
+				write(out, chunk, i);
+			}
+		}
+		spills.add(file);
+		chunk = new Chunk();
+		bytesBuffered = 0;
+	}
+
+	@Override
+	public void createIndex(Label label, String property) {
+		sink.createIndex(label, property);
+	}
+
+	/**
+	 * Write every relationship buffered so far to the sink, in order. Called
+	 * once the last node has been created; relationships buffered after it
+	 * are ordered among themselves.
+	 *
+	 * @return Relationships written
+	 * @throws IOException
+	 */
+	public long flush() throws IOException {
+		long written = relationships;
+		if (spills.isEmpty()) {
+			int[] order = chunk.sort();
+			for (int i : order) {
+				sink.createRelationship(chunk.starts[i], chunk.ends[i], types.get(chunk.types[i]), chunk.properties[i]);
+			}
+		} else {
+			if (chunk.size > 0) {
+				spill();
+			}
+			merge(spills);
+			spills.clear();
+		}
+		chunk = new Chunk();
+		bytesBuffered = 0;
+		relationships = 0;
+		return written;
+	}
+
+	/**
+	 * Write the sorted runs to the sink, taking the first relationship of
+	 * any run each time, and delete them.
+	 */
+	private void merge(List<Path> runs) throws IOException {
+		List<DataInputStream> inputs = new ArrayList<>();
+		try {
+			PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> compare(
+					a.chunk.starts[0], a.chunk.ends[0], a.chunk.types[0],
+					b.chunk.starts[0], b.chunk.ends[0], b.chunk.types[0]));
+			for (Path path : runs) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+						BUFFER_SIZE));
+				inputs.add(in);
+				Run run = new Run(in);
+				if (run.next()) {
+					heads.add(run);
+				}
+			}
+			while (!heads.isEmpty()) {
+				Run run = heads.poll();
+				Chunk head = run.chunk;
+				sink.createRelationship(head.starts[0], head.ends[0], types.get(head.types[0]), head.properties[0]);
+				if (run.next()) {
+					heads.add(run);
+				}
+			}
+		} finally {
+			for (DataInputStream in : inputs) {
+				in.close();
+			}
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+			try {
+				Files.deleteIfExists(spillDir);
+			} catch (DirectoryNotEmptyException e) {
+				// holds files of its own
+			}
+		}
+	}
+
+	/**
+	 * Flush the relationships, then shut down the sink.
+	 */
+	@Override
+	public void shutdown() throws IOException {
+		flush();
+		sink.shutdown();
+	}
+
+	/**
+	 * @return Relationships buffered and not yet written
+	 */
+	public long getBuffered() {
+		return relationships;
+	}
+
+	/**
+	 * @return Files spilled to since the last flush
+	 */
+	public int getSpills() {
+		return spills.size();
+	}
+
+	private static int compare(long start1, long end1, int type1, long start2, long end2, int type2) {
+		if (start1 != start2) {
+			return Long.compare(start1, start2);
+		}
+		if (type1 != type2) {
+			return Integer.compare(type1, type2);
+		}
+		return Long.compare(end1, end2);
+	}
+
+	private static void write(DataOutputStream out, Chunk chunk, int i) throws IOException {
+		out.writeLong(chunk.starts[i]);
+		out.writeLong(chunk.ends[i]);
+		out.writeInt(chunk.types[i]);
+		Map<String, Object> properties = chunk.properties[i];
+		out.writeShort(properties != null ? properties.size() : 0);
+		if (properties != null) {
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				writeString(out, property.getKey());
+				writeValue(out, property.getKey(), property.getValue());
+			}
+		}
+	}
+
+	/**
+	 * The property values relationships are given: strings, numbers and
+	 * booleans.
+	 */
+	private static void writeValue(DataOutputStream out, String key, Object value) throws IOException {
+		if (value instanceof String) {
+			out.writeByte('S');
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte('I');
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte('L');
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte('D');
+			out.writeDouble((Double) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte('B');
+			out.writeBoolean((Boolean) value);
+		} else {
+			throw new IllegalArgumentException("Can't spill property " + key + " of type "
+					+ (value != null ? value.getClass().getName() : "null"));
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case 'S':
+			return readString(in);
+		case 'I':
+			return in.readInt();
+		case 'L':
+			return in.readLong();
+		case 'D':
+			return in.readDouble();
+		case 'B':
+			return in.readBoolean();
+		default:
+			throw new IOException("Corrupt spill file: property tag " + tag);
+		}
+	}
+
+	// writeUTF is limited to 64KB
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Relationships held in memory, in parallel arrays.
+	 */
+	private class Chunk {
+
+		long[] starts;
+
+		long[] ends;
+
+		int[] types;
+
+		Map<String, Object>[] properties;
+
+		int size;
+
+		Chunk() {
+			this(1024);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Chunk(int capacity) {
+			starts = new long[capacity];
+			ends = new long[capacity];
+			types = new int[capacity];
+			properties = new Map[capacity];
+		}
+
+		void add(long start, long end, int type, Map<String, Object> relationshipProperties) {
+			if (size == starts.length) {
+				int capacity = size * 2;
+				starts = Arrays.copyOf(starts, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				types = Arrays.copyOf(types, capacity);
+				properties = Arrays.copyOf(properties, capacity);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			types[size] = type;
+			properties[size] = relationshipProperties;
+			size++;
+		}
+
+		/**
+		 * @return false at the end of the file
+		 */
+		boolean read(DataInputStream in) throws IOException {
+			long start;
+			try {
+				start = in.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			long end = in.readLong();
+			int type = in.readInt();
+			int count = in.readShort();
+			Map<String, Object> relationshipProperties = null;
+			if (count > 0) {
+				relationshipProperties = new HashMap<>();
+				for (int i = 0; i < count; i++) {
+					relationshipProperties.put(readString(in), readValue(in));
+				}
+			}
+			add(start, end, type, relationshipProperties);
+			return true;
+		}
+
+		/**
+		 * @return Indexes of the relationships in the order they're written
+		 */
+		int[] sort() {
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			// bottom-up merge sort of the indexes, stable and without boxing
+			int[] from = order;
+			int[] to = new int[size];
+			for (int width = 1; width < size; width *= 2) {
+				for (int low = 0; low < size; low += 2 * width) {
+					int mid = Math.min(low + width, size);
+					int high = Math.min(low + 2 * width, size);
+					int a = low;
+					int b = mid;
+					for (int k = low; k < high; k++) {
+						if (a < mid && (b >= high || compare(from[a], from[b]) <= 0)) {
+							to[k] = from[a++];
+						} else {
+							to[k] = from[b++];
+						}
+					}
+				}
+				int[] swap = from;
+				from = to;
+				to = swap;
+			}
+			return from;
+		}
+
+		private int compare(int i, int j) {
+			return OrderingSink.compare(starts[i], ends[i], types[i], starts[j], ends[j], types[j]);
+		}
+	}
+
+	/**
+	 * A sorted run being merged, holding its next relationship as a chunk of one.
+	 */
+	private class Run {
+
+		private final DataInputStream in;
+
+		final Chunk chunk = new Chunk(1);
+
+		Run(DataInputStream in) {
+			this.in = in;
+		}
+
+		boolean next() throws IOException {
+			chunk.size = 0;
+			return chunk.read(in);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package io.larkin.tate2neo.sink;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizes the memory the BatchInserter maps for each store file. Neo4j's
+ * defaults are the same whatever the size of the import, and once a store
+ * file outgrows its mapped window, creating relationships - which touch the
+ * records of both nodes as well as the relationship store - pages windows in
+ * and out on nearly every write.
+ *
+ * The number of records of each store is estimated from the number of
+ * artists and artworks, using the record sizes of Neo4j 2.1, with some
+ * headroom so the files can be mapped whole. Any store can be given a fixed
+ * size instead, and the estimates scaled down to fit under a limit.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class StoreSizing {
+
+	/**
+	 * The mapped store files, with their configuration key and record size
+	 */
+	public enum Store {
+		NODES("neostore.nodestore.db.mapped_memory", 15),
+		RELATIONSHIPS("neostore.relationshipstore.db.mapped_memory", 34),
+		PROPERTIES("neostore.propertystore.db.mapped_memory", 41),
+		STRINGS("neostore.propertystore.db.strings.mapped_memory", 128),
+		ARRAYS("neostore.propertystore.db.arrays.mapped_memory", 128);
+
+		private final String key;
+
+		private final int recordSize;
+
+		private Store(String key, int recordSize) {
+			this.key = key;
+			this.recordSize = recordSize;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public int getRecordSize() {
+			return recordSize;
+		}
+	}
+
+	private static final long MB = 1024 * 1024;
+
+	// room for the estimates to be low, as they are averages
+	private static final double HEADROOM = 1.25;
+
+	// catalogue groups, movements, subjects, classifications, mediums and
+	// places are shared, so there are few of them for each artwork
+	private static final double DIMENSIONS_PER_ARTWORK = 0.15;
+
+	// born in, and a couple of movements
+	private static final int RELATIONSHIPS_PER_ARTIST = 3;
+
+	// contributors, catalogue group, movements, subjects, classification
+	// and mediums; subjects make up most of them
+	private static final int RELATIONSHIPS_PER_ARTWORK = 12;
+
+	private final long[] records = new long[Store.values().length];
+
+	private final long[] bytes = new long[Store.values().length];
+
+	// how each size was arrived at, for the report
+	private final String[] sources = new String[Store.values().length];
+
+	/**
+	 * Estimate the size of each store for an import.
+	 *
+	 * @param artists
+	 * @param artworks
+	 * @return The estimate
+	 */
+	public static StoreSizing estimate(long artists, long artworks) {
+		StoreSizing sizing = new StoreSizing();
+		long nodes = artists + artworks + (long) (artworks * DIMENSIONS_PER_ARTWORK);
+		sizing.setRecords(Store.NODES, nodes);
+		sizing.setRecords(Store.RELATIONSHIPS, artists * RELATIONSHIPS_PER_ARTIST + artworks * RELATIONSHIPS_PER_ARTWORK);
+		// a node's few properties fit in one record; of the relationships,
+		// only BORN_IN has a property
+		sizing.setRecords(Store.PROPERTIES, nodes + artists);
+		// names and titles too long to be stored inline
+		sizing.setRecords(Store.STRINGS, artists + artworks);
+		sizing.setRecords(Store.ARRAYS, 0);
+		return sizing;
+	}
+
+	private void setRecords(Store store, long count) {
+		records[store.ordinal()] = count;
+		bytes[store.ordinal()] = Math.max(MB, (long) (count * store.getRecordSize() * HEADROOM));
+		sources[store.ordinal()] = "estimated for " + count + " records";
+	}
+
+	/**
+	 * Use a fixed size for a store rather than the estimate.
+	 *
+	 * @param store
+	 * @param size	e.g. "500M"; ignored if empty
+	 */
+	public void override(Store store, String size) {
+		if (size != null && !size.trim().isEmpty()) {
+			bytes[store.ordinal()] = parseSize(size);
+			sources[store.ordinal()] = "fixed";
+		}
+	}
+
+	/**
+	 * Scale the estimated sizes down, in proportion, so that the total
+	 * mapped memory is no more than a limit. Fixed sizes aren't changed.
+	 *
+	 * @param size	e.g. "2G"; ignored if empty
+	 */
+	public void limit(String size) {
+		if (size == null || size.trim().isEmpty()) {
+			return;
+		}
+		long limit = parseSize(size);
+		long estimated = 0;
+		long fixed = 0;
+		for (Store store : Store.values()) {
+			if (isEstimated(store)) {
+				estimated += bytes[store.ordinal()];
+			} else {
+				fixed += bytes[store.ordinal()];
+			}
+		}
+		if (estimated + fixed <= limit || estimated == 0) {
+			return;
+		}
+		double scale = Math.max(0, limit - fixed) / (double) estimated;
+		for (Store store : Store.values()) {
+			if (isEstimated(store)) {
+				bytes[store.ordinal()] = Math.max(MB, (long) (bytes[store.ordinal()] * scale));
+				sources[store.ordinal()] += ", scaled down to fit the limit of " + megabytes(limit);
+			}
+		}
+	}
+
+	private boolean isEstimated(Store store) {
+		return sources[store.ordinal()].startsWith("estimated");
+	}
+
+	public long getRecords(Store store) {
+		return records[store.ordinal()];
+	}
+
+	/**
+	 * @return Bytes to map for the store
+	 */
+	public long getBytes(Store store) {
+		return bytes[store.ordinal()];
+	}
+
+	/**
+	 * @return Configuration for BatchInserters.inserter
+	 */
+	public Map<String, String> toConfig() {
+		Map<String, String> config = new LinkedHashMap<>();
+		for (Store store : Store.values()) {
+			config.put(store.getKey(), megabytes(bytes[store.ordinal()]));
+		}
+		return config;
+	}
+
+	/**
+	 * @return A line for each store, with its size and how it was chosen
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder("Store mapped memory:");
+		long total = 0;
+		for (Store store : Store.values()) {
+			report.append("\n  ").append(store.getKey()).append('=').append(megabytes(bytes[store.ordinal()]))
+					.append(" (").append(sources[store.ordinal()]).append(')');
+			total += bytes[store.ordinal()];
+		}
+		return report.append("\n  total ").append(megabytes(total)).toString();
+	}
+
+	/**
+	 * Rounded up to whole megabytes, as Neo4j expects.
+	 */
+	private static String megabytes(long bytes) {
+		return (bytes + MB - 1) / MB + "M";
+	}
+
+	/**
+	 * @param size	Bytes, or a number of kilo, mega or gigabytes, e.g. "512M"
+	 * @return Bytes
+	 * @throws IllegalArgumentException if the size can't be read
+	 */
+	public static long parseSize(String size) {
+		String s = size.trim().toUpperCase();
+		long unit = 1;
+		switch (s.isEmpty() ? ' ' : s.charAt(s.length() - 1)) {
+		case 'K':
+			unit = 1024;
+			break;
+		case 'M':
+			unit = MB;
+			break;
+		case 'G':
+			unit = 1024 * MB;
+			break;
+		}
+		if (unit > 1) {
+			s = s.substring(0, s.length() - 1).trim();
+		}
+		try {
+			return Long.parseLong(s) * unit;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a size: " + size);
+		}
+	}
+}
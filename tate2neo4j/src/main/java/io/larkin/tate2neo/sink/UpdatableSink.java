@@ -0,0 +1,64 @@
+package io.larkin.tate2neo.sink;
+
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * A sink writing to an existing store, which can also change and delete the
+ * nodes and relationships of an earlier import. Used by delta imports to
+ * apply changed and removed records in place.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public interface UpdatableSink extends ImportSink {
+
+	/**
+	 * @param node
+	 * @param property
+	 * @return The property value, or null if the node doesn't have the property
+	 */
+	Object getNodeProperty(long node, String property);
+
+	/**
+	 * Replace every property of a node, keeping its id, labels and relationships.
+	 *
+	 * @param node
+	 * @param properties
+	 */
+	void setNodeProperties(long node, Map<String, Object> properties);
+
+	/**
+	 * Delete a node's relationships of the given types.
+	 *
+	 * @param node
+	 * @param direction	OUTGOING for relationships from the node
+	 * @param types
+	 * @return The nodes at the other end of the deleted relationships
+	 */
+	List<Long> deleteRelationships(long node, Direction direction, RelationshipType... types);
+
+	/**
+	 * @param node
+	 * @param direction	INCOMING for relationships to the node, BOTH for any
+	 * @return true if the node has relationships in that direction
+	 */
+	boolean hasRelationships(long node, Direction direction);
+
+	boolean hasLabel(long node, Label label);
+
+	void addLabels(long node, Label... labels);
+
+	void removeLabels(long node, Label... labels);
+
+	/**
+	 * Delete a node along with all of its relationships.
+	 *
+	 * @param node
+	 */
+	void deleteNode(long node);
+}
@@ -0,0 +1,58 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a whole file with a single open and bulk read into a buffer that is
+ * reused by the calling thread, and hands the buffer straight to a parser.
+ * This avoids the stream wrappers and per-file buffer allocation of parsing
+ * from a File. The Tate files are a few kilobytes each, well below the size
+ * at which memory mapping a file pays for its setup cost.
+ * 
+ * Safe to use from several threads; each thread has its own buffer, which is
+ * only valid for the duration of the parse call.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public class BulkFileReader {
+
+	/**
+	 * Parses the contents of a file held in buffer[0..length).
+	 */
+	public interface BufferParser<T> {
+		T parse(byte[] buffer, int length) throws IOException;
+	}
+
+	private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+	private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[INITIAL_BUFFER_SIZE];
+		}
+	};
+
+	public <T> T read(Path file, BufferParser<T> parser) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException(file + " is too large to read into a buffer");
+			}
+			byte[] buffer = buffers.get();
+			if (buffer.length < size) {
+				buffer = new byte[Integer.highestOneBit((int) size - 1) << 1];
+				buffers.set(buffer);
+			}
+			ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) size);
+			while (target.hasRemaining() && channel.read(target) != -1) {
+				// keep reading until the file is in the buffer
+			}
+			return parser.parse(buffer, target.position());
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package io.larkin.tate2neo.utility;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -10,13 +12,24 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.nio.file.FileVisitResult.*;
 
 /**
  * Utility class to recursively get a list of files within a given directory
- * for a given pattern.
+ * for a given pattern, either all at once or as a lazily populated stream.
  *  
  * @author Larkin.Cunningham
  *
@@ -80,4 +93,97 @@ public class FileFinder {
 		return finder.getFileList();
 	}
 	
+	/**
+	 * Stream the files within a directory that match a pattern. Each top-level
+	 * subdirectory is walked as a separate task on a pool of threads, so on
+	 * slow (e.g. network-backed) storage several directories are listed at
+	 * once. Paths are yielded in a stable order - files directly in the
+	 * directory, then each subdirectory in name order - and become available
+	 * as soon as their subdirectory has been walked rather than after the
+	 * whole tree has been.
+	 * 
+	 * @param directory
+	 * @param pattern	Glob pattern, e.g. "*.json"
+	 * @param threads	Number of subdirectories walked at once
+	 * @return Matching files; close the stream to abandon any outstanding walks
+	 * @throws IOException
+	 */
+	public static Stream<Path> streamFiles(String directory, String pattern, int threads)
+			throws IOException {
+		
+		Path startingDir = Paths.get(directory);
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		
+		List<Path> rootFiles = new ArrayList<>();
+		List<Path> subdirectories = new ArrayList<>();
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(startingDir)) {
+			for (Path entry : entries) {
+				if (Files.isDirectory(entry)) {
+					subdirectories.add(entry);
+				} else if (matcher.matches(entry.getFileName())) {
+					rootFiles.add(entry);
+				}
+			}
+		}
+		Collections.sort(rootFiles);
+		Collections.sort(subdirectories);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread thread = new Thread(r, "file-finder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<List<Path>>> walks = new ArrayList<>();
+		for (Path subdirectory : subdirectories) {
+			walks.add(executor.submit(() -> {
+				Finder finder = new Finder(pattern);
+				Files.walkFileTree(subdirectory, finder);
+				return finder.getFileList();
+			}));
+		}
+		// already submitted walks still run
+		executor.shutdown();
+		
+		Iterator<Path> files = new Iterator<Path>() {
+			private Iterator<Path> current = rootFiles.iterator();
+			private int nextWalk = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext()) {
+					if (nextWalk == walks.size()) {
+						return false;
+					}
+					current = await(walks.get(nextWalk++)).iterator();
+				}
+				return true;
+			}
+
+			@Override
+			public Path next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(files,
+				Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(executor::shutdownNow);
+	}
+	
+	private static List<Path> await(Future<List<Path>> walk) {
+		try {
+			return walk.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while finding files", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+	
 }
\ No newline at end of file
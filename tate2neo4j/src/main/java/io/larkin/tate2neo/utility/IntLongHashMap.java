@@ -0,0 +1,208 @@
+package io.larkin.tate2neo.utility;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive int keys to primitive long values.
+ * Avoids the boxing and entry objects of a java.util.HashMap, which matters
+ * when holding the physical node ids of hundreds of thousands of entities.
+ *
+ * Not thread-safe.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class IntLongHashMap {
+
+	/**
+	 * Receives the entries of the map
+	 */
+	public interface EntryConsumer {
+		void accept(int key, long value);
+	}
+
+	private static final int FREE_KEY = 0;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	private int size;
+
+	private int threshold;
+
+	// the free key can't be stored in the table, so keep it to one side
+	private boolean hasFreeKey;
+
+	private long freeKeyValue;
+
+	public IntLongHashMap() {
+		this(1024);
+	}
+
+	public IntLongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue	Returned when the key is not present
+	 * @return The value stored against the key, or defaultValue
+	 */
+	public long get(int key, long defaultValue) {
+		if (key == FREE_KEY) {
+			return hasFreeKey ? freeKeyValue : defaultValue;
+		}
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey;
+		}
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public void put(int key, long value) {
+		if (key == FREE_KEY) {
+			if (!hasFreeKey) {
+				size++;
+			}
+			hasFreeKey = true;
+			freeKeyValue = value;
+			return;
+		}
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > threshold) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	/**
+	 * Remove a key, if present.
+	 * 
+	 * @param key
+	 */
+	public void remove(int key) {
+		if (key == FREE_KEY) {
+			if (hasFreeKey) {
+				size--;
+			}
+			hasFreeKey = false;
+			return;
+		}
+		int i = slot(key);
+		while (keys[i] != FREE_KEY) {
+			if (keys[i] == key) {
+				size--;
+				shiftBack(i);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	/**
+	 * Call the consumer with every key and value, in no particular order. The
+	 * map must not be changed until this returns.
+	 */
+	public void forEach(EntryConsumer consumer) {
+		if (hasFreeKey) {
+			consumer.accept(FREE_KEY, freeKeyValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE_KEY) {
+				consumer.accept(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Empty slot i, moving back any later entries of the probe sequence that
+	 * would otherwise no longer be found.
+	 */
+	private void shiftBack(int i) {
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == FREE_KEY) {
+				break;
+			}
+			int home = slot(keys[j]);
+			// move the entry at j unless its home slot lies cyclically in (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE_KEY;
+	}
+
+	private int slot(int key) {
+		// spread sequential ids across the table
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE_KEY) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != FREE_KEY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
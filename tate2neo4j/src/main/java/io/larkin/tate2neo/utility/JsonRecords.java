@@ -0,0 +1,249 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+
+/**
+ * Streams the raw JSON records held in a single file, so a collection can
+ * be imported without opening tens of thousands of small files. Supported
+ * formats, chosen by file name:
+ *
+ * <ul>
+ * <li>.ndjson / .jsonl - newline-delimited JSON, one record per line (optionally .gz)</li>
+ * <li>.zip - every *.json entry</li>
+ * <li>.tar, .tar.gz / .tgz - every *.json entry</li>
+ * </ul>
+ *
+ * Records are read sequentially from the file, without extracting anything
+ * to disk, and returned as byte arrays ready to be handed to a parser.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public final class JsonRecords {
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private JsonRecords() {
+	}
+
+	/**
+	 * Open a record file.
+	 *
+	 * @param file
+	 * @return Records in file order; close the stream to close the file
+	 * @throws IOException
+	 */
+	public static Stream<byte[]> open(Path file) throws IOException {
+		String name = file.getFileName().toString().toLowerCase();
+		InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+		try {
+			Iterator<byte[]> records;
+			if (name.endsWith(".zip")) {
+				records = zipEntries(new ZipInputStream(in));
+			} else if (name.endsWith(".tar")) {
+				records = tarEntries(new TarArchiveInputStream(in));
+			} else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+				records = tarEntries(new TarArchiveInputStream(new GZIPInputStream(in, BUFFER_SIZE)));
+			} else if (name.endsWith(".gz")) {
+				records = lines(new GZIPInputStream(in, BUFFER_SIZE));
+			} else {
+				records = lines(in);
+			}
+			return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records,
+					Spliterator.ORDERED | Spliterator.NONNULL), false)
+					.onClose(() -> close(in));
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private static Iterator<byte[]> lines(InputStream in) {
+		return new RecordIterator() {
+			// the file is read a block at a time, then scanned for line endings
+			private final byte[] block = new byte[BUFFER_SIZE];
+			private int position;
+			private int limit;
+
+			// a line that runs on past the end of a block
+			private byte[] line = new byte[8192];
+
+			@Override
+			protected byte[] readNext() throws IOException {
+				int length = 0;
+				while (true) {
+					if (position == limit) {
+						int read = in.read(block);
+						if (read == -1) {
+							return record(line, 0, length);
+						}
+						position = 0;
+						limit = read;
+					}
+					int from = position;
+					int end = from;
+					while (end < limit && block[end] != '\n') {
+						end++;
+					}
+					byte[] record;
+					if (end < limit && length == 0) {
+						// the whole line is in the block
+						record = record(block, from, end);
+					} else {
+						if (length + end - from > line.length) {
+							line = Arrays.copyOf(line, Math.max(line.length << 1, length + end - from));
+						}
+						System.arraycopy(block, from, line, length, end - from);
+						length += end - from;
+						if (end == limit) {
+							position = limit;
+							continue;
+						}
+						record = record(line, 0, length);
+						length = 0;
+					}
+					position = end + 1;
+					if (record != null) {
+						return record;
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Copy a line, stripping a CRLF line ending.
+	 *
+	 * @return The line, or null if it's blank
+	 */
+	private static byte[] record(byte[] bytes, int from, int to) {
+		if (to > from && bytes[to - 1] == '\r') {
+			to--;
+		}
+		return to > from ? Arrays.copyOfRange(bytes, from, to) : null;
+	}
+
+	private static Iterator<byte[]> zipEntries(ZipInputStream zip) {
+		return new RecordIterator() {
+			@Override
+			protected byte[] readNext() throws IOException {
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) {
+					if (!entry.isDirectory() && isJson(entry.getName())) {
+						return readFully(zip, entry.getSize());
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	private static Iterator<byte[]> tarEntries(TarArchiveInputStream tar) {
+		return new RecordIterator() {
+			@Override
+			protected byte[] readNext() throws IOException {
+				TarArchiveEntry entry;
+				while ((entry = tar.getNextTarEntry()) != null) {
+					if (entry.isFile() && isJson(entry.getName())) {
+						return readFully(tar, entry.getSize());
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+	private static boolean isJson(String entryName) {
+		return entryName.toLowerCase().endsWith(".json");
+	}
+
+	/**
+	 * Read the rest of the current archive entry.
+	 *
+	 * @param in
+	 * @param size	Entry size if known, otherwise -1
+	 */
+	private static byte[] readFully(InputStream in, long size) throws IOException {
+		byte[] data = new byte[size > 0 ? (int) size : 8192];
+		int length = 0;
+		int read;
+		while (true) {
+			if (length == data.length) {
+				if (size > 0) {
+					break;
+				}
+				data = Arrays.copyOf(data, length << 1);
+			}
+			read = in.read(data, length, data.length - length);
+			if (read == -1) {
+				break;
+			}
+			length += read;
+		}
+		return length == data.length ? data : Arrays.copyOf(data, length);
+	}
+
+	private static void close(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Iterator that reads one record ahead.
+	 */
+	private abstract static class RecordIterator implements Iterator<byte[]> {
+
+		private byte[] next;
+
+		private boolean done;
+
+		/**
+		 * @return The next record, or null at the end of the file
+		 */
+		protected abstract byte[] readNext() throws IOException;
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !done) {
+				try {
+					next = readNext();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				done = next == null;
+			}
+			return next != null;
+		}
+
+		@Override
+		public byte[] next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			byte[] record = next;
+			next = null;
+			return record;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table held in a memory-mapped file rather than on the
+ * heap, so it can hold tens of millions of entries without adding to the
+ * garbage collector's work, and outlives the process that filled it.
+ *
+ * Each slot holds a 64-bit hash of the key, a check value used to confirm
+ * that an entry with a matching hash really is for the key (e.g. the key
+ * itself, or where its bytes are stored), and the value. Callers hash their
+ * keys and supply a predicate that verifies the check value, so the table
+ * itself never sees a key. A zero hash marks a free slot.
+ *
+ * The file is mapped in chunks, as a single mapping is limited to 2GB. When
+ * the table is half full it is rebuilt in a new file of twice the capacity.
+ *
+ * Not thread-safe.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class MappedHashTable implements Closeable {
+
+	/**
+	 * Receives the entries of the table
+	 */
+	public interface EntryConsumer {
+		void accept(long check, long value);
+	}
+
+	private static final long MAGIC = 0x54324E4C4D415031L;
+
+	private static final int HEADER = 64;
+
+	private static final int SLOT = 24;
+
+	private static final int CHUNK_SHIFT = 22;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final Path file;
+
+	private FileChannel channel;
+
+	private MappedByteBuffer header;
+
+	private MappedByteBuffer[] chunks;
+
+	private long capacity;
+
+	private long mask;
+
+	private long size;
+
+	private long threshold;
+
+	/**
+	 * Open the table in a file, or create it if the file doesn't exist.
+	 *
+	 * @param file
+	 * @param expectedSize	Number of entries to allow for before growing
+	 * @throws IOException
+	 */
+	public MappedHashTable(Path file, long expectedSize) throws IOException {
+		this.file = file;
+		if (Files.exists(file)) {
+			open(file);
+			if (header.getLong(0) != MAGIC) {
+				close();
+				throw new IOException(file + " is not a mapped hash table");
+			}
+			capacity = header.getLong(8);
+			size = header.getLong(16);
+			map();
+		} else {
+			long capacity = Long.highestOneBit(Math.max(4, (long) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+			create(file, capacity);
+		}
+	}
+
+	private MappedHashTable(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Find the slot holding a key.
+	 *
+	 * @param hash		Hash of the key; never 0
+	 * @param matches	Whether the check value of a slot with the same hash
+	 * 					is for the key
+	 * @return The slot, or if the key isn't present (-1 - the free slot to
+	 * 			insert it at)
+	 */
+	public long find(long hash, LongPredicate matches) {
+		long i = hash & mask;
+		long slotHash;
+		while ((slotHash = getLong(i, 0)) != 0) {
+			if (slotHash == hash && matches.test(getLong(i, 8))) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1 - i;
+	}
+
+	public long getValue(long slot) {
+		return getLong(slot, 16);
+	}
+
+	public void setValue(long slot, long value) {
+		putLong(slot, 16, value);
+	}
+
+	/**
+	 * Add an entry at the free slot returned by find. No other change may be
+	 * made between the find and the insert.
+	 *
+	 * @param freeSlot
+	 * @param hash
+	 * @param check
+	 * @param value
+	 * @throws IOException if the table had to grow and couldn't
+	 */
+	public void insert(long freeSlot, long hash, long check, long value) throws IOException {
+		if (hash == 0) {
+			throw new IllegalArgumentException("A hash of 0 marks a free slot");
+		}
+		putLong(freeSlot, 8, check);
+		putLong(freeSlot, 16, value);
+		putLong(freeSlot, 0, hash);
+		header.putLong(16, ++size);
+		if (size > threshold) {
+			grow();
+		}
+	}
+
+	/**
+	 * Empty a slot returned by find, moving back any later entries of the
+	 * probe sequence that would otherwise no longer be found.
+	 */
+	public void remove(long slot) {
+		long i = slot;
+		long j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			long hash = getLong(j, 0);
+			if (hash == 0) {
+				break;
+			}
+			long home = hash & mask;
+			// move the entry at j unless its home slot lies cyclically in (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				putLong(i, 8, getLong(j, 8));
+				putLong(i, 16, getLong(j, 16));
+				putLong(i, 0, hash);
+				i = j;
+			}
+		}
+		putLong(i, 0, 0);
+		header.putLong(16, --size);
+	}
+
+	/**
+	 * Remove every entry whose value matches.
+	 *
+	 * @param values
+	 * @return Number of entries removed
+	 */
+	public long removeIf(LongPredicate values) {
+		long removed = 0;
+		for (long i = 0; i < capacity; i++) {
+			// removing shifts a later entry into the slot, so look at it again
+			while (getLong(i, 0) != 0 && values.test(getLong(i, 16))) {
+				remove(i);
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Call the consumer with the check value and value of every entry. The
+	 * table must not be changed until this returns.
+	 */
+	public void forEach(EntryConsumer consumer) {
+		for (long i = 0; i < capacity; i++) {
+			if (getLong(i, 0) != 0) {
+				consumer.accept(getLong(i, 8), getLong(i, 16));
+			}
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public long capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Write changes through to the file.
+	 */
+	public void force() {
+		header.force();
+		for (MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			force();
+			channel.close();
+			channel = null;
+		}
+	}
+
+	private long getLong(long slot, int field) {
+		return chunks[(int) (slot >>> CHUNK_SHIFT)].getLong((int) (slot & ((1 << CHUNK_SHIFT) - 1)) * SLOT + field);
+	}
+
+	private void putLong(long slot, int field, long value) {
+		chunks[(int) (slot >>> CHUNK_SHIFT)].putLong((int) (slot & ((1 << CHUNK_SHIFT) - 1)) * SLOT + field, value);
+	}
+
+	private void open(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+	}
+
+	private void create(Path path, long capacity) throws IOException {
+		open(path);
+		header.putLong(0, MAGIC);
+		header.putLong(8, capacity);
+		header.putLong(16, 0);
+		this.capacity = capacity;
+		this.size = 0;
+		// mapping past the end of the file extends it, with zeroes
+		map();
+	}
+
+	private void map() throws IOException {
+		mask = capacity - 1;
+		threshold = (long) (capacity * LOAD_FACTOR);
+		long chunkSlots = Math.min(capacity, 1L << CHUNK_SHIFT);
+		chunks = new MappedByteBuffer[(int) (capacity / chunkSlots)];
+		for (int c = 0; c < chunks.length; c++) {
+			chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER + c * chunkSlots * SLOT,
+					chunkSlots * SLOT);
+		}
+	}
+
+	/**
+	 * Rebuild the table at twice the capacity in a new file, then replace
+	 * this one with it.
+	 */
+	private void grow() throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".grow");
+		Files.deleteIfExists(temp);
+		MappedHashTable larger = new MappedHashTable(temp);
+		larger.create(temp, capacity << 1);
+		for (long i = 0; i < capacity; i++) {
+			long hash = getLong(i, 0);
+			if (hash != 0) {
+				long j = hash & larger.mask;
+				while (larger.getLong(j, 0) != 0) {
+					j = (j + 1) & larger.mask;
+				}
+				larger.putLong(j, 8, getLong(i, 8));
+				larger.putLong(j, 16, getLong(i, 16));
+				larger.putLong(j, 0, hash);
+			}
+		}
+		larger.size = size;
+		larger.header.putLong(16, size);
+		larger.close();
+		close();
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		open(file);
+		capacity = header.getLong(8);
+		map();
+	}
+}
@@ -0,0 +1,161 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of variable length keys in a memory-mapped file, each
+ * identified by its offset. Used alongside a MappedHashTable, whose slots
+ * are a fixed width and so can only hold where a name key is stored.
+ *
+ * Keys are held as a length followed by their UTF-8 bytes. The file is
+ * mapped in 64MB chunks, mapped as the file grows; a key never spans two
+ * chunks.
+ *
+ * Not thread-safe.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class MappedKeyStore implements Closeable {
+
+	private static final long MAGIC = 0x54324E4C4B455953L;
+
+	private static final int HEADER = 16;
+
+	private static final int CHUNK_SHIFT = 26;
+
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	/**
+	 * Longest key that can be stored, in bytes
+	 */
+	public static final int MAX_KEY_LENGTH = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer header;
+
+	private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+	// offset, from the end of the header, that the next key is written at
+	private long end;
+
+	/**
+	 * Open the store in a file, or create it if the file doesn't exist.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public MappedKeyStore(Path file) throws IOException {
+		boolean exists = Files.exists(file);
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+		if (exists) {
+			if (header.getLong(0) != MAGIC) {
+				channel.close();
+				throw new IOException(file + " is not a mapped key store");
+			}
+			end = header.getLong(8);
+		} else {
+			header.putLong(0, MAGIC);
+			header.putLong(8, 0);
+		}
+		while ((long) chunks.size() << CHUNK_SHIFT <= end) {
+			mapChunk();
+		}
+	}
+
+	/**
+	 * Store a key.
+	 *
+	 * @param key	UTF-8 bytes
+	 * @return Offset of the key
+	 * @throws IOException
+	 */
+	public long append(byte[] key) throws IOException {
+		if (key.length > MAX_KEY_LENGTH) {
+			throw new IllegalArgumentException("Key of " + key.length + " bytes is too long to store");
+		}
+		int length = 4 + key.length;
+		if ((end & (CHUNK_SIZE - 1)) + length > CHUNK_SIZE) {
+			// start the next chunk rather than split the key
+			end = (end | (CHUNK_SIZE - 1)) + 1;
+		}
+		while ((long) chunks.size() << CHUNK_SHIFT < end + length) {
+			mapChunk();
+		}
+		long offset = end;
+		MappedByteBuffer chunk = chunks.get((int) (offset >>> CHUNK_SHIFT));
+		int position = (int) (offset & (CHUNK_SIZE - 1));
+		chunk.putInt(position, key.length);
+		for (int i = 0; i < key.length; i++) {
+			chunk.put(position + 4 + i, key[i]);
+		}
+		end += length;
+		header.putLong(8, end);
+		return offset;
+	}
+
+	/**
+	 * @return true if the key stored at the offset is the given key
+	 */
+	public boolean matches(long offset, byte[] key) {
+		MappedByteBuffer chunk = chunks.get((int) (offset >>> CHUNK_SHIFT));
+		int position = (int) (offset & (CHUNK_SIZE - 1));
+		if (chunk.getInt(position) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (chunk.get(position + 4 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The key stored at the offset
+	 */
+	public String get(long offset) {
+		MappedByteBuffer chunk = chunks.get((int) (offset >>> CHUNK_SHIFT));
+		int position = (int) (offset & (CHUNK_SIZE - 1));
+		byte[] key = new byte[chunk.getInt(position)];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = chunk.get(position + 4 + i);
+		}
+		return new String(key, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write changes through to the file.
+	 */
+	public void force() {
+		header.force();
+		for (MappedByteBuffer chunk : chunks) {
+			chunk.force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel.isOpen()) {
+			force();
+			channel.close();
+		}
+	}
+
+	private void mapChunk() throws IOException {
+		long position = HEADER + ((long) chunks.size() << CHUNK_SHIFT);
+		chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE));
+	}
+}
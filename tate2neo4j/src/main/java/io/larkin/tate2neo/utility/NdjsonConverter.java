@@ -0,0 +1,94 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Converts a directory of json files, such as the artists or artworks
+ * directory of the Tate collection, into a single newline-delimited JSON
+ * file with one compact record per line. The import reads such a file
+ * sequentially instead of opening every small file.
+ *
+ * Usage: NdjsonConverter &lt;json directory&gt; &lt;output file&gt;, where an
+ * output file name ending in .gz is gzip compressed.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class NdjsonConverter {
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+
+	private final JsonFactory factory = new JsonFactory();
+
+	private final BulkFileReader fileReader = new BulkFileReader();
+
+	public NdjsonConverter() {
+		// the output is shared by every record, so generators mustn't close it
+		factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	}
+
+	/**
+	 * Write every json file under a directory to an NDJSON file.
+	 *
+	 * @param directory
+	 * @param output	File to create; compressed if its name ends in .gz
+	 * @return Number of records written
+	 * @throws IOException
+	 */
+	public int convert(String directory, Path output) throws IOException {
+		int count = 0;
+		try (Stream<Path> files = FileFinder.streamFiles(directory, "*.json", 4);
+				OutputStream out = open(output)) {
+			Iterator<Path> it = files.iterator();
+			while (it.hasNext()) {
+				fileReader.read(it.next(), (buffer, length) -> {
+					copy(buffer, length, out);
+					return null;
+				});
+				out.write('\n');
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Re-serialise one record without whitespace, so it fits on a single line.
+	 */
+	private void copy(byte[] buffer, int length, OutputStream out) throws IOException {
+		try (JsonParser parser = factory.createParser(buffer, 0, length);
+				JsonGenerator generator = factory.createGenerator(out)) {
+			parser.nextToken();
+			generator.copyCurrentStructure(parser);
+		}
+	}
+
+	private OutputStream open(Path output) throws IOException {
+		OutputStream out = Files.newOutputStream(output);
+		if (output.getFileName().toString().toLowerCase().endsWith(".gz")) {
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		return new BufferedOutputStream(out, BUFFER_SIZE);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: NdjsonConverter <json directory> <output file>");
+			return;
+		}
+		int count = new NdjsonConverter().convert(args[0], Paths.get(args[1]));
+		System.out.println("Wrote " + count + " records to " + args[1]);
+	}
+}
@@ -0,0 +1,175 @@
+package io.larkin.tate2neo.utility;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Open-addressing hash map from object keys (typically Strings) to primitive
+ * long values. Only the key is held as an object; values are never boxed.
+ * Null keys are not supported.
+ *
+ * Not thread-safe.
+ *
+ * @author Larkin.Cunningham
+ *
+ * @param <K>
+ */
+public class ObjectLongHashMap<K> {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private Object[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	private int size;
+
+	private int threshold;
+
+	public ObjectLongHashMap() {
+		this(1024);
+	}
+
+	public ObjectLongHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue	Returned when the key is not present
+	 * @return The value stored against the key, or defaultValue
+	 */
+	public long get(K key, long defaultValue) {
+		int i = slot(key);
+		Object k;
+		while ((k = keys[i]) != null) {
+			if (k.equals(key)) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public boolean containsKey(K key) {
+		int i = slot(key);
+		Object k;
+		while ((k = keys[i]) != null) {
+			if (k.equals(key)) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public void put(K key, long value) {
+		int i = slot(key);
+		Object k;
+		while ((k = keys[i]) != null) {
+			if (k.equals(key)) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > threshold) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	/**
+	 * Remove a key, if present.
+	 * 
+	 * @param key
+	 */
+	public void remove(K key) {
+		int i = slot(key);
+		Object k;
+		while ((k = keys[i]) != null) {
+			if (k.equals(key)) {
+				size--;
+				shiftBack(i);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, null);
+		size = 0;
+	}
+
+	/**
+	 * Call the consumer with every key and value, in no particular order. The
+	 * map must not be changed until this returns.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(ObjLongConsumer<? super K> consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) {
+				consumer.accept((K) keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Empty slot i, moving back any later entries of the probe sequence that
+	 * would otherwise no longer be found.
+	 */
+	private void shiftBack(int i) {
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == null) {
+				break;
+			}
+			int home = slot(keys[j]);
+			// move the entry at j unless its home slot lies cyclically in (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = null;
+	}
+
+	private int slot(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		Object[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (keys[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package io.larkin.tate2neo.utility;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Parses sources (files, or records read from an archive) on a pool of
+ * worker threads and hands the results, in the original order, to a single
+ * writer running on the calling thread. This keeps the (non thread-safe)
+ * batch inserter on one thread while JSON parsing is spread across cores.
+ *
+ * At most queueSize sources are parsed ahead of the writer, so a slow writer
+ * holds back the parsers rather than filling the heap. Because parse returns
+ * only once every source has been written, consecutive calls act as a
+ * barrier, e.g. all artists are written before any artwork.
+ *
+ * @author Larkin.Cunningham
+ *
+ * @param <S>	Type of source, e.g. a file Path
+ * @param <T>	Type of object parsed from each source
+ */
+public class ParallelParser<S, T> {
+
+	/**
+	 * Parses a single source. Must be safe to call from several threads at once.
+	 */
+	public interface Parser<S, T> {
+		T parse(S source) throws IOException;
+	}
+
+	private final Parser<S, T> parser;
+
+	private final int threads;
+
+	private final int queueSize;
+
+	/**
+	 * @param parser
+	 * @param threads	Number of parser threads; 1 or less parses on the calling thread
+	 * @param queueSize	Maximum number of sources parsed ahead of the writer
+	 */
+	public ParallelParser(Parser<S, T> parser, int threads, int queueSize) {
+		this.parser = parser;
+		this.threads = threads;
+		this.queueSize = Math.max(1, queueSize);
+	}
+
+	/**
+	 * Parse every source and pass the results to the writer in source order.
+	 *
+	 * @param sources
+	 * @param writer	Called on the calling thread for each parsed source
+	 * @throws IOException if any source can't be parsed
+	 */
+	public void parse(Iterable<S> sources, Consumer<T> writer) throws IOException {
+		if (threads <= 1) {
+			for (S source : sources) {
+				writer.accept(parser.parse(source));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+		try {
+			Deque<Future<T>> pending = new ArrayDeque<>(queueSize);
+			Iterator<S> it = sources.iterator();
+			while (pending.size() < queueSize && it.hasNext()) {
+				pending.add(submit(executor, it.next()));
+			}
+			while (!pending.isEmpty()) {
+				T parsed = await(pending.poll());
+				// keep the parsers busy while the writer works
+				if (it.hasNext()) {
+					pending.add(submit(executor, it.next()));
+				}
+				writer.accept(parsed);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Future<T> submit(ExecutorService executor, S source) {
+		return executor.submit(() -> parser.parse(source));
+	}
+
+	private T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for parser");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static class ParserThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "parser-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package io.larkin.tate2neo.utility;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of (start node, end node, relationship type)
+ * triples, used to detect relationships that have already been created.
+ * A triple takes two longs, with the type held in the top 16 bits of the
+ * end node id (Neo4j node ids are at most 35 bits), so a million
+ * relationships need around 32MB rather than the hundreds of megabytes of a
+ * java.util.HashSet of key objects.
+ *
+ * Not thread-safe.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class RelationshipSet {
+
+	// starts are stored plus one, so a zero start marks a free slot
+	private static final long FREE = 0;
+
+	private static final int TYPE_SHIFT = 48;
+
+	private static final long NODE_MASK = (1L << TYPE_SHIFT) - 1;
+
+	// fuller than the lookup maps, as there are many more relationships than keys
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private long[] starts;
+
+	private long[] ends;
+
+	private int mask;
+
+	private int size;
+
+	private int threshold;
+
+	public RelationshipSet() {
+		this(1 << 16);
+	}
+
+	public RelationshipSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Add a relationship, unless it is already in the set.
+	 *
+	 * @param start	Start node id
+	 * @param end	End node id
+	 * @param type	Relationship type number, 0 to 65535
+	 * @return true if the relationship was added, false if it was already present
+	 */
+	public boolean add(long start, long end, int type) {
+		if (start < 0 || end < 0 || end > NODE_MASK || type < 0 || type > 0xFFFF) {
+			throw new IllegalArgumentException("Can't hold relationship " + start + "-" + type + "->" + end);
+		}
+		long s = start + 1;
+		long e = end | ((long) type << TYPE_SHIFT);
+		int i = slot(s, e);
+		while (starts[i] != FREE) {
+			if (starts[i] == s && ends[i] == e) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		starts[i] = s;
+		ends[i] = e;
+		if (++size > threshold) {
+			rehash(starts.length << 1);
+		}
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(starts, FREE);
+		size = 0;
+	}
+
+	private int slot(long start, long end) {
+		long h = (start * 0x9E3779B97F4A7C15L) ^ (end * 0xC2B2AE3D27D4EB4FL);
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		starts = new long[capacity];
+		ends = new long[capacity];
+		mask = capacity - 1;
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldStarts = starts;
+		long[] oldEnds = ends;
+		allocate(capacity);
+		for (int i = 0; i < oldStarts.length; i++) {
+			if (oldStarts[i] != FREE) {
+				int j = slot(oldStarts[i], oldEnds[i]);
+				while (starts[j] != FREE) {
+					j = (j + 1) & mask;
+				}
+				starts[j] = oldStarts[i];
+				ends[j] = oldEnds[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package io.larkin.tate2neo.verify;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+
+/**
+ * Reads a store back once an import has finished, to count what is really
+ * in it: nodes by label, relationships by type, degree histograms and
+ * orphan nodes. Node ids are split into ranges, each scanned in its own read
+ * transaction on one of several threads, and the counts of the ranges added
+ * up. Each relationship is counted from its start node, so once.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class StoreVerifier {
+
+	private static final int RANGE_SIZE = 10000;
+
+	private final GraphDatabaseService db;
+
+	private final int threads;
+
+	private final int rangeSize;
+
+	/**
+	 * @param db		Store to verify; see open
+	 * @param threads	Number of ranges scanned at once
+	 */
+	public StoreVerifier(GraphDatabaseService db, int threads) {
+		this(db, threads, RANGE_SIZE);
+	}
+
+	/**
+	 * @param db
+	 * @param threads
+	 * @param rangeSize	Node ids in each range
+	 */
+	public StoreVerifier(GraphDatabaseService db, int threads, int rangeSize) {
+		this.db = db;
+		this.threads = Math.max(1, threads);
+		this.rangeSize = Math.max(1, rangeSize);
+	}
+
+	/**
+	 * Open a store to verify, with the object cache off, as every node is
+	 * read only once. Not read-only: Neo4j 2.1 then lets threads reading the
+	 * same record share its buffer, which now and then fails a read.
+	 *
+	 * @param storeDir
+	 * @return The database; shut it down when done
+	 */
+	public static GraphDatabaseService open(String storeDir) {
+		return new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir)
+				.setConfig(GraphDatabaseSettings.cache_type, "none")
+				.newGraphDatabase();
+	}
+
+	/**
+	 * Scan every node id below highNodeId.
+	 *
+	 * @param highNodeId	One more than the highest node id in the store
+	 * @return What was found
+	 * @throws InterruptedException
+	 */
+	public VerificationReport verify(long highNodeId) throws InterruptedException {
+		long start = System.nanoTime();
+		VerificationReport report = new VerificationReport();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "verifier");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<VerificationReport>> ranges = new ArrayList<>();
+			for (long from = 0; from < highNodeId; from += rangeSize) {
+				long first = from;
+				long last = Math.min(highNodeId, from + rangeSize);
+				ranges.add(executor.submit(() -> scan(first, last)));
+			}
+			for (Future<VerificationReport> range : ranges) {
+				report.merge(range.get());
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Verifying failed", cause);
+		} finally {
+			executor.shutdownNow();
+		}
+		report.setScan(highNodeId, threads, (System.nanoTime() - start) / 1000000);
+		return report;
+	}
+
+	/**
+	 * Count the nodes with ids from first to last (exclusive), skipping ids
+	 * not in use.
+	 */
+	VerificationReport scan(long first, long last) {
+		VerificationReport report = new VerificationReport();
+		Map<String, int[]> degrees = new HashMap<>();
+		List<String> labels = new ArrayList<>();
+		try (Transaction tx = db.beginTx()) {
+			for (long id = first; id < last; id++) {
+				Node node;
+				try {
+					node = db.getNodeById(id);
+				} catch (NotFoundException e) {
+					continue;
+				}
+				degrees.clear();
+				int degree = 0;
+				for (Relationship relationship : node.getRelationships()) {
+					String type = relationship.getType().name();
+					int[] count = degrees.get(type);
+					if (count == null) {
+						degrees.put(type, count = new int[1]);
+					}
+					count[0]++;
+					degree++;
+					if (relationship.getStartNode().getId() == id) {
+						report.relationship(type);
+					}
+				}
+				labels.clear();
+				for (Label label : node.getLabels()) {
+					labels.add(label.name());
+				}
+				report.node(labels, degree == 0);
+				for (Map.Entry<String, int[]> count : degrees.entrySet()) {
+					report.degree(count.getKey(), count.getValue()[0]);
+				}
+			}
+			tx.success();
+		}
+		return report;
+	}
+}
@@ -0,0 +1,338 @@
+package io.larkin.tate2neo.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * What a StoreVerifier found in a store: nodes by label, relationships by
+ * type, how many nodes have each degree of each type, and the nodes with no
+ * relationships at all. Counts the import expected can be checked against
+ * it, and the whole written as JSON.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class VerificationReport {
+
+	// degrees are bucketed by powers of two: 1, 2-3, 4-7, ...
+	private static final int DEGREE_BUCKETS = 32;
+
+	private long nodes;
+
+	private long relationships;
+
+	private long orphans;
+
+	private final Map<String, long[]> labels = new TreeMap<>();
+
+	private final Map<String, long[]> orphansByLabel = new TreeMap<>();
+
+	private final Map<String, long[]> types = new TreeMap<>();
+
+	private final Map<String, long[]> degrees = new TreeMap<>();
+
+	private final List<Check> checks = new ArrayList<>();
+
+	private long highNodeId;
+
+	private int threads;
+
+	private long millis;
+
+	/**
+	 * A count the import expected, with the count found in the store
+	 */
+	public static class Check {
+
+		private final String name;
+
+		private final long expected;
+
+		private final long actual;
+
+		Check(String name, long expected, long actual) {
+			this.name = name;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getExpected() {
+			return expected;
+		}
+
+		public long getActual() {
+			return actual;
+		}
+
+		public boolean isOk() {
+			return expected == actual;
+		}
+	}
+
+	/**
+	 * Count a node.
+	 *
+	 * @param nodeLabels	Names of its labels
+	 * @param orphan		Whether it has no relationships
+	 */
+	void node(Iterable<String> nodeLabels, boolean orphan) {
+		nodes++;
+		if (orphan) {
+			orphans++;
+		}
+		for (String label : nodeLabels) {
+			count(labels, label, 1);
+			if (orphan) {
+				count(orphansByLabel, label, 1);
+			}
+		}
+	}
+
+	/**
+	 * Count a relationship, once, from its start node.
+	 */
+	void relationship(String type) {
+		relationships++;
+		count(types, type, 1);
+	}
+
+	/**
+	 * Count a node with relationships of a type.
+	 *
+	 * @param type
+	 * @param degree	Its relationships of the type, in either direction; more than 0
+	 */
+	void degree(String type, int degree) {
+		long[] histogram = degrees.get(type);
+		if (histogram == null) {
+			degrees.put(type, histogram = new long[DEGREE_BUCKETS]);
+		}
+		histogram[31 - Integer.numberOfLeadingZeros(degree)]++;
+	}
+
+	/**
+	 * Add the counts of another report, e.g. of another range of node ids.
+	 */
+	void merge(VerificationReport other) {
+		nodes += other.nodes;
+		relationships += other.relationships;
+		orphans += other.orphans;
+		merge(labels, other.labels);
+		merge(orphansByLabel, other.orphansByLabel);
+		merge(types, other.types);
+		merge(degrees, other.degrees);
+	}
+
+	private static void merge(Map<String, long[]> counts, Map<String, long[]> others) {
+		for (Map.Entry<String, long[]> other : others.entrySet()) {
+			long[] count = counts.get(other.getKey());
+			if (count == null) {
+				counts.put(other.getKey(), other.getValue().clone());
+			} else {
+				for (int i = 0; i < count.length; i++) {
+					count[i] += other.getValue()[i];
+				}
+			}
+		}
+	}
+
+	private static void count(Map<String, long[]> counts, String name, long n) {
+		long[] count = counts.get(name);
+		if (count == null) {
+			counts.put(name, count = new long[1]);
+		}
+		count[0] += n;
+	}
+
+	void setScan(long highNodeId, int threads, long millis) {
+		this.highNodeId = highNodeId;
+		this.threads = threads;
+		this.millis = millis;
+	}
+
+	/**
+	 * Check a count the import expected against the store.
+	 *
+	 * @param name		What was counted, e.g. "nodes :Artist"
+	 * @param expected
+	 * @param actual
+	 * @return Whether they match
+	 */
+	public boolean expect(String name, long expected, long actual) {
+		Check check = new Check(name, expected, actual);
+		checks.add(check);
+		return check.isOk();
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getRelationships() {
+		return relationships;
+	}
+
+	/**
+	 * @return Nodes without any relationships
+	 */
+	public long getOrphans() {
+		return orphans;
+	}
+
+	public long getNodes(String label) {
+		long[] count = labels.get(label);
+		return count != null ? count[0] : 0;
+	}
+
+	public long getOrphans(String label) {
+		long[] count = orphansByLabel.get(label);
+		return count != null ? count[0] : 0;
+	}
+
+	public long getRelationships(String type) {
+		long[] count = types.get(type);
+		return count != null ? count[0] : 0;
+	}
+
+	/**
+	 * @return Nodes with relationships of the type, by degree: element b
+	 * 			counts degrees from 2^b to 2^(b+1)-1
+	 */
+	public long[] getDegrees(String type) {
+		long[] histogram = degrees.get(type);
+		return histogram != null ? histogram.clone() : new long[DEGREE_BUCKETS];
+	}
+
+	/**
+	 * @return Names of the labels found
+	 */
+	public Iterable<String> getLabels() {
+		return labels.keySet();
+	}
+
+	/**
+	 * @return Names of the relationship types found
+	 */
+	public Iterable<String> getTypes() {
+		return types.keySet();
+	}
+
+	public List<Check> getChecks() {
+		return checks;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * @return Whether every expected count was found
+	 */
+	public boolean isConsistent() {
+		for (Check check : checks) {
+			if (!check.isOk()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Everything, keyed for the JSON report
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("consistent", isConsistent());
+		report.put("millis", millis);
+		report.put("threads", threads);
+		report.put("highNodeId", highNodeId);
+		report.put("nodes", nodes);
+		report.put("relationships", relationships);
+		report.put("orphans", orphans);
+		report.put("labels", counts(labels));
+		report.put("orphansByLabel", counts(orphansByLabel));
+		report.put("relationshipTypes", counts(types));
+
+		Map<String, Object> histograms = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> histogram : degrees.entrySet()) {
+			Map<String, Long> buckets = new LinkedHashMap<>();
+			long[] counts = histogram.getValue();
+			for (int b = 0; b < counts.length; b++) {
+				if (counts[b] > 0) {
+					long low = 1L << b;
+					long high = (1L << (b + 1)) - 1;
+					buckets.put(low == high ? Long.toString(low) : low + "-" + high, counts[b]);
+				}
+			}
+			histograms.put(histogram.getKey(), buckets);
+		}
+		report.put("degrees", histograms);
+
+		List<Object> reconciliation = new ArrayList<>();
+		for (Check check : checks) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("name", check.getName());
+			entry.put("expected", check.getExpected());
+			entry.put("actual", check.getActual());
+			entry.put("ok", check.isOk());
+			reconciliation.add(entry);
+		}
+		report.put("reconciliation", reconciliation);
+		return report;
+	}
+
+	private static Map<String, Long> counts(Map<String, long[]> counts) {
+		Map<String, Long> values = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> count : counts.entrySet()) {
+			values.put(count.getKey(), count.getValue()[0]);
+		}
+		return values;
+	}
+
+	/**
+	 * Write the report as pretty-printed JSON.
+	 *
+	 * @param out	Left open
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException {
+		out.write(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(toMap()));
+		out.write('\n');
+		out.flush();
+	}
+
+	public void write(Path file) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			write(out);
+		}
+	}
+
+	/**
+	 * @return A line of totals, and one for each check that failed
+	 */
+	public String summary() {
+		StringBuilder summary = new StringBuilder("Verified ").append(nodes).append(" nodes, ")
+				.append(relationships).append(" relationships, ").append(orphans).append(" orphans in ")
+				.append(millis).append("ms: ").append(isConsistent() ? "consistent" : "INCONSISTENT");
+		for (Check check : checks) {
+			if (!check.isOk()) {
+				summary.append("\n  ").append(check.getName()).append(": expected ").append(check.getExpected())
+						.append(", found ").append(check.getActual());
+			}
+		}
+		return summary.toString();
+	}
+}
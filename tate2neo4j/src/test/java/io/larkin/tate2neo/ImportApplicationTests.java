@@ -1,16 +1,92 @@
 package io.larkin.tate2neo;
 
+import static org.junit.Assert.assertEquals;
+import io.larkin.tate2neo.benchmark.GraphDescription;
+import io.larkin.tate2neo.benchmark.ImportRunner;
+import io.larkin.tate2neo.metrics.ImportMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.springframework.boot.test.SpringApplicationConfiguration;
-import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.junit.rules.TemporaryFolder;
 
-@RunWith(SpringJUnit4ClassRunner.class)
-@SpringApplicationConfiguration(classes = ImportApplication.class)
+/**
+ * Imports a few hand-written artworks and checks the relationships they are
+ * given.
+ */
 public class ImportApplicationTests {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String ARTIST = "{\"id\":1,\"mda\":\"Painter, Test\",\"movements\":[]}";
+
+	/**
+	 * Import the artworks, by artist 1, into a new store.
+	 *
+	 * @return The graph of the store, as GraphDescription describes it
+	 */
+	private List<String> importArtworks(ImportRunner runner, String... artworks) throws Exception {
+		Path root = folder.getRoot().toPath();
+		Path artists = root.resolve("artists.ndjson");
+		Path artworksFile = root.resolve("artworks.ndjson");
+		Files.write(artists, Arrays.asList(ARTIST), StandardCharsets.UTF_8);
+		Files.write(artworksFile, Arrays.asList(artworks), StandardCharsets.UTF_8);
+		Path store = root.resolve("graph.db");
+		runner.run(store, artists, artworksFile);
+		return GraphDescription.of(store);
+	}
+
+	private static long count(List<String> graph, String line) {
+		return graph.stream().filter(line::equals).count();
+	}
+
+	private static String subject(int id, String name, String... children) {
+		return "{\"id\":" + id + ",\"name\":\"" + name + "\",\"children\":[" + String.join(",", children) + "]}";
+	}
+
 	@Test
-	public void contextLoads() {
+	public void repeatedMediumIsComprisedOfOnce() throws Exception {
+		ImportMetrics metrics = new ImportMetrics();
+		List<String> graph = importArtworks(new ImportRunner().set("metrics", metrics).set("dedupRelationships", true),
+				"{\"id\":1,\"acno\":\"T1\",\"title\":\"Twice painted\",\"medium\":\"paint and paint on canvas\","
+						+ "\"contributors\":[{\"id\":1}],\"movements\":[]}");
+
+		String artwork = "[Artwork, _Artwork]{acno=T1, id=1, title=Twice painted}";
+		assertEquals(1, count(graph, artwork + "-COMPRISED_OF{}->[Medium, _Medium]{name=paint}"));
+		assertEquals(1, count(graph, artwork + "-COMPRISED_OF{}->[Medium, _Medium]{name=canvas}"));
+		assertEquals(1, metrics.getRegistry().counter("relationships.duplicate").getCount());
 	}
 
+	@Test
+	public void sharedSubjectsAreTypesOfTheirParentOnce() throws Exception {
+		String nature = subject(10, "nature", subject(11, "trees", subject(12, "oak")));
+		String people = subject(20, "people", subject(21, "named individuals",
+				subject(22, "Painter, Test"), subject(23, "Sitter, Test")));
+		String[] artworks = new String[4];
+		for (int id = 1; id <= artworks.length; id++) {
+			artworks[id - 1] = "{\"id\":" + id + ",\"acno\":\"T" + id + "\",\"title\":\"Oak " + id
+					+ "\",\"contributors\":[{\"id\":1}],\"movements\":[],\"subjects\":"
+					+ subject(1, "subject", nature, people) + "}";
+		}
+		List<String> graph = importArtworks(new ImportRunner(), artworks);
+
+		Map<String, Long> typeOf = graph.stream().filter(line -> line.contains("-TYPE_OF{}->"))
+				.collect(Collectors.groupingBy(line -> line.substring(0, line.indexOf("-TYPE_OF{}->")),
+						Collectors.counting()));
+		assertEquals(5, typeOf.size());
+		for (Map.Entry<String, Long> subject : typeOf.entrySet()) {
+			assertEquals(subject.getKey(), Long.valueOf(1), subject.getValue());
+		}
+		// the named individual that is also an artist is the artist's node
+		assertEquals(Long.valueOf(1), typeOf.get("[Artist, Person, _Artist, _Person]{id=1, name=Painter, Test}"));
+		assertEquals(Long.valueOf(1), typeOf.get("[Person]{name=Sitter, Test}"));
+	}
 }
@@ -0,0 +1,287 @@
+package io.larkin.tate2neo.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Generates a synthetic collection shaped like the Tate metadata, so the
+ * benchmarks can run without the real collection or a network. Records are
+ * generated from a fixed seed, so a given size always gives the same corpus.
+ *
+ * Entity references follow a Zipf distribution, as in the real collection:
+ * a few artists, subjects and mediums account for most artworks (Turner alone
+ * contributed over half of the Tate's works), while most appear rarely.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class Corpus {
+
+	// "people" / "named individuals", which the importer matches against artists
+	private static final int PEOPLE = 91;
+
+	private static final int NAMED_INDIVIDUALS = 95;
+
+	private static final int TOP_SUBJECTS = 15;
+
+	private static final int SUBJECT_GROUPS = 100;
+
+	private static final int SUBJECTS = 3000;
+
+	private static final int MOVEMENTS = 300;
+
+	private static final int CATALOGUE_GROUPS = 500;
+
+	private static final String[] CLASSIFICATIONS = { "painting", "on paper, unique", "print",
+			"sculpture", "photograph", "film and video" };
+
+	private static final String[] MATERIALS = { "oil paint", "graphite", "watercolour", "ink",
+			"gouache", "chalk", "acrylic paint", "etching", "lithograph", "screenprint", "bronze",
+			"wood", "charcoal", "pastel", "photograph", "gelatin silver print", "tempera", "steel",
+			"plaster", "resin", "gold leaf", "aquatint", "engraving", "collage", "pencil" };
+
+	private static final String[] SUPPORTS = { "canvas", "paper", "board", "wood", "hardboard",
+			"panel", "linen", "card", "copper" };
+
+	private final JsonFactory factory = new JsonFactory();
+
+	private final long seed;
+
+	private final int artists;
+
+	private final int artworks;
+
+	private final String[] mediums;
+
+	public Corpus(long seed, int artists, int artworks) {
+		this.seed = seed;
+		this.artists = artists;
+		this.artworks = artworks;
+		this.mediums = mediums(new Random(seed), 400);
+	}
+
+	public int getArtists() {
+		return artists;
+	}
+
+	public int getArtworks() {
+		return artworks;
+	}
+
+	/**
+	 * @return The distinct medium strings artworks are given, most common first
+	 */
+	public String[] getMediums() {
+		return mediums.clone();
+	}
+
+	public static String artistName(int id) {
+		return "Artist" + id + ", Test";
+	}
+
+	/**
+	 * Write every artist as NDJSON.
+	 */
+	public void writeArtists(Path file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			for (int i = 1; i <= artists; i++) {
+				out.write(artist(i));
+				out.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Write every artwork as NDJSON.
+	 */
+	public void writeArtworks(Path file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			for (int i = 1; i <= artworks; i++) {
+				out.write(artwork(i));
+				out.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * @param id	1 to getArtists()
+	 * @return The artist as JSON
+	 */
+	public byte[] artist(int id) throws IOException {
+		Random random = new Random(seed * 31 + id);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+		try (JsonGenerator json = factory.createGenerator(out)) {
+			json.writeStartObject();
+			json.writeNumberField("id", id);
+			json.writeStringField("mda", artistName(id));
+			json.writeArrayFieldStart("movements");
+			for (int i = random.nextInt(3); i > 0; i--) {
+				movement(json, random.nextInt(MOVEMENTS) + 1);
+			}
+			json.writeEndArray();
+			json.writeObjectFieldStart("birth");
+			json.writeObjectFieldStart("place");
+			json.writeStringField("name", "Place " + random.nextInt(artists / 4 + 1) + ", United Kingdom");
+			json.writeEndObject();
+			json.writeObjectFieldStart("time");
+			json.writeNumberField("startYear", 1700 + random.nextInt(300));
+			json.writeEndObject();
+			json.writeEndObject();
+			json.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @param id	1 to getArtworks()
+	 * @return The artwork as JSON
+	 */
+	public byte[] artwork(int id) throws IOException {
+		Random random = new Random(seed * 17 + id);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+		try (JsonGenerator json = factory.createGenerator(out)) {
+			json.writeStartObject();
+			json.writeNumberField("id", id);
+			json.writeStringField("acno", "T" + id);
+			json.writeStringField("title", "Artwork " + id);
+			json.writeStringField("classification", CLASSIFICATIONS[zipf(random, CLASSIFICATIONS.length)]);
+			json.writeStringField("medium", mediums[zipf(random, mediums.length)]);
+
+			int artist = zipf(random, artists) + 1;
+			json.writeArrayFieldStart("contributors");
+			json.writeStartObject();
+			json.writeNumberField("id", artist);
+			json.writeEndObject();
+			if (random.nextInt(10) == 0) {
+				json.writeStartObject();
+				json.writeNumberField("id", zipf(random, artists) + 1);
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+
+			if (random.nextInt(10) < 3) {
+				int group = zipf(random, CATALOGUE_GROUPS) + 1;
+				json.writeObjectFieldStart("catalogueGroup");
+				json.writeNumberField("id", group);
+				json.writeStringField("shortTitle", "Group " + group);
+				json.writeEndObject();
+			}
+
+			json.writeArrayFieldStart("movements");
+			if (random.nextInt(4) == 0) {
+				movement(json, zipf(random, MOVEMENTS) + 1);
+			}
+			json.writeEndArray();
+
+			subjects(json, random, artist);
+			json.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+
+	private void movement(JsonGenerator json, int id) throws IOException {
+		json.writeStartObject();
+		json.writeNumberField("id", id);
+		json.writeStringField("name", "Movement " + id);
+		json.writeEndObject();
+	}
+
+	/**
+	 * Write the subject tree: root, top level subjects, groups and the
+	 * subjects the artwork features. Sometimes the artist is featured too, as
+	 * a named individual.
+	 */
+	private void subjects(JsonGenerator json, Random random, int artist) throws IOException {
+		int[] leaves = new int[1 + random.nextInt(4)];
+		for (int i = 0; i < leaves.length; i++) {
+			leaves[i] = zipf(random, SUBJECTS);
+		}
+		Arrays.sort(leaves);
+
+		json.writeObjectFieldStart("subjects");
+		json.writeNumberField("id", 1);
+		json.writeStringField("name", "subject");
+		json.writeArrayFieldStart("children");
+		for (int i = 0; i < leaves.length; i++) {
+			if (i > 0 && leaves[i] == leaves[i - 1]) {
+				continue;
+			}
+			int group = leaves[i] % SUBJECT_GROUPS;
+			int top = group % TOP_SUBJECTS;
+			subjectStart(json, 100 + top, "subject " + top);
+			subjectStart(json, 200 + group, "subject group " + group);
+			subject(json, 1000 + leaves[i], "subject item " + leaves[i]);
+			subjectEnd(json);
+			subjectEnd(json);
+		}
+		if (random.nextInt(20) == 0) {
+			subjectStart(json, PEOPLE, "people");
+			subjectStart(json, NAMED_INDIVIDUALS, "named individuals");
+			subject(json, 100000 + artist, artistName(artist));
+			subjectEnd(json);
+			subjectEnd(json);
+		}
+		json.writeEndArray();
+		json.writeEndObject();
+	}
+
+	private void subjectStart(JsonGenerator json, int id, String name) throws IOException {
+		json.writeStartObject();
+		json.writeNumberField("id", id);
+		json.writeStringField("name", name);
+		json.writeArrayFieldStart("children");
+	}
+
+	private void subjectEnd(JsonGenerator json) throws IOException {
+		json.writeEndArray();
+		json.writeEndObject();
+	}
+
+	private void subject(JsonGenerator json, int id, String name) throws IOException {
+		json.writeStartObject();
+		json.writeNumberField("id", id);
+		json.writeStringField("name", name);
+		json.writeEndObject();
+	}
+
+	/**
+	 * Medium strings in the forms used by the Tate, e.g. "Oil paint on canvas",
+	 * "Graphite, ink and watercolour on paper".
+	 */
+	private static String[] mediums(Random random, int count) {
+		String[] mediums = new String[count];
+		for (int i = 0; i < count; i++) {
+			StringBuilder medium = new StringBuilder(MATERIALS[random.nextInt(MATERIALS.length)]);
+			int extra = random.nextInt(3);
+			for (int m = 0; m < extra; m++) {
+				medium.append(m == extra - 1 ? " and " : ", ").append(MATERIALS[random.nextInt(MATERIALS.length)]);
+			}
+			if (random.nextInt(5) > 0) {
+				medium.append(" on ").append(SUPPORTS[random.nextInt(SUPPORTS.length)]);
+			}
+			medium.setCharAt(0, Character.toUpperCase(medium.charAt(0)));
+			mediums[i] = medium.toString();
+		}
+		return mediums;
+	}
+
+	/**
+	 * Sample a rank from 0 to n - 1, rank 0 being the most frequent, with
+	 * probability proportional to 1 / (rank + 1). Uses the continuous
+	 * approximation of the harmonic series so no table is needed.
+	 */
+	static int zipf(Random random, int n) {
+		double u = random.nextDouble();
+		int rank = (int) Math.floor(Math.pow(n + 1, u)) - 1;
+		return Math.min(Math.max(rank, 0), n - 1);
+	}
+}
@@ -0,0 +1,32 @@
+package io.larkin.tate2neo.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Access to the sample Tate JSON files under src/test/resources/fixtures.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+public final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	public static byte[] read(String name) throws IOException {
+		try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+			if (in == null) {
+				throw new IOException("No fixture " + name);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package io.larkin.tate2neo.benchmark;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * Describes the graph in a store by labels and properties rather than ids,
+ * so that stores built in different ways can be compared.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public final class GraphDescription {
+
+	private GraphDescription() {
+	}
+
+	/**
+	 * @param store
+	 * @return A line for every node and relationship, sorted
+	 */
+	public static List<String> of(Path store) {
+		GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabase(store.toString());
+		try (Transaction tx = db.beginTx()) {
+			List<String> graph = new ArrayList<>();
+			for (Node node : GlobalGraphOperations.at(db).getAllNodes()) {
+				graph.add(describe(node));
+			}
+			for (Relationship relationship : GlobalGraphOperations.at(db).getAllRelationships()) {
+				graph.add(describe(relationship.getStartNode()) + "-" + relationship.getType().name()
+						+ properties(relationship) + "->" + describe(relationship.getEndNode()));
+			}
+			tx.success();
+			Collections.sort(graph);
+			return graph;
+		} finally {
+			db.shutdown();
+		}
+	}
+
+	private static String describe(Node node) {
+		TreeSet<String> labels = new TreeSet<>();
+		for (Label label : node.getLabels()) {
+			labels.add(label.name());
+		}
+		return labels + properties(node);
+	}
+
+	private static String properties(PropertyContainer entity) {
+		Map<String, String> sorted = new TreeMap<>();
+		for (String key : entity.getPropertyKeys()) {
+			sorted.put(key, String.valueOf(entity.getProperty(key)));
+		}
+		return sorted.toString();
+	}
+}
@@ -0,0 +1,128 @@
+package io.larkin.tate2neo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * End-to-end import of a generated corpus into a new batch inserter store,
+ * using the in-memory lookup. Each measurement is one complete import, from
+ * parsing the NDJSON files to shutting down the inserter. With the "none"
+ * output nothing is written, measuring parsing and transforming alone.
+ * TraversalBenchmark reads back what import.relationships.order changes.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+	@Param({ "10000" })
+	private int artworks;
+
+	// "none" measures parsing and transforming alone
+	@Param({ "batch", "none" })
+	private String output;
+
+	@Param({ "1", "4" })
+	private int parserThreads;
+
+	@Param({ "false", "true" })
+	private boolean streamingParser;
+
+	@Param({ "false", "true" })
+	private boolean artworkPrepass;
+
+	@Param({ "false", "true" })
+	private boolean orderRelationships;
+
+	private Path workDir;
+
+	private Path artistsFile;
+
+	private Path artworksFile;
+
+	private Path storeDir;
+
+	@Setup
+	public void writeCorpus() throws IOException {
+		workDir = Files.createTempDirectory("import-benchmark");
+		artistsFile = workDir.resolve("artists.ndjson");
+		artworksFile = workDir.resolve("artworks.ndjson");
+		Corpus corpus = new Corpus(42, Math.max(1, artworks / 10), artworks);
+		corpus.writeArtists(artistsFile);
+		corpus.writeArtworks(artworksFile);
+	}
+
+	@Setup(Level.Iteration)
+	public void newStore() throws IOException {
+		storeDir = Files.createTempDirectory(workDir, "graph.db");
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteStore() throws IOException {
+		delete(storeDir);
+	}
+
+	@TearDown
+	public void deleteCorpus() throws IOException {
+		delete(workDir);
+	}
+
+	@Benchmark
+	public void importCorpus() throws Exception {
+		new ImportRunner()
+				.set("output", output)
+				.set("parserThreads", parserThreads)
+				.set("streamingParser", streamingParser)
+				.set("artworkPrepass", artworkPrepass)
+				.set("orderRelationships", orderRelationships)
+				.run(storeDir, artistsFile, artworksFile);
+	}
+
+	private static void delete(Path dir) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ImportBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,88 @@
+package io.larkin.tate2neo.benchmark;
+
+import io.larkin.tate2neo.ImportApplication;
+import io.larkin.tate2neo.metrics.ImportMetrics;
+import io.larkin.tate2neo.repository.InMemoryLookupRepository;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Runs an import without Spring, for the tests and benchmarks. Every
+ * import.* setting starts at the default of its @Value, as an import run
+ * with an empty application.properties would have it, and is changed with
+ * set(), by the name of its field. Each run has a new in-memory lookup and
+ * metrics unless they are set too.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+public class ImportRunner {
+
+	private final Map<String, Object> settings = new HashMap<>();
+
+	/**
+	 * @param field	Field of ImportApplication, e.g. "parserThreads"
+	 * @param value
+	 * @return This runner
+	 */
+	public ImportRunner set(String field, Object value) {
+		settings.put(field, value);
+		return this;
+	}
+
+	public void run(Path store, Path artists, Path artworks, String... options) throws Exception {
+		run(new ImportApplication(), store, artists, artworks, options);
+	}
+
+	/**
+	 * Configure an application and run it.
+	 *
+	 * @param application	New application, for a test to look into afterwards
+	 * @param store			Store, or directory for the CSV files
+	 * @param artists		Artist directory or record file
+	 * @param artworks		Artwork directory or record file
+	 * @param options		e.g. "--resume"
+	 */
+	public void run(ImportApplication application, Path store, Path artists, Path artworks, String... options)
+			throws Exception {
+		for (Field field : ImportApplication.class.getDeclaredFields()) {
+			Value value = field.getAnnotation(Value.class);
+			if (value != null) {
+				ReflectionTestUtils.setField(application, field.getName(), defaultValue(field, value.value()));
+			}
+		}
+		ReflectionTestUtils.setField(application, "lookupRepository", new InMemoryLookupRepository());
+		ReflectionTestUtils.setField(application, "metrics", new ImportMetrics());
+		for (Map.Entry<String, Object> setting : settings.entrySet()) {
+			ReflectionTestUtils.setField(application, setting.getKey(), setting.getValue());
+		}
+		String[] args = new String[3 + options.length];
+		args[0] = store.toString();
+		args[1] = artists.toString();
+		args[2] = artworks.toString();
+		System.arraycopy(options, 0, args, 3, options.length);
+		application.run(args);
+	}
+
+	/**
+	 * @param placeholder	e.g. "${import.parser.threads:1}"
+	 */
+	private static Object defaultValue(Field field, String placeholder) {
+		String value = placeholder.substring(placeholder.indexOf(':') + 1, placeholder.length() - 1);
+		Class<?> type = field.getType();
+		if (type == boolean.class) {
+			return Boolean.parseBoolean(value);
+		} else if (type == int.class) {
+			return Integer.parseInt(value);
+		} else if (type == long.class) {
+			return Long.parseLong(value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,163 @@
+package io.larkin.tate2neo.benchmark;
+
+import io.larkin.tate2neo.parser.MediumTokenizer;
+import io.larkin.tate2neo.repository.ILookupRepository;
+import io.larkin.tate2neo.repository.InMemoryLookupRepository;
+import io.larkin.tate2neo.repository.LookupBatch;
+import io.larkin.tate2neo.repository.LookupNamespace;
+import io.larkin.tate2neo.repository.MappedLookupRepository;
+import io.larkin.tate2neo.repository.RedisLookupRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Cost of the lookups made while importing, for each lookup repository.
+ * Keys are drawn with a Zipf distribution, so most calls find an existing
+ * entry and a long tail creates new ones, as when importing the collection.
+ * Redis runs as an embedded server on the local machine, and the mapped
+ * lookup in a temporary directory.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+
+	private static final int PORT = 6391;
+
+	private static final int SAMPLES = 1 << 16;
+
+	@Param({ "memory", "redis", "mapped" })
+	private String repositoryType;
+
+	@Param({ "20000" })
+	private int subjects;
+
+	private RedisServer server;
+
+	private JedisConnectionFactory connectionFactory;
+
+	private ILookupRepository repository;
+
+	private Path mappedDir;
+
+	private int[] subjectKeys;
+
+	private String[] mediumKeys;
+
+	private final LookupBatch batch = new LookupBatch();
+
+	private long nextNodeId;
+
+	private int next;
+
+	@Setup
+	public void setUp() throws Exception {
+		if ("redis".equals(repositoryType)) {
+			server = new RedisServer(PORT);
+			server.start();
+			connectionFactory = new JedisConnectionFactory();
+			connectionFactory.setPort(PORT);
+			connectionFactory.afterPropertiesSet();
+			repository = new RedisLookupRepository();
+			ReflectionTestUtils.setField(repository, "redisTemplate", new StringRedisTemplate(connectionFactory));
+		} else if ("mapped".equals(repositoryType)) {
+			mappedDir = Files.createTempDirectory("lookup");
+			repository = new MappedLookupRepository(mappedDir, subjects);
+		} else {
+			repository = new InMemoryLookupRepository();
+		}
+
+		Random random = new Random(42);
+		String[] mediums = new Corpus(42, 1, 1).getMediums();
+		subjectKeys = new int[SAMPLES];
+		mediumKeys = new String[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			subjectKeys[i] = Corpus.zipf(random, subjects);
+			String[] split = MediumTokenizer.split(mediums[Corpus.zipf(random, mediums.length)]);
+			mediumKeys[i] = split[random.nextInt(split.length)];
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		if (server != null) {
+			connectionFactory.destroy();
+			server.stop();
+		}
+		if (mappedDir != null) {
+			((MappedLookupRepository) repository).close();
+			Files.walk(mappedDir).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private int nextSample() {
+		next = (next + 1) & (SAMPLES - 1);
+		return next;
+	}
+
+	@Benchmark
+	public long getOrCreateSubject() {
+		return repository.getOrCreate(LookupNamespace.SUBJECT, subjectKeys[nextSample()], () -> nextNodeId++);
+	}
+
+	@Benchmark
+	public long getOrCreateMedium() {
+		return repository.getOrCreate(LookupNamespace.MEDIUM, mediumKeys[nextSample()], () -> nextNodeId++);
+	}
+
+	/**
+	 * Resolve the keys of a typical artwork: a contributor, three subjects
+	 * with their two container levels, and two mediums.
+	 */
+	@Benchmark
+	public LookupBatch getAllArtworkKeys() {
+		batch.clear();
+		int i = nextSample();
+		batch.add(LookupNamespace.ARTIST, subjectKeys[i] % 1000);
+		for (int s = 0; s < 3; s++) {
+			int subject = subjectKeys[(i + s) & (SAMPLES - 1)];
+			batch.add(LookupNamespace.SUBJECT, subject % 15);
+			batch.add(LookupNamespace.SUBJECT, 100 + subject % 100);
+			batch.add(LookupNamespace.SUBJECT, 1000 + subject);
+		}
+		batch.add(LookupNamespace.MEDIUM, mediumKeys[i]);
+		batch.add(LookupNamespace.MEDIUM, mediumKeys[(i + 1) & (SAMPLES - 1)]);
+		repository.getAll(batch);
+		return batch;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(LookupBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,96 @@
+package io.larkin.tate2neo.benchmark;
+
+import io.larkin.tate2neo.parser.MediumTokenizer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to split an artwork's medium text into materials, over medium strings
+ * drawn with the same skew as the generated corpus: the original regular
+ * expression split, the tokenizer, and the cache of resolved mediums the
+ * importer now checks first.
+ * 
+ * @author Larkin.Cunningham
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MediumBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	private String[] samples;
+
+	private int next;
+
+	private final MediumTokenizer tokenizer = new MediumTokenizer();
+
+	private final Map<String, long[]> cache = new HashMap<>();
+
+	@Setup
+	public void setUp() {
+		String[] mediums = new Corpus(42, 1, 1).getMediums();
+		Random random = new Random(42);
+		samples = new String[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			samples[i] = mediums[Corpus.zipf(random, mediums.length)];
+		}
+	}
+
+	private String nextMedium() {
+		next = (next + 1) & (SAMPLES - 1);
+		return samples[next];
+	}
+
+	@Benchmark
+	public void regexSplit(Blackhole blackhole) {
+		for (String medium : nextMedium().split(",| on | and ")) {
+			blackhole.consume(medium.trim().toLowerCase());
+		}
+	}
+
+	@Benchmark
+	public void tokenizer(Blackhole blackhole) {
+		int count = tokenizer.tokenize(nextMedium());
+		for (int i = 0; i < count; i++) {
+			blackhole.consume(tokenizer.token(i));
+		}
+	}
+
+	@Benchmark
+	public void cached(Blackhole blackhole) {
+		String medium = nextMedium();
+		long[] nodes = cache.get(medium);
+		if (nodes == null) {
+			nodes = new long[tokenizer.tokenize(medium)];
+			cache.put(medium, nodes);
+		}
+		blackhole.consume(nodes);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MediumBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,197 @@
+package io.larkin.tate2neo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Reads back a store imported from a generated corpus, with and without
+ * import.relationships.order and import.artworks.order, through an embedded
+ * database with its object cache off and 1M store windows, so traversals are
+ * as cold as they can be made within the JVM and read the store files.
+ * Expanding the artworks is what ordering relationships by start node speeds
+ * up; expanding the hubs - the mediums, classifications and movements - is
+ * what it costs, as their relationships are then spread across the
+ * artworks'. Going from each artist through its artworks to their subjects
+ * is what ordering the artworks was meant to speed up; on 20,000 artworks
+ * it went from 316ms to 407ms instead.
+ *
+ * @author Larkin.Cunningham
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraversalBenchmark {
+
+	@Param({ "10000" })
+	private int artworks;
+
+	@Param({ "false", "true" })
+	private boolean orderRelationships;
+
+	@Param({ "false", "true" })
+	private boolean orderArtworks;
+
+	private static final RelationshipType CONTRIBUTED_TO = DynamicRelationshipType.withName("CONTRIBUTED_TO");
+
+	private static final RelationshipType FEATURES = DynamicRelationshipType.withName("FEATURES");
+
+	private Path workDir;
+
+	private GraphDatabaseService db;
+
+	private long[] hubs;
+
+	private long[] artworkNodes;
+
+	private long[] artists;
+
+	@Setup
+	public void importCorpus() throws Exception {
+		workDir = Files.createTempDirectory("traversal-benchmark");
+		Path artistsFile = workDir.resolve("artists.ndjson");
+		Path artworksFile = workDir.resolve("artworks.ndjson");
+		Corpus corpus = new Corpus(42, Math.max(1, artworks / 10), artworks);
+		corpus.writeArtists(artistsFile);
+		corpus.writeArtworks(artworksFile);
+		Path storeDir = workDir.resolve("graph.db");
+
+		new ImportRunner()
+				.set("orderRelationships", orderRelationships)
+				.set("orderArtworks", orderArtworks)
+				.run(storeDir, artistsFile, artworksFile);
+
+		db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir.toString())
+				.setConfig(GraphDatabaseSettings.cache_type, "none")
+				.setConfig(GraphDatabaseSettings.nodestore_mapped_memory_size, "1M")
+				.setConfig(GraphDatabaseSettings.relationshipstore_mapped_memory_size, "1M")
+				.setConfig(GraphDatabaseSettings.nodestore_propertystore_mapped_memory_size, "1M")
+				.newGraphDatabase();
+		hubs = nodeIds("Medium", "Classification", "Movement");
+		artworkNodes = nodeIds("Artwork");
+		artists = nodeIds("Artist");
+	}
+
+	private long[] nodeIds(String... labels) {
+		List<Long> ids = new ArrayList<>();
+		try (Transaction tx = db.beginTx()) {
+			for (String label : labels) {
+				for (Node node : GlobalGraphOperations.at(db).getAllNodesWithLabel(DynamicLabel.label(label))) {
+					ids.add(node.getId());
+				}
+			}
+			tx.success();
+		}
+		return ids.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	@TearDown
+	public void deleteStore() throws IOException {
+		db.shutdown();
+		Files.walkFileTree(workDir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	@Benchmark
+	public long expandHubs() {
+		return expand(hubs);
+	}
+
+	@Benchmark
+	public long expandArtworks() {
+		return expand(artworkNodes);
+	}
+
+	/**
+	 * The main query pattern: artist, CONTRIBUTED_TO, artworks, FEATURES,
+	 * subjects.
+	 * 
+	 * @return Sum of the ids of the subjects reached
+	 */
+	@Benchmark
+	public long artistArtworkSubjects() {
+		long sum = 0;
+		try (Transaction tx = db.beginTx()) {
+			for (long id : artists) {
+				Node artist = db.getNodeById(id);
+				for (Relationship contributed : artist.getRelationships(Direction.OUTGOING, CONTRIBUTED_TO)) {
+					Node artwork = contributed.getEndNode();
+					for (Relationship features : artwork.getRelationships(Direction.OUTGOING, FEATURES)) {
+						sum += features.getEndNode().getId();
+					}
+				}
+			}
+			tx.success();
+		}
+		return sum;
+	}
+
+	/**
+	 * @return Sum of the ids of the nodes reached, so nothing is optimised away
+	 */
+	private long expand(long[] nodes) {
+		long sum = 0;
+		try (Transaction tx = db.beginTx()) {
+			for (long id : nodes) {
+				Node node = db.getNodeById(id);
+				for (Relationship relationship : node.getRelationships()) {
+					sum += relationship.getOtherNode(node).getId();
+				}
+			}
+			tx.success();
+		}
+		return sum;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TraversalBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,157 @@
+package io.larkin.tate2neo.checkpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.larkin.tate2neo.ImportApplication;
+import io.larkin.tate2neo.benchmark.Corpus;
+import io.larkin.tate2neo.benchmark.ImportRunner;
+import io.larkin.tate2neo.metrics.ImportMetrics;
+import io.larkin.tate2neo.metrics.ImportMetrics.Phase;
+import io.larkin.tate2neo.sink.ImportSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ImportCheckpointTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoresStoreAsCheckpointed() throws IOException {
+		Path store = folder.newFolder("graph.db").toPath();
+		write(store.resolve("neostore"), "first");
+		write(store.resolve("schema/label/index"), "index");
+
+		ImportCheckpoint checkpoint = new ImportCheckpoint(folder.getRoot().toPath().resolve("graph.db.checkpoint"));
+		assertFalse(checkpoint.load());
+		checkpoint.save(store, 10, 0, 25);
+		write(store.resolve("neostore"), "second");
+		checkpoint.save(store, 10, 500, 4000);
+
+		// the import carries on, then dies part way through a file
+		write(store.resolve("neostore"), "broken");
+		write(store.resolve("neostore.nodestore.db"), "partial");
+
+		ImportCheckpoint resumed = new ImportCheckpoint(checkpoint.getDirectory());
+		assertTrue(resumed.load());
+		assertEquals(10, resumed.getArtists());
+		assertEquals(500, resumed.getArtworks());
+		assertEquals(4000, resumed.getHighNodeId());
+		resumed.restore(store);
+		assertEquals("second", read(store.resolve("neostore")));
+		assertEquals("index", read(store.resolve("schema/label/index")));
+		assertFalse(Files.exists(store.resolve("neostore.nodestore.db")));
+
+		resumed.delete();
+		assertFalse(Files.exists(checkpoint.getDirectory()));
+	}
+
+	@Test
+	public void resumesCountingFromTheCheckpoint() throws Exception {
+		Path root = folder.getRoot().toPath();
+		Path artists = root.resolve("artists.ndjson");
+		Path artworks = root.resolve("artworks.ndjson");
+		Corpus corpus = new Corpus(7, 50, 200);
+		corpus.writeArtists(artists);
+		corpus.writeArtworks(artworks);
+		Path store = root.resolve("graph.db");
+		ImportCheckpoint checkpoint = new ImportCheckpoint(root.resolve("graph.db.checkpoint"));
+
+		// a checkpoint every 60 records: killed after 50 artists and 70 artworks
+		runKilledImport(store, artists, artworks, 2);
+		assertTrue(checkpoint.load());
+		assertEquals(50, checkpoint.getArtists());
+		assertEquals(70, checkpoint.getArtworks());
+
+		// the next checkpoint counts from the start of the input, not the resume
+		runKilledImport(store, artists, artworks, 1, "--resume");
+		assertTrue(checkpoint.load());
+		assertEquals(50, checkpoint.getArtists());
+		assertEquals(130, checkpoint.getArtworks());
+
+		runImport(new ImportMetrics(), store, artists, artworks, "--resume");
+		assertFalse(Files.exists(checkpoint.getDirectory()));
+		BatchInserter inserter = BatchInserters.inserter(store.toString());
+		try {
+			assertEquals(50, countNodes(inserter, "Artist"));
+			assertEquals(200, countNodes(inserter, "Artwork"));
+		} finally {
+			inserter.shutdown();
+		}
+	}
+
+	private void runImport(ImportMetrics metrics, Path store, Path artists, Path artworks, String... options)
+			throws Exception {
+		runImport(new ImportApplication(), metrics, store, artists, artworks, options);
+	}
+
+	private void runImport(ImportApplication application, ImportMetrics metrics, Path store, Path artists,
+			Path artworks, String... options) throws Exception {
+		new ImportRunner().set("metrics", metrics).set("lookupSnapshot", true).set("checkpointRecords", 60)
+				.run(application, store, artists, artworks, options);
+	}
+
+	/**
+	 * Run an import that dies straight after a number of checkpoints.
+	 */
+	private void runKilledImport(Path store, Path artists, Path artworks, int checkpoints, String... options)
+			throws Exception {
+		ImportMetrics metrics = new ImportMetrics() {
+			private int taken;
+
+			@Override
+			public void time(Phase phase, long startNanos) {
+				super.time(phase, startNanos);
+				if (phase == Phase.CHECKPOINT && ++taken == checkpoints) {
+					throw new IllegalStateException("Killed");
+				}
+			}
+		};
+		ImportApplication application = new ImportApplication();
+		try {
+			runImport(application, metrics, store, artists, artworks, options);
+			fail("Not killed");
+		} catch (RuntimeException e) {
+			Throwable cause = e;
+			while (cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			assertEquals("Killed", cause.getMessage());
+		}
+		// release the store, as the process exiting would
+		((ImportSink) ReflectionTestUtils.getField(application, "sink")).shutdown();
+	}
+
+	private static int countNodes(BatchInserter inserter, String label) {
+		int count = 0;
+		for (long id = 0; inserter.nodeExists(id); id++) {
+			if (inserter.nodeHasLabel(id, DynamicLabel.label(label))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static void write(Path file, String content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, Collections.singletonList(content), StandardCharsets.UTF_8);
+	}
+
+	private static String read(Path file) throws IOException {
+		return Files.readAllLines(file, StandardCharsets.UTF_8).get(0);
+	}
+}
@@ -0,0 +1,118 @@
+package io.larkin.tate2neo.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.larkin.tate2neo.benchmark.Corpus;
+import io.larkin.tate2neo.benchmark.GraphDescription;
+import io.larkin.tate2neo.benchmark.ImportRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Imports a tree of artist and artwork files, changes it, and checks that a
+ * delta import of the changed tree gives the same graph as a full import of
+ * it.
+ */
+public class DeltaImportTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Corpus corpus = new Corpus(11, 30, 320);
+
+	private Path artists;
+
+	private Path artworks;
+
+	@Test
+	public void deltaGivesTheGraphOfAFullImport() throws Exception {
+		Path root = folder.getRoot().toPath();
+		artists = root.resolve("artists");
+		artworks = root.resolve("artworks");
+		// artist 3 is added by the delta, though artworks already name them
+		int added = 3;
+		int renamed = contributor(4, false);
+		// the removed artist stays on as the person artworks feature
+		int removed = contributor(renamed + 1, true);
+		for (int id = 1; id <= corpus.getArtists(); id++) {
+			if (id != added) {
+				writeArtist(id, artistFile(id), Corpus.artistName(id));
+			}
+		}
+		for (int id = 1; id <= 300; id++) {
+			writeArtwork(id, corpus.artwork(id));
+		}
+		Path store = root.resolve("graph.db");
+		new ImportRunner().set("lookupSnapshot", true).run(store, artists, artworks);
+
+		writeArtist(added, artistFile(added), Corpus.artistName(added));
+		// a corrected name renames the file
+		Files.delete(artists.resolve(artistFile(renamed)));
+		writeArtist(renamed, "renamed-" + artistFile(renamed), Corpus.artistName(renamed) + " Jr");
+		Files.delete(artists.resolve(artistFile(removed)));
+		String changed = new String(corpus.artwork(5), StandardCharsets.UTF_8).replace("Artwork 5", "Artwork five");
+		writeArtwork(5, changed.getBytes(StandardCharsets.UTF_8));
+		Files.delete(artworks.resolve("T6.json"));
+		for (int id = 301; id <= corpus.getArtworks(); id++) {
+			writeArtwork(id, corpus.artwork(id));
+		}
+		new ImportRunner().set("lookupSnapshot", true).set("delta", true).run(store, artists, artworks);
+
+		Path fresh = root.resolve("fresh.db");
+		new ImportRunner().run(fresh, artists, artworks);
+
+		List<String> expected = GraphDescription.of(fresh);
+		List<String> actual = GraphDescription.of(store);
+		assertTrue(expected.size() > 1000);
+		assertTrue(expected.stream().anyMatch(line -> line.contains(Corpus.artistName(added) + "}-CONTRIBUTED_TO")));
+		assertTrue(expected.stream().anyMatch(line -> line.contains(Corpus.artistName(renamed) + " Jr}-CONTRIBUTED_TO")));
+		assertTrue(expected.contains("[Person]{name=" + Corpus.artistName(removed) + "}"));
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * @return The first artist from an id who contributed to an artwork, and
+	 * 			who is or isn't featured in one as a named individual
+	 */
+	private int contributor(int from, boolean featured) throws IOException {
+		for (int id = from;; id++) {
+			String contributor = "\"contributors\":[{\"id\":" + id + "}";
+			boolean contributes = false;
+			boolean named = false;
+			for (int artwork = 1; artwork <= corpus.getArtworks(); artwork++) {
+				String json = new String(corpus.artwork(artwork), StandardCharsets.UTF_8);
+				contributes |= json.contains(contributor);
+				named |= json.contains(Corpus.artistName(id));
+			}
+			if (contributes && named == featured) {
+				return id;
+			}
+		}
+	}
+
+	private static String artistFile(int id) {
+		return "a/artist-" + id + ".json";
+	}
+
+	private void writeArtist(int id, String file, String name) throws IOException {
+		String json = new String(corpus.artist(id), StandardCharsets.UTF_8).replace(Corpus.artistName(id), name);
+		write(artists.resolve(file), json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeArtwork(int id, byte[] json) throws IOException {
+		write(artworks.resolve("T" + id + ".json"), json);
+	}
+
+	private static void write(Path file, byte[] content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content);
+	}
+}
@@ -0,0 +1,78 @@
+package io.larkin.tate2neo.delta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.larkin.tate2neo.delta.ImportManifest.Entry;
+import io.larkin.tate2neo.delta.ImportManifest.Kind;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImportManifestTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripsThroughFile() throws IOException {
+		ImportManifest manifest = new ImportManifest();
+		manifest.put(Kind.ARTIST, "a/001/a1.json", hash("{\"id\":1}"), 1, 10);
+		manifest.put(Kind.ARTWORK, "a/000/A00001.json", "", 7, 11);
+		Path file = folder.getRoot().toPath().resolve("import-manifest.tsv");
+		manifest.save(file);
+
+		ImportManifest loaded = ImportManifest.load(file);
+		Entry artist = loaded.get(Kind.ARTIST, "a/001/a1.json");
+		assertEquals(hash("{\"id\":1}"), artist.getHash());
+		assertEquals(1, artist.getEntityId());
+		assertEquals(10, artist.getNodeId());
+		// a failed file has no hash, so is never unchanged
+		assertFalse(loaded.isUnchanged(Kind.ARTWORK, "a/000/A00001.json", hash("")));
+		assertEquals(11, loaded.get(Kind.ARTWORK, "a/000/A00001.json").getNodeId());
+	}
+
+	@Test
+	public void findsChangedAndRemovedFiles() throws IOException {
+		ImportManifest previous = new ImportManifest();
+		previous.put(Kind.ARTIST, "a1.json", hash("one"), 1, 0);
+		previous.put(Kind.ARTIST, "a2.json", hash("two"), 2, 1);
+		previous.put(Kind.ARTIST, "a3.json", hash("three"), 3, 2);
+		Path file = folder.getRoot().toPath().resolve("import-manifest.tsv");
+		previous.save(file);
+
+		ImportManifest manifest = ImportManifest.load(file);
+		assertTrue(manifest.isUnchanged(Kind.ARTIST, "a1.json", hash("one")));
+		manifest.unchanged(Kind.ARTIST, "a1.json");
+		assertFalse(manifest.isUnchanged(Kind.ARTIST, "a2.json", hash("two, changed")));
+		manifest.put(Kind.ARTIST, "a2.json", hash("two, changed"), 2, 1);
+		assertNull(manifest.get(Kind.ARTIST, "a4.json"));
+		manifest.put(Kind.ARTIST, "a4.json", hash("four"), 4, 3);
+
+		List<Entry> removed = manifest.unseen(Kind.ARTIST);
+		assertEquals(1, removed.size());
+		assertEquals("a3.json", removed.get(0).getSource());
+		manifest.remove(removed.get(0));
+		assertEquals(3, manifest.size(Kind.ARTIST));
+		assertEquals(0, manifest.size(Kind.ARTWORK));
+		assertEquals("Delta: 1 added, 1 changed, 1 unchanged, 1 removed", manifest.summary());
+	}
+
+	@Test
+	public void missingFileIsEmpty() throws IOException {
+		ImportManifest manifest = ImportManifest.load(folder.getRoot().toPath().resolve("none.tsv"));
+		assertEquals(0, manifest.size(Kind.ARTIST));
+	}
+
+	private static String hash(String content) {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		return ImportManifest.hash(bytes, bytes.length);
+	}
+}
@@ -0,0 +1,69 @@
+package io.larkin.tate2neo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import io.larkin.tate2neo.repository.InMemoryLookupRepository;
+import io.larkin.tate2neo.repository.LookupBatch;
+import io.larkin.tate2neo.repository.LookupNamespace;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MeteredLookupRepositoryTests {
+
+	private ImportMetrics metrics;
+
+	private MeteredLookupRepository repository;
+
+	@Before
+	public void setUp() {
+		metrics = new ImportMetrics();
+		repository = new MeteredLookupRepository(new InMemoryLookupRepository(), metrics);
+	}
+
+	@SuppressWarnings("unchecked")
+	private long count(LookupNamespace namespace, String which) {
+		Map<String, Object> lookups = (Map<String, Object>) metrics.summary().get("lookups");
+		return (Long) ((Map<String, Object>) lookups.get(namespace.getKey())).get(which);
+	}
+
+	@Test
+	public void countsGetOrCreateHitsAndMisses() {
+		assertEquals(7L, repository.getOrCreate(LookupNamespace.MEDIUM, "canvas", () -> 7L));
+		assertEquals(7L, repository.getOrCreate(LookupNamespace.MEDIUM, "canvas", () -> 8L));
+		assertEquals(7L, repository.getOrCreate(LookupNamespace.MEDIUM, "canvas", () -> 9L));
+
+		assertEquals(2, count(LookupNamespace.MEDIUM, "hits"));
+		assertEquals(1, count(LookupNamespace.MEDIUM, "misses"));
+		assertEquals(0, count(LookupNamespace.SUBJECT, "hits"));
+	}
+
+	@Test
+	public void countsBatchEntries() {
+		repository.add(LookupNamespace.ARTIST, 1, 10L);
+		LookupBatch batch = new LookupBatch();
+		batch.add(LookupNamespace.ARTIST, 1);
+		batch.add(LookupNamespace.ARTIST, 2);
+		batch.add(LookupNamespace.SUBJECT, 3);
+		repository.getAll(batch);
+
+		assertEquals(1, count(LookupNamespace.ARTIST, "hits"));
+		assertEquals(1, count(LookupNamespace.ARTIST, "misses"));
+		assertEquals(1, count(LookupNamespace.SUBJECT, "misses"));
+	}
+
+	@Test
+	public void countsPrefetchedKeysOnce() {
+		repository.add(LookupNamespace.SUBJECT, 1, 10L);
+		LookupBatch batch = new LookupBatch();
+		batch.add(LookupNamespace.SUBJECT, 1);
+		batch.add(LookupNamespace.SUBJECT, 2);
+		repository.getAll(batch);
+		// the key the prefetch missed is created, and not counted again
+		assertEquals(20L, repository.getOrCreateCounted(LookupNamespace.SUBJECT, 2, () -> 20L));
+
+		assertEquals(1, count(LookupNamespace.SUBJECT, "hits"));
+		assertEquals(1, count(LookupNamespace.SUBJECT, "misses"));
+	}
+}
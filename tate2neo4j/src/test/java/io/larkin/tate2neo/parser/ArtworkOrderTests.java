@@ -0,0 +1,46 @@
+package io.larkin.tate2neo.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ArtworkOrderTests {
+
+	private static ArtworkRecord artwork(int contributor, int catalogueGroup) {
+		ArtworkRecord artwork = new ArtworkRecord();
+		if (contributor >= 0) {
+			artwork.addContributor(contributor);
+			artwork.addContributor(1);
+		}
+		if (catalogueGroup >= 0) {
+			artwork.setCatalogueGroup(catalogueGroup, "Group " + catalogueGroup);
+		}
+		return artwork;
+	}
+
+	@Test
+	public void groupsByContributorThenCatalogueGroup() {
+		ArtworkOrder order = new ArtworkOrder();
+		order.add(artwork(39, 5));
+		order.add(artwork(-1, 5));
+		order.add(artwork(7, -1));
+		order.add(artwork(39, 2));
+		order.add(artwork(7, 3));
+		order.add(artwork(39, 5));
+
+		assertEquals(6, order.size());
+		assertArrayEquals(new int[] { 4, 2, 3, 0, 5, 1 }, order.order());
+		assertEquals(Arrays.asList("e", "c", "d", "a", "f", "b"),
+				order.sort(Arrays.asList("a", "b", "c", "d", "e", "f")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInputsOfAnotherLength() {
+		ArtworkOrder order = new ArtworkOrder();
+		order.add(artwork(39, 5));
+		order.sort(Arrays.asList("a", "b"));
+	}
+}
@@ -0,0 +1,73 @@
+package io.larkin.tate2neo.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MediumTokenizerTests {
+
+	private static final String[] PARTS = { ",", " on ", " and ", " ", "  ", "on", "and", "Oil",
+			"paint", "canvas", "Graphite", "\t", "an", " o", "d " };
+
+	/**
+	 * The split the tokenizer replaces
+	 */
+	private static String[] regexSplit(String medium) {
+		String[] mediums = medium.split(",| on | and ");
+		for (int i = 0; i < mediums.length; i++) {
+			mediums[i] = mediums[i].trim().toLowerCase();
+		}
+		return mediums;
+	}
+
+	private void assertSameAsSplit(String medium) {
+		assertArrayEquals(medium, regexSplit(medium), MediumTokenizer.split(medium));
+	}
+
+	@Test
+	public void splitsTateMediums() {
+		assertSameAsSplit("Oil paint on canvas");
+		assertSameAsSplit("Graphite, ink and watercolour on paper");
+		assertSameAsSplit("Gelatin silver print on paper");
+		assertSameAsSplit("Bronze");
+	}
+
+	@Test
+	public void keepsSplitEdgeCases() {
+		assertSameAsSplit("");
+		assertSameAsSplit(",");
+		assertSameAsSplit(",,");
+		assertSameAsSplit(" , ");
+		assertSameAsSplit(",canvas");
+		assertSameAsSplit("canvas,,");
+		assertSameAsSplit("canvas, ,");
+		assertSameAsSplit("oil on and canvas");
+		assertSameAsSplit("oil  on  canvas");
+		assertSameAsSplit("Oil On Canvas");
+		assertSameAsSplit(" on canvas");
+		assertSameAsSplit("oil on ");
+		assertSameAsSplit("oil and");
+	}
+
+	@Test
+	public void matchesSplitOnRandomMediums() {
+		Random random = new Random(42);
+		MediumTokenizer tokenizer = new MediumTokenizer();
+		for (int n = 0; n < 20000; n++) {
+			StringBuilder medium = new StringBuilder();
+			for (int p = random.nextInt(8); p > 0; p--) {
+				medium.append(PARTS[random.nextInt(PARTS.length)]);
+			}
+			String[] expected = regexSplit(medium.toString());
+			// a reused tokenizer must give the same result as a new one
+			int count = tokenizer.tokenize(medium.toString());
+			String[] actual = new String[count];
+			for (int i = 0; i < count; i++) {
+				actual[i] = tokenizer.token(i);
+			}
+			assertArrayEquals(medium.toString(), expected, actual);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package io.larkin.tate2neo.parser;
+
+import static org.junit.Assert.assertEquals;
+import io.larkin.tate2neo.Artwork;
+import io.larkin.tate2neo.benchmark.Fixtures;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The streaming parser must produce exactly the same import events as
+ * databinding an Artwork, so both paths write the same graph.
+ */
+public class StreamingArtworkParserTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final StreamingArtworkParser parser = new StreamingArtworkParser(mapper.getFactory());
+
+	private List<String> databound(byte[] json) throws IOException {
+		RecordingHandler handler = new RecordingHandler();
+		ArtworkRecord.from(mapper.readValue(json, Artwork.class)).emit(handler);
+		return handler.events;
+	}
+
+	private List<String> streamed(byte[] json) throws IOException {
+		RecordingHandler handler = new RecordingHandler();
+		parser.parse(json, 0, json.length).emit(handler);
+		return handler.events;
+	}
+
+	@Test
+	public void fixtureMatchesDatabinding() throws IOException {
+		byte[] json = Fixtures.read("artwork.json");
+		List<String> events = streamed(json);
+
+		assertEquals(databound(json), events);
+		assertEquals("start 5263 N05072 Totes Meer (Dead Sea)", events.get(0));
+		assertEquals("subject 0 145 society", events.get(4));
+		assertEquals("subject 2 11960 Nash, Paul", events.get(events.size() - 4));
+	}
+
+	@Test
+	public void missingAndNullFieldsMatchDatabinding() throws IOException {
+		byte[] json = ("{\"acno\": \"T1\", \"catalogueGroup\": {\"id\": null, \"shortTitle\": \"x\"},"
+				+ " \"classification\": null, \"contributors\": [], \"id\": 7, \"medium\": null,"
+				+ " \"subjects\": {\"children\": [{\"children\": [{\"children\": [{\"children\": [{\"id\": 9, \"name\": \"too deep\"}],"
+				+ " \"id\": 3, \"name\": \"leaf\"}], \"id\": 2, \"name\": \"top\"}, {\"id\": 4, \"name\": \"no children\"}],"
+				+ " \"id\": 1, \"name\": \"container\"}], \"id\": 0, \"name\": \"subject\"},"
+				+ " \"title\": \"Untitled\", \"unused\": {\"nested\": [1, 2, {\"a\": null}]}}").getBytes(StandardCharsets.UTF_8);
+
+		assertEquals(databound(json), streamed(json));
+	}
+
+	private static class RecordingHandler implements ArtworkHandler {
+
+		private final List<String> events = new ArrayList<>();
+
+		@Override
+		public void startArtwork(int id, String acno, String title) {
+			events.add("start " + id + " " + acno + " " + title);
+		}
+
+		@Override
+		public void contributor(int artistId) {
+			events.add("contributor " + artistId);
+		}
+
+		@Override
+		public void catalogueGroup(int id, String shortTitle) {
+			events.add("catalogueGroup " + id + " " + shortTitle);
+		}
+
+		@Override
+		public void movement(int id, String name) {
+			events.add("movement " + id + " " + name);
+		}
+
+		@Override
+		public void subject(int level, int id, String name) {
+			events.add("subject " + level + " " + id + " " + name);
+		}
+
+		@Override
+		public void classification(String classification) {
+			events.add("classification " + classification);
+		}
+
+		@Override
+		public void medium(String medium) {
+			events.add("medium " + medium);
+		}
+
+		@Override
+		public void endArtwork() {
+			events.add("end");
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package io.larkin.tate2neo.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FrozenLookupTests {
+
+	@Test
+	public void copiesTheNamespacesAsked() {
+		InMemoryLookupRepository lookup = new InMemoryLookupRepository();
+		lookup.add(LookupNamespace.SUBJECT, 0, 1);
+		lookup.add(LookupNamespace.SUBJECT, 29, 2);
+		lookup.add(LookupNamespace.MEDIUM, "oil paint", 3);
+		lookup.add(LookupNamespace.PLACE, "Dublin", 4);
+
+		FrozenLookup frozen = FrozenLookup.of(lookup, LookupNamespace.SUBJECT, LookupNamespace.MEDIUM);
+		lookup.add(LookupNamespace.SUBJECT, 30, 5);
+
+		assertEquals(3, frozen.size());
+		assertEquals(1, frozen.get(LookupNamespace.SUBJECT, 0));
+		assertEquals(2, frozen.get(LookupNamespace.SUBJECT, 29));
+		assertEquals(ILookupRepository.NOT_FOUND, frozen.get(LookupNamespace.SUBJECT, 30));
+		assertEquals(3, frozen.get(LookupNamespace.MEDIUM, "oil paint"));
+		assertEquals(ILookupRepository.NOT_FOUND, frozen.get(LookupNamespace.MEDIUM, "canvas"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNamespacesNotCopied() {
+		FrozenLookup.of(new InMemoryLookupRepository(), LookupNamespace.SUBJECT).get(LookupNamespace.PLACE, "Dublin");
+	}
+}
@@ -0,0 +1,69 @@
+package io.larkin.tate2neo.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InMemoryLookupRepositoryTests {
+
+	private final InMemoryLookupRepository lookup = new InMemoryLookupRepository();
+
+	@Test
+	public void createsEachKeyOnce() {
+		int[] created = new int[1];
+		assertEquals(10, lookup.getOrCreate(LookupNamespace.SUBJECT, 1, () -> 10 + created[0]++));
+		assertEquals(10, lookup.getOrCreate(LookupNamespace.SUBJECT, 1, () -> 10 + created[0]++));
+		assertEquals(11, lookup.getOrCreate(LookupNamespace.MOVEMENT, 1, () -> 10 + created[0]++));
+		assertEquals(12, lookup.getOrCreate(LookupNamespace.MEDIUM, "oil paint", () -> 10 + created[0]++));
+		assertEquals(12, lookup.getOrCreate(LookupNamespace.MEDIUM, "oil paint", () -> 10 + created[0]++));
+		assertEquals(3, created[0]);
+		assertEquals(10, lookup.get(LookupNamespace.SUBJECT, 1));
+		assertEquals(ILookupRepository.NOT_FOUND, lookup.get(LookupNamespace.SUBJECT, 2));
+		assertEquals(ILookupRepository.NOT_FOUND, lookup.get(LookupNamespace.PLACE, "oil paint"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsKeysOfTheWrongType() {
+		lookup.getOrCreate(LookupNamespace.MEDIUM, 1, () -> 0);
+	}
+
+	@Test
+	public void truncatesToACheckpointAndVisitsWhatIsLeft() {
+		for (int i = 0; i < 1000; i++) {
+			lookup.add(LookupNamespace.ARTIST, i, i);
+			lookup.add(LookupNamespace.PLACE, "Place " + i, 1000 + i);
+		}
+		// every artist from 600, and every place
+		assertEquals(1400, lookup.truncate(600));
+		assertEquals(599, lookup.get(LookupNamespace.ARTIST, 599));
+		assertEquals(ILookupRepository.NOT_FOUND, lookup.get(LookupNamespace.ARTIST, 600));
+		assertEquals(ILookupRepository.NOT_FOUND, lookup.get(LookupNamespace.PLACE, "Place 0"));
+		// the node the removed key had is made again
+		assertEquals(600, lookup.getOrCreate(LookupNamespace.ARTIST, 600, () -> 600));
+
+		Map<Integer, Long> artists = new HashMap<>();
+		Map<String, Long> places = new HashMap<>();
+		LookupEntryVisitor visitor = new LookupEntryVisitor() {
+			@Override
+			public void entry(LookupNamespace namespace, int key, long nodeId) {
+				assertEquals(LookupNamespace.ARTIST, namespace);
+				artists.put(key, nodeId);
+			}
+
+			@Override
+			public void entry(LookupNamespace namespace, String key, long nodeId) {
+				places.put(key, nodeId);
+			}
+		};
+		lookup.forEachEntry(LookupNamespace.ARTIST, visitor);
+		lookup.forEachEntry(LookupNamespace.PLACE, visitor);
+		assertEquals(601, artists.size());
+		for (int i = 0; i <= 600; i++) {
+			assertEquals(i, artists.get(i).longValue());
+		}
+		assertEquals(0, places.size());
+	}
+}
@@ -0,0 +1,52 @@
+package io.larkin.tate2neo.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LookupSnapshotTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void roundTripsEveryNamespace() throws IOException {
+		InMemoryLookupRepository lookup = new InMemoryLookupRepository();
+		for (int i = 0; i < 5000; i++) {
+			lookup.add(LookupNamespace.ARTIST, i, i);
+			lookup.add(LookupNamespace.SUBJECT, -i, 100000L + i);
+			lookup.add(LookupNamespace.MEDIUM, "medium " + i, 1L << 34 | i);
+		}
+		lookup.add(LookupNamespace.PERSON_BY_NAME, "\u0106wiek, \u017Baneta", 7);
+		lookup.add(LookupNamespace.PLACE, "", 8);
+
+		Path file = folder.getRoot().toPath().resolve("lookup.snapshot");
+		assertEquals(15002, LookupSnapshot.write(lookup, file));
+
+		for (boolean mapped : new boolean[] { false, true }) {
+			InMemoryLookupRepository loaded = new InMemoryLookupRepository();
+			assertEquals(15002, LookupSnapshot.read(file, mapped, loaded));
+			for (int i = 0; i < 5000; i++) {
+				assertEquals(i, loaded.get(LookupNamespace.ARTIST, i));
+				assertEquals(100000L + i, loaded.get(LookupNamespace.SUBJECT, -i));
+				assertEquals(1L << 34 | i, loaded.get(LookupNamespace.MEDIUM, "medium " + i));
+			}
+			assertEquals(7, loaded.get(LookupNamespace.PERSON_BY_NAME, "\u0106wiek, \u017Baneta"));
+			assertEquals(8, loaded.get(LookupNamespace.PLACE, ""));
+			assertEquals(ILookupRepository.NOT_FOUND, loaded.get(LookupNamespace.MOVEMENT, 1));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("lookup.snapshot");
+		Files.write(file, "{\"id\": 1}\n".getBytes("UTF-8"));
+		LookupSnapshot.read(file, false, new InMemoryLookupRepository());
+	}
+}
@@ -0,0 +1,84 @@
+package io.larkin.tate2neo.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedLookupRepositoryTests {
+
+	// enough to grow each table several times from its expected size
+	private static final int KEYS = 500000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void holdsGeneratedKeysAcrossReopening() throws IOException {
+		Path directory = folder.getRoot().toPath().resolve("lookup");
+		MappedLookupRepository lookup = new MappedLookupRepository(directory, 1000);
+		Random random = new Random(42);
+		int[] ids = new int[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			ids[i] = random.nextInt();
+			lookup.add(LookupNamespace.SUBJECT, ids[i], i);
+			lookup.add(LookupNamespace.PERSON_BY_NAME, name(i), i);
+		}
+		// later values win, as for the other lookups
+		lookup.add(LookupNamespace.PERSON_BY_NAME, name(0), KEYS);
+		assertAll(lookup, ids);
+		lookup.close();
+
+		MappedLookupRepository reopened = new MappedLookupRepository(directory, 1000);
+		assertAll(reopened, ids);
+		assertEquals(ILookupRepository.NOT_FOUND, reopened.get(LookupNamespace.PERSON_BY_NAME, name(KEYS)));
+		assertEquals(ILookupRepository.NOT_FOUND, reopened.get(LookupNamespace.MEDIUM, name(1)));
+		reopened.close();
+	}
+
+	@Test
+	public void removesAndTruncates() throws IOException {
+		MappedLookupRepository lookup = new MappedLookupRepository(folder.getRoot().toPath(), 16);
+		for (int i = 0; i < 10000; i++) {
+			lookup.add(LookupNamespace.ARTIST, i, i);
+			lookup.add(LookupNamespace.MEDIUM, name(i), i);
+		}
+		for (int i = 0; i < 10000; i += 2) {
+			lookup.remove(LookupNamespace.ARTIST, i);
+			lookup.remove(LookupNamespace.MEDIUM, name(i));
+		}
+		assertEquals(5000, lookup.size(LookupNamespace.ARTIST));
+		// the odd keys from 5000, in both namespaces
+		assertEquals(5000, lookup.truncate(5000));
+		for (int i = 0; i < 10000; i++) {
+			long expected = i % 2 == 1 && i < 5000 ? i : ILookupRepository.NOT_FOUND;
+			assertEquals(expected, lookup.get(LookupNamespace.ARTIST, i));
+			assertEquals(expected, lookup.get(LookupNamespace.MEDIUM, name(i)));
+		}
+		assertEquals(7, lookup.getOrCreate(LookupNamespace.ARTIST, 8, () -> 7));
+		assertEquals(7, lookup.getOrCreate(LookupNamespace.ARTIST, 8, () -> 9));
+		lookup.close();
+	}
+
+	private static void assertAll(MappedLookupRepository lookup, int[] ids) {
+		for (int i = 0; i < KEYS; i++) {
+			assertEquals(i == 0 ? KEYS : i, lookup.get(LookupNamespace.PERSON_BY_NAME, name(i)));
+		}
+		// random ids repeat occasionally, so check against the last value stored
+		for (int i = KEYS - 1; i >= 0; i--) {
+			long nodeId = lookup.get(LookupNamespace.SUBJECT, ids[i]);
+			assertTrue(nodeId >= i);
+			assertEquals(ids[i], ids[(int) nodeId]);
+		}
+	}
+
+	private static String name(int i) {
+		return "Person " + Integer.toString(i * 7919, 36) + ", Named";
+	}
+}
@@ -0,0 +1,89 @@
+package io.larkin.tate2neo.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import redis.embedded.RedisServer;
+
+public class RedisLookupRepositoryTests {
+
+	private static final int PORT = 6390;
+
+	private RedisServer server;
+
+	private JedisConnectionFactory connectionFactory;
+
+	private RedisLookupRepository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new RedisServer(PORT);
+		server.start();
+		connectionFactory = new JedisConnectionFactory();
+		connectionFactory.setPort(PORT);
+		connectionFactory.afterPropertiesSet();
+		repository = new RedisLookupRepository();
+		ReflectionTestUtils.setField(repository, "redisTemplate", new StringRedisTemplate(connectionFactory));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connectionFactory.destroy();
+		server.stop();
+	}
+
+	@Test
+	public void batchIsResolvedInOneRoundTrip() {
+		repository.add(LookupNamespace.ARTIST, 558, 10L);
+		repository.add(LookupNamespace.MEDIUM, "graphite", 11L);
+		long before = repository.getRoundTrips();
+
+		LookupBatch batch = new LookupBatch();
+		int artist = batch.add(LookupNamespace.ARTIST, 558);
+		int subject = batch.add(LookupNamespace.SUBJECT, 558);
+		int medium = batch.add(LookupNamespace.MEDIUM, "graphite");
+		int paper = batch.add(LookupNamespace.MEDIUM, "paper");
+		repository.getAll(batch);
+
+		assertEquals(10L, batch.getNodeId(artist));
+		assertEquals(ILookupRepository.NOT_FOUND, batch.getNodeId(subject));
+		assertEquals(11L, batch.getNodeId(medium));
+		assertEquals(ILookupRepository.NOT_FOUND, batch.getNodeId(paper));
+		assertEquals(1, repository.getRoundTrips() - before);
+		assertEquals(3, repository.getRoundTripsSaved());
+	}
+
+	@Test
+	public void addAllStoresEveryResolvedEntry() {
+		LookupBatch batch = new LookupBatch();
+		batch.setNodeId(batch.add(LookupNamespace.ARTIST, 1), 20L);
+		batch.setNodeId(batch.add(LookupNamespace.PERSON_BY_NAME, "Turner, Joseph Mallord William"), 20L);
+		batch.add(LookupNamespace.MOVEMENT, 7);
+		repository.addAll(batch);
+
+		assertEquals(20L, repository.get(LookupNamespace.ARTIST, 1));
+		assertEquals(20L, repository.get(LookupNamespace.PERSON_BY_NAME, "Turner, Joseph Mallord William"));
+		assertEquals(ILookupRepository.NOT_FOUND, repository.get(LookupNamespace.MOVEMENT, 7));
+	}
+
+	@Test
+	public void getOrCreateOnlyCreatesOnce() {
+		assertEquals(30L, repository.getOrCreate(LookupNamespace.PLACE, "London", () -> 30L));
+		assertEquals(30L, repository.getOrCreate(LookupNamespace.PLACE, "London", () -> 31L));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getOrCreateFailsWhenAnotherImporterStoresTheKey() {
+		repository.getOrCreate(LookupNamespace.PLACE, "Paris", () -> {
+			// as another process would, between the HGET and the HSETNX
+			repository.add(LookupNamespace.PLACE, "Paris", 40L);
+			return 41L;
+		});
+	}
+}
@@ -0,0 +1,57 @@
+package io.larkin.tate2neo.sink;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+public class CountingSinkTests {
+
+	private final Label ARTIST = DynamicLabel.label("Artist");
+
+	private final Label PERSON = DynamicLabel.label("Person");
+
+	private final Label PLACE = DynamicLabel.label("Place");
+
+	private final RelationshipType BORN_IN = DynamicRelationshipType.withName("BORN_IN");
+
+	@Test
+	public void countsWhatWouldBeWritten() {
+		CountingSink sink = new CountingSink();
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("name", "Blake, William");
+		properties.put("id", 39);
+		assertEquals(0, sink.createNode(properties, ARTIST, PERSON));
+		properties.clear();
+		properties.put("name", "London");
+		assertEquals(1, sink.createNode(properties, PLACE));
+		assertEquals(2, sink.createNode(null, PERSON));
+		properties.clear();
+		properties.put("startYear", 1757);
+		sink.createRelationship(0, 1, BORN_IN, properties);
+		sink.createRelationship(2, 1, BORN_IN, null);
+		sink.createIndex(PERSON, "name");
+
+		assertEquals(3, sink.getNodes());
+		assertEquals(2, sink.getNodes("Person"));
+		assertEquals(0, sink.getNodes("Artwork"));
+		assertEquals(2, sink.getRelationships());
+		assertEquals(2, sink.getRelationships("BORN_IN"));
+		assertEquals(4, sink.getProperties());
+		assertEquals(Arrays.asList("Person(name)"), sink.getIndexes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsRelationshipsToUnknownNodes() {
+		CountingSink sink = new CountingSink();
+		sink.createNode(null, PLACE);
+		sink.createRelationship(0, 1, BORN_IN, null);
+	}
+}
@@ -0,0 +1,171 @@
+package io.larkin.tate2neo.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.larkin.tate2neo.benchmark.Corpus;
+import io.larkin.tate2neo.benchmark.GraphDescription;
+import io.larkin.tate2neo.benchmark.ImportRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Imports the same generated corpus with the BatchInserter and as CSV files,
+ * and checks that the CSV files describe the same graph as the store. Also
+ * checks that the ways of parsing and writing artworks faster give the graph
+ * of a serial import.
+ */
+public class CsvSinkTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path artists;
+
+	private Path artworks;
+
+	@Before
+	public void writeCorpus() throws IOException {
+		Path root = folder.getRoot().toPath();
+		artists = root.resolve("artists.ndjson");
+		artworks = root.resolve("artworks.ndjson");
+		Corpus corpus = new Corpus(7, 50, 500);
+		corpus.writeArtists(artists);
+		corpus.writeArtworks(artworks);
+	}
+
+	/**
+	 * Import the corpus into a new store and describe its graph.
+	 */
+	private List<String> importGraph(ImportRunner runner) throws Exception {
+		Path store = folder.newFolder().toPath().resolve("graph.db");
+		runner.run(store, artists, artworks);
+		return GraphDescription.of(store);
+	}
+
+	@Test
+	public void csvDescribesTheSameGraphAsTheBatchInserter() throws Exception {
+		Path csv = folder.getRoot().toPath().resolve("csv");
+		new ImportRunner().set("output", "csv").run(csv, artists, artworks);
+
+		List<String> expected = importGraph(new ImportRunner().set("output", "batch"));
+		List<String> actual = describeCsv(csv);
+		assertTrue(expected.size() > 1000);
+		assertEquals(expected, actual);
+		assertTrue(Files.readAllLines(csv.resolve("indexes.cypher")).contains("CREATE INDEX ON :Person(name);"));
+	}
+
+	@Test
+	public void prepassAndParserThreadsGiveTheSerialGraph() throws Exception {
+		List<String> serial = importGraph(new ImportRunner());
+		assertTrue(serial.size() > 1000);
+		assertEquals(serial, importGraph(new ImportRunner().set("parserThreads", 4)));
+		assertEquals(serial, importGraph(new ImportRunner().set("parserThreads", 4).set("artworkPrepass", true)));
+	}
+
+	@Test
+	public void orderingArtworksGivesTheSameGraph() throws Exception {
+		List<String> unordered = importGraph(new ImportRunner());
+		assertTrue(unordered.size() > 1000);
+		assertEquals(unordered, importGraph(new ImportRunner().set("orderArtworks", true)));
+	}
+
+	/**
+	 * The graph in the CSV files, described as GraphDescription describes a
+	 * store.
+	 */
+	private List<String> describeCsv(Path csv) throws IOException {
+		Map<String, String> nodes = new HashMap<>();
+		List<String> graph = new ArrayList<>();
+		for (Map<String, String> row : readCsv(csv, "nodes-*.csv")) {
+			TreeSet<String> labels = new TreeSet<>();
+			Collections.addAll(labels, row.remove(":LABEL").split(";"));
+			String id = row.remove(":ID");
+			String description = labels + describeRow(row);
+			nodes.put(id, description);
+			graph.add(description);
+		}
+		for (Map<String, String> row : readCsv(csv, "relationships-*.csv")) {
+			String start = nodes.get(row.remove(":START_ID"));
+			String end = nodes.get(row.remove(":END_ID"));
+			String type = row.remove(":TYPE");
+			graph.add(start + "-" + type + describeRow(row) + "->" + end);
+		}
+		Collections.sort(graph);
+		return graph;
+	}
+
+	private String describeRow(Map<String, String> row) {
+		Map<String, String> sorted = new TreeMap<>();
+		for (Map.Entry<String, String> column : row.entrySet()) {
+			if (!column.getValue().isEmpty()) {
+				// drop the type from e.g. "id:int"
+				int colon = column.getKey().indexOf(':');
+				sorted.put(colon > 0 ? column.getKey().substring(0, colon) : column.getKey(), column.getValue());
+			}
+		}
+		return sorted.toString();
+	}
+
+	private List<Map<String, String>> readCsv(Path dir, String glob) throws IOException {
+		List<Map<String, String>> rows = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, glob)) {
+			for (Path file : files) {
+				List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+				List<String> header = fields(lines.get(0));
+				for (String line : lines.subList(1, lines.size())) {
+					List<String> fields = fields(line);
+					Map<String, String> row = new HashMap<>();
+					for (int i = 0; i < header.size(); i++) {
+						row.put(header.get(i), fields.get(i));
+					}
+					rows.add(row);
+				}
+			}
+		}
+		return rows;
+	}
+
+	private List<String> fields(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,112 @@
+package io.larkin.tate2neo.sink;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.harness.ServerControls;
+import org.neo4j.harness.TestServerBuilders;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Loads an in-process Neo4j server through its HTTP endpoint.
+ */
+public class CypherSinkTests {
+
+	private final Label ARTIST = DynamicLabel.label("Artist");
+
+	private final Label PERSON = DynamicLabel.label("Person");
+
+	private final Label PLACE = DynamicLabel.label("Place");
+
+	private final RelationshipType BORN_IN = DynamicRelationshipType.withName("BORN_IN");
+
+	private ServerControls server;
+
+	@Before
+	public void startServer() {
+		server = TestServerBuilders.newInProcessBuilder().newServer();
+	}
+
+	@After
+	public void stopServer() {
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void loadsNodesAndRelationshipsInBatches() throws Exception {
+		// small batches, so that labels are sent concurrently and
+		// relationships wait for the nodes they connect
+		CypherSink sink = new CypherSink(server.httpURI().toString(), null, null, 3, 2);
+		Map<String, Object> properties = new HashMap<>();
+		long[] places = new long[4];
+		for (int i = 0; i < places.length; i++) {
+			properties.clear();
+			properties.put("name", "Place " + i);
+			places[i] = sink.createNode(properties, PLACE);
+		}
+		for (int i = 0; i < 10; i++) {
+			properties.clear();
+			properties.put("name", "Artist " + i);
+			properties.put("id", i);
+			long artist = sink.createNode(properties, ARTIST, PERSON);
+			properties.clear();
+			properties.put("startYear", 1900 + i);
+			sink.createRelationship(artist, places[i % places.length], BORN_IN, properties);
+		}
+		sink.createNode(null);
+		sink.createIndex(PERSON, "name");
+		sink.shutdown();
+
+		assertEquals(15, count(sink, "MATCH (n) RETURN count(n)"));
+		assertEquals(10, count(sink, "MATCH (:Artist:Person)-[:BORN_IN]->(:Place) RETURN count(*)"));
+		JsonNode rows = sink.execute("MATCH (a:Artist)-[r:BORN_IN]->(p:Place) RETURN a.name, a.id, r.startYear, p.name"
+				+ " ORDER BY a.id", Collections.emptyMap());
+		for (int i = 0; i < 10; i++) {
+			JsonNode row = rows.get(i).get("row");
+			assertEquals("Artist " + i, row.get(0).asText());
+			assertEquals(i, row.get(1).asInt());
+			assertEquals(1900 + i, row.get(2).asInt());
+			assertEquals("Place " + (i % places.length), row.get(3).asText());
+		}
+		assertEquals(sink.getServerId(places[1]), count(sink, "MATCH (p:Place {name: 'Place 1'}) RETURN id(p)"));
+	}
+
+	@Test
+	public void sendsOnlyTheNodesARelationshipBatchConnects() throws Exception {
+		CypherSink sink = new CypherSink(server.httpURI().toString(), null, null, 2, 2);
+		long person = sink.createNode(null, PERSON);
+		long place = sink.createNode(Collections.singletonMap("name", "Lisbon"), PLACE);
+		long artist = sink.createNode(null, ARTIST, PERSON);
+		sink.createRelationship(person, place, BORN_IN, null);
+		sink.createRelationship(person, place, BORN_IN, null);
+
+		// the full relationship batch took the buffers of its ends with it
+		assertEquals(2, count(sink, "MATCH (:Person)-[:BORN_IN]->(:Place) RETURN count(*)"));
+		assertEquals(sink.getServerId(place), count(sink, "MATCH (p:Place) RETURN id(p)"));
+		assertEquals(-1, sink.getServerId(artist));
+		sink.shutdown();
+		assertEquals(sink.getServerId(artist), count(sink, "MATCH (a:Artist) RETURN id(a)"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void reportsFailedStatements() {
+		new CypherSink(server.httpURI().toString(), "", "", 10, 1).execute("NOT CYPHER", Collections.emptyMap());
+	}
+
+	private static long count(CypherSink sink, String statement) {
+		return sink.execute(statement, Collections.emptyMap()).get(0).get("row").get(0).asLong();
+	}
+}
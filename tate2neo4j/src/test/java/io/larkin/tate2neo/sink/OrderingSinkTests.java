@@ -0,0 +1,106 @@
+package io.larkin.tate2neo.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+public class OrderingSinkTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final RelationshipType CLASSIFIED_AS = DynamicRelationshipType.withName("CLASSIFIED_AS");
+
+	private final RelationshipType COMPRISED_OF = DynamicRelationshipType.withName("COMPRISED_OF");
+
+	private final RelationshipType BORN_IN = DynamicRelationshipType.withName("BORN_IN");
+
+	/**
+	 * Records what it is given, as "start-TYPE->end {properties}"
+	 */
+	private static class RecordingSink extends CountingSink {
+
+		final List<String> relationships = new ArrayList<>();
+
+		@Override
+		public void createRelationship(long startNode, long endNode, RelationshipType type,
+				Map<String, Object> properties) {
+			super.createRelationship(startNode, endNode, type, properties);
+			relationships.add(startNode + "-" + type.name() + "->" + endNode
+					+ (properties != null ? " " + properties : ""));
+		}
+
+		@Override
+		public void shutdown() {
+		}
+	}
+
+	/**
+	 * Nodes 0-1 are mediums, 2 a classification and 3-8 artworks, created in
+	 * reverse; node 9 is an artist born in medium 1, with a property, to check
+	 * properties survive (the map is reused).
+	 */
+	private void createGraph(ImportSink sink) {
+		Label label = DynamicLabel.label("Node");
+		for (int i = 0; i < 10; i++) {
+			sink.createNode(null, label);
+		}
+		Map<String, Object> properties = new HashMap<>();
+		for (int artwork = 8; artwork >= 3; artwork--) {
+			sink.createRelationship(artwork, artwork % 2, COMPRISED_OF, null);
+			sink.createRelationship(artwork, 2, CLASSIFIED_AS, null);
+		}
+		properties.put("startYear", 1757);
+		sink.createRelationship(9, 1, BORN_IN, properties);
+		properties.clear();
+	}
+
+	private static final List<String> ORDERED = Arrays.asList(
+			"3-COMPRISED_OF->1", "3-CLASSIFIED_AS->2", "4-COMPRISED_OF->0", "4-CLASSIFIED_AS->2",
+			"5-COMPRISED_OF->1", "5-CLASSIFIED_AS->2", "6-COMPRISED_OF->0", "6-CLASSIFIED_AS->2",
+			"7-COMPRISED_OF->1", "7-CLASSIFIED_AS->2", "8-COMPRISED_OF->0", "8-CLASSIFIED_AS->2",
+			"9-BORN_IN->1 {startYear=1757}");
+
+	@Test
+	public void ordersRelationshipsByStartNode() throws IOException {
+		RecordingSink recorder = new RecordingSink();
+		OrderingSink sink = new OrderingSink(recorder, 1 << 20, folder.getRoot().toPath().resolve("spill"));
+		createGraph(sink);
+		assertTrue(recorder.relationships.isEmpty());
+		assertEquals(13, sink.getBuffered());
+
+		assertEquals(13, sink.flush());
+		assertEquals(ORDERED, recorder.relationships);
+		assertEquals(0, sink.getBuffered());
+	}
+
+	@Test
+	public void spillsPastTheMemoryBudget() throws IOException {
+		RecordingSink recorder = new RecordingSink();
+		Path spillDir = folder.getRoot().toPath().resolve("spill");
+		OrderingSink sink = new OrderingSink(recorder, 100, spillDir);
+		createGraph(sink);
+		assertTrue(sink.getSpills() > 1);
+
+		sink.shutdown();
+		assertEquals(ORDERED, recorder.relationships);
+		assertFalse(Files.exists(spillDir));
+	}
+}
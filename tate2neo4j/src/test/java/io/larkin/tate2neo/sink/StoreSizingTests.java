@@ -0,0 +1,63 @@
+package io.larkin.tate2neo.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.larkin.tate2neo.sink.StoreSizing.Store;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StoreSizingTests {
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void estimatesEveryStore() {
+		StoreSizing sizing = StoreSizing.estimate(3500, 70000);
+		assertEquals(3500 + 70000 + 10500, sizing.getRecords(Store.NODES));
+		assertEquals(3500 * 3 + 70000 * 12, sizing.getRecords(Store.RELATIONSHIPS));
+		// room for every record, but not a great deal more
+		for (Store store : Store.values()) {
+			long needed = sizing.getRecords(store) * store.getRecordSize();
+			assertTrue(store.name(), sizing.getBytes(store) >= needed);
+			assertTrue(store.name(), sizing.getBytes(store) <= Math.max(MB, 2 * needed));
+		}
+
+		Map<String, String> config = sizing.toConfig();
+		assertEquals(Store.values().length, config.size());
+		assertEquals("1M", config.get("neostore.propertystore.db.arrays.mapped_memory"));
+		assertEquals((sizing.getBytes(Store.RELATIONSHIPS) + MB - 1) / MB + "M",
+				config.get("neostore.relationshipstore.db.mapped_memory"));
+	}
+
+	@Test
+	public void scalesEstimatesToTheLimit() {
+		StoreSizing sizing = StoreSizing.estimate(100000, 10000000);
+		sizing.override(Store.STRINGS, "100M");
+		sizing.override(Store.ARRAYS, "");
+		sizing.limit("1G");
+
+		assertEquals(100 * MB, sizing.getBytes(Store.STRINGS));
+		long total = 0;
+		for (Store store : Store.values()) {
+			total += sizing.getBytes(store);
+		}
+		assertTrue(total <= 1024 * MB + Store.values().length * MB);
+		assertTrue(sizing.getBytes(Store.RELATIONSHIPS) > sizing.getBytes(Store.NODES));
+		assertTrue(sizing.report().contains("neostore.propertystore.db.strings.mapped_memory=100M (fixed)"));
+	}
+
+	@Test
+	public void parsesSizes() {
+		assertEquals(512, StoreSizing.parseSize("512"));
+		assertEquals(64 * 1024, StoreSizing.parseSize("64k"));
+		assertEquals(90 * MB, StoreSizing.parseSize(" 90M "));
+		assertEquals(2048 * MB, StoreSizing.parseSize("2G"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherSizes() {
+		StoreSizing.parseSize("lots");
+	}
+}
@@ -0,0 +1,45 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileFinderTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void touch(String... path) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(String.join("/", path));
+		Files.createDirectories(file.getParent());
+		Files.createFile(file);
+	}
+
+	@Test
+	public void streamsMatchingFilesInStableOrder() throws IOException {
+		touch("b", "001", "b001.json");
+		touch("a", "001", "a001.json");
+		touch("a", "002", "a002.json");
+		touch("a", "002", "notes.txt");
+		touch("root.json");
+
+		try (Stream<Path> files = FileFinder.streamFiles(folder.getRoot().toString(), "*.json", 2)) {
+			List<String> names = files.map(f -> f.getFileName().toString()).collect(Collectors.toList());
+			// each subdirectory is sorted at the top level only; within one, walk order applies
+			assertEquals("root.json", names.get(0));
+			assertEquals(4, names.size());
+			assertEquals("b001.json", names.get(3));
+			assertEquals(Arrays.asList("a001.json", "a002.json"), names.subList(1, 3).stream().sorted().collect(Collectors.toList()));
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class IntLongHashMapTests {
+
+	@Test
+	public void returnsTheDefaultForMissingKeys() {
+		IntLongHashMap map = new IntLongHashMap(4);
+		assertEquals(-1, map.get(5, -1));
+		// 0 marks a free slot, so is held to one side
+		assertEquals(-1, map.get(0, -1));
+		map.put(0, 7);
+		map.put(5, 0);
+		assertEquals(7, map.get(0, -1));
+		assertEquals(0, map.get(5, -1));
+		assertEquals(2, map.size());
+		map.remove(0);
+		assertFalse(map.containsKey(0));
+		assertEquals(-1, map.get(0, -1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void growsPastItsExpectedSize() {
+		IntLongHashMap map = new IntLongHashMap(4);
+		for (int key = -50000; key < 50000; key++) {
+			map.put(key, key * 3L);
+		}
+		assertEquals(100000, map.size());
+		for (int key = -50000; key < 50000; key++) {
+			assertEquals(key * 3L, map.get(key, Long.MIN_VALUE));
+		}
+		long[] sum = new long[2];
+		map.forEach((key, value) -> {
+			sum[0]++;
+			sum[1] += value - key * 3L;
+		});
+		assertEquals(100000, sum[0]);
+		assertEquals(0, sum[1]);
+	}
+
+	@Test
+	public void removesFromAClusterThatWrapsAround() {
+		// 8 slots, so four entries fit without growing
+		IntLongHashMap map = new IntLongHashMap(4);
+		int last = 7;
+		List<Integer> atLast = keysWithSlot(map, last, 3);
+		int atFirst = keysWithSlot(map, 0, 1).get(0);
+		// fill slots 7, 0 and 1, then 2, for the key whose home is 0
+		for (int key : atLast) {
+			map.put(key, key);
+		}
+		map.put(atFirst, atFirst);
+
+		// the entries after it must move back, across the end of the table
+		map.remove(atLast.get(0));
+		assertFalse(map.containsKey(atLast.get(0)));
+		assertEquals(atLast.get(1).longValue(), map.get(atLast.get(1), -1));
+		assertEquals(atLast.get(2).longValue(), map.get(atLast.get(2), -1));
+		assertEquals(atFirst, map.get(atFirst, -1));
+
+		map.remove(atLast.get(2));
+		assertEquals(atLast.get(1).longValue(), map.get(atLast.get(1), -1));
+		assertEquals(atFirst, map.get(atFirst, -1));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void agreesWithAHashMap() {
+		Random random = new Random(42);
+		IntLongHashMap map = new IntLongHashMap(4);
+		Map<Integer, Long> expected = new HashMap<>();
+		for (int i = 0; i < 200000; i++) {
+			// a small range of keys, so they're often put again and removed
+			int key = random.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0) {
+				map.remove(key);
+				expected.remove(key);
+			} else {
+				map.put(key, i);
+				expected.put(key, (long) i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (int key = -1000; key < 1000; key++) {
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+			assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1));
+		}
+		map.clear();
+		assertEquals(0, map.size());
+		for (int key : expected.keySet()) {
+			assertFalse(map.containsKey(key));
+		}
+	}
+
+	private static List<Integer> keysWithSlot(IntLongHashMap map, int slot, int count) {
+		List<Integer> keys = new ArrayList<>();
+		for (int key = 1; keys.size() < count; key++) {
+			if ((Integer) ReflectionTestUtils.invokeMethod(map, "slot", key) == slot) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+}
@@ -0,0 +1,117 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JsonRecordsTests {
+
+	private static final List<String> RECORDS = Arrays.asList("{\"id\":1}", "{\"id\":2,\"title\":\"on and on\"}");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<String> read(Path file) throws IOException {
+		try (Stream<byte[]> records = JsonRecords.open(file)) {
+			return records.map(r -> new String(r, StandardCharsets.UTF_8)).collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	public void readsNdjsonSkippingBlankLines() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("artworks.ndjson");
+		Files.write(file, (RECORDS.get(0) + "\r\n\n" + RECORDS.get(1)).getBytes(StandardCharsets.UTF_8));
+		assertEquals(RECORDS, read(file));
+	}
+
+	@Test
+	public void readsNdjsonLinesAcrossBlocks() throws IOException {
+		// records of every length up to 600, and one longer than a block, so
+		// block ends fall inside records and between CR and LF
+		List<String> records = new ArrayList<>();
+		StringBuilder file = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			String record = i == 1500 ? repeat('x', 600000) : repeat('a', i % 600 + 1);
+			records.add(record);
+			file.append(record).append(i % 2 == 0 ? "\r\n" : "\n");
+		}
+		Path path = folder.getRoot().toPath().resolve("artworks.ndjson");
+		Files.write(path, file.toString().getBytes(StandardCharsets.UTF_8));
+		assertEquals(records, read(path));
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	@Test
+	public void readsGzippedNdjson() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("artworks.ndjson.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(String.join("\n", RECORDS).concat("\n").getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(RECORDS, read(file));
+	}
+
+	@Test
+	public void readsJsonEntriesOfZip() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("artworks.zip");
+		try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+			zip.putNextEntry(new ZipEntry("a/"));
+			for (int i = 0; i < RECORDS.size(); i++) {
+				zip.putNextEntry(new ZipEntry("a/" + i + ".json"));
+				zip.write(RECORDS.get(i).getBytes(StandardCharsets.UTF_8));
+			}
+			zip.putNextEntry(new ZipEntry("README.txt"));
+			zip.write("not json".getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(RECORDS, read(file));
+	}
+
+	@Test
+	public void readsJsonEntriesOfTar() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("artworks.tar");
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(Files.newOutputStream(file))) {
+			for (int i = 0; i < RECORDS.size(); i++) {
+				byte[] data = RECORDS.get(i).getBytes(StandardCharsets.UTF_8);
+				TarArchiveEntry entry = new TarArchiveEntry("a/" + i + ".json");
+				entry.setSize(data.length);
+				tar.putArchiveEntry(entry);
+				tar.write(data);
+				tar.closeArchiveEntry();
+			}
+		}
+		assertEquals(RECORDS, read(file));
+	}
+
+	@Test
+	public void convertsDirectoryToNdjson() throws IOException {
+		Path dir = folder.newFolder("artworks").toPath();
+		Files.write(dir.resolve("1.json"), "{\n  \"id\": 1\n}".getBytes(StandardCharsets.UTF_8));
+		Files.write(dir.resolve("2.json"), "{ \"id\" : 2, \"title\" : \"on and on\" }".getBytes(StandardCharsets.UTF_8));
+		Path file = folder.getRoot().toPath().resolve("artworks.ndjson");
+
+		assertEquals(2, new NdjsonConverter().convert(dir.toString(), file));
+		assertEquals(RECORDS, read(file));
+	}
+}
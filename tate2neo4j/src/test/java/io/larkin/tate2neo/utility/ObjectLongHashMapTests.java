@@ -0,0 +1,113 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ObjectLongHashMapTests {
+
+	/**
+	 * A key with a hash code of its choosing, to make keys collide
+	 */
+	private static class Key {
+
+		private final String name;
+
+		private final int hash;
+
+		Key(String name, int hash) {
+			this.name = name;
+			this.hash = hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	@Test
+	public void growsPastItsExpectedSize() {
+		ObjectLongHashMap<String> map = new ObjectLongHashMap<>(4);
+		for (int i = 0; i < 100000; i++) {
+			map.put("key " + i, i);
+		}
+		assertEquals(100000, map.size());
+		for (int i = 0; i < 100000; i++) {
+			assertEquals(i, map.get("key " + i, -1));
+		}
+		assertEquals(-1, map.get("key 100000", -1));
+	}
+
+	@Test
+	public void removesFromAClusterThatWrapsAround() {
+		// 8 slots; every key has its home in the last, so they run on into
+		// the first slots
+		ObjectLongHashMap<Key> map = new ObjectLongHashMap<>(4);
+		int hash = hashWithSlot(map, 7);
+		Key[] keys = { new Key("a", hash), new Key("b", hash), new Key("c", hash), new Key("d", hash) };
+		for (int i = 0; i < keys.length; i++) {
+			map.put(keys[i], i);
+		}
+
+		map.remove(keys[1]);
+		assertFalse(map.containsKey(keys[1]));
+		assertEquals(0, map.get(keys[0], -1));
+		assertEquals(2, map.get(keys[2], -1));
+		assertEquals(3, map.get(keys[3], -1));
+
+		map.remove(keys[0]);
+		assertEquals(2, map.get(keys[2], -1));
+		assertEquals(3, map.get(keys[3], -1));
+		assertEquals(2, map.size());
+		// removing a key that isn't there changes nothing
+		map.remove(keys[0]);
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void agreesWithAHashMap() {
+		Random random = new Random(42);
+		ObjectLongHashMap<Key> map = new ObjectLongHashMap<>(4);
+		Map<Key, Long> expected = new HashMap<>();
+		for (int i = 0; i < 200000; i++) {
+			// few hash codes, so that many keys collide
+			int n = random.nextInt(2000);
+			Key key = new Key(Integer.toString(n), n % 50);
+			if (random.nextInt(3) == 0) {
+				map.remove(key);
+				expected.remove(key);
+			} else {
+				map.put(key, i);
+				expected.put(key, (long) i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (int n = 0; n < 2000; n++) {
+			Key key = new Key(Integer.toString(n), n % 50);
+			assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1));
+		}
+		Map<Key, Long> visited = new HashMap<>();
+		map.forEach(visited::put);
+		assertEquals(expected, visited);
+	}
+
+	private static int hashWithSlot(ObjectLongHashMap<Key> map, int slot) {
+		for (int hash = 0;; hash++) {
+			if ((Integer) ReflectionTestUtils.invokeMethod(map, "slot", new Key("", hash)) == slot) {
+				return hash;
+			}
+		}
+	}
+}
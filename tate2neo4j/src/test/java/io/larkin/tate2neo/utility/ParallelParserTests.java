@@ -0,0 +1,51 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParallelParserTests {
+
+	private List<Path> files(int count) {
+		List<Path> files = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			files.add(Paths.get(i + ".json"));
+		}
+		return files;
+	}
+
+	@Test
+	public void resultsAreWrittenInFileOrderOnCallingThread() throws IOException {
+		Thread caller = Thread.currentThread();
+		List<String> written = new ArrayList<>();
+		new ParallelParser<Path, String>(f -> f.getFileName().toString(), 4, 8).parse(files(500), name -> {
+			assertEquals(caller, Thread.currentThread());
+			written.add(name);
+		});
+
+		assertEquals(500, written.size());
+		for (int i = 0; i < written.size(); i++) {
+			assertEquals(i + ".json", written.get(i));
+		}
+	}
+
+	@Test
+	public void parseFailureIsRethrown() {
+		try {
+			new ParallelParser<Path, String>(f -> {
+				throw new IOException("bad json");
+			}, 4, 8).parse(files(10), name -> { });
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("bad json"));
+			return;
+		}
+		throw new AssertionError("Expected IOException");
+	}
+}
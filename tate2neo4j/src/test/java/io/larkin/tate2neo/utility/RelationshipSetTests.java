@@ -0,0 +1,38 @@
+package io.larkin.tate2neo.utility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RelationshipSetTests {
+
+	@Test
+	public void detectsDuplicateTriples() {
+		RelationshipSet set = new RelationshipSet(4);
+		assertTrue(set.add(0, 1, 0));
+		assertFalse(set.add(0, 1, 0));
+		// direction and type are part of the relationship
+		assertTrue(set.add(1, 0, 0));
+		assertTrue(set.add(0, 1, 1));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	public void growsPastExpectedSize() {
+		RelationshipSet set = new RelationshipSet(4);
+		for (long node = 0; node < 100000; node++) {
+			assertTrue(set.add(node, node + 1, 2));
+		}
+		for (long node = 0; node < 100000; node++) {
+			assertFalse(set.add(node, node + 1, 2));
+		}
+		assertEquals(100000, set.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTypesThatDontFit() {
+		new RelationshipSet().add(0, 1, 1 << 16);
+	}
+}
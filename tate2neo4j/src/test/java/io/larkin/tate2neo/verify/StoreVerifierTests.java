@@ -0,0 +1,94 @@
+package io.larkin.tate2neo.verify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+public class StoreVerifierTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Label PERSON = DynamicLabel.label("Person");
+
+	private final Label PLACE = DynamicLabel.label("Place");
+
+	private final RelationshipType BORN_IN = DynamicRelationshipType.withName("BORN_IN");
+
+	@Test
+	public void countsTheStoreInRanges() throws IOException, InterruptedException {
+		String storeDir = folder.newFolder("graph.db").getPath();
+		BatchInserter inserter = BatchInserters.inserter(storeDir);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("name", "London");
+		long london = inserter.createNode(properties, PLACE);
+		for (int i = 0; i < 5; i++) {
+			long person = inserter.createNode(null, PERSON);
+			inserter.createRelationship(person, london, BORN_IN, null);
+		}
+		inserter.createNode(null, PERSON);
+		inserter.shutdown();
+
+		GraphDatabaseService db = StoreVerifier.open(storeDir);
+		VerificationReport report;
+		try {
+			// ranges of two ids, one past the last node
+			report = new StoreVerifier(db, 3, 2).verify(8);
+		} finally {
+			db.shutdown();
+		}
+		assertEquals(7, report.getNodes());
+		assertEquals(6, report.getNodes("Person"));
+		assertEquals(1, report.getNodes("Place"));
+		assertEquals(5, report.getRelationships());
+		assertEquals(5, report.getRelationships("BORN_IN"));
+		assertEquals(1, report.getOrphans());
+		assertEquals(1, report.getOrphans("Person"));
+		// five people with one, London with five (4-7)
+		long[] degrees = report.getDegrees("BORN_IN");
+		assertArrayEquals(new long[] { 5, 0, 1 }, Arrays.copyOf(degrees, 3));
+		assertTrue(report.isConsistent());
+	}
+
+	@Test
+	public void reportsCountsThatDontReconcile() {
+		VerificationReport report = new VerificationReport();
+		report.node(Arrays.asList("Artist", "Person"), false);
+		report.node(Collections.singletonList("Artwork"), false);
+		report.relationship("CONTRIBUTED_TO");
+		report.degree("CONTRIBUTED_TO", 1);
+		report.degree("CONTRIBUTED_TO", 1);
+
+		assertTrue(report.expect("nodes :Artist", 1, report.getNodes("Artist")));
+		assertFalse(report.expect("artwork contributors missing", 0, 2));
+		assertFalse(report.isConsistent());
+
+		Map<String, Object> map = report.toMap();
+		assertEquals(false, map.get("consistent"));
+		assertEquals(Collections.singletonMap("1", 2L),
+				((Map<?, ?>) map.get("degrees")).get("CONTRIBUTED_TO"));
+		List<?> reconciliation = (List<?>) map.get("reconciliation");
+		assertEquals(2, reconciliation.size());
+		assertEquals(false, ((Map<?, ?>) reconciliation.get(1)).get("ok"));
+		assertTrue(report.summary().contains("artwork contributors missing: expected 0, found 2"));
+	}
+}